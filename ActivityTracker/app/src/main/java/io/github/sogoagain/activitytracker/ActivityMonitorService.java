@@ -11,26 +11,32 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.hardware.Sensor;
 import android.hardware.SensorManager;
+import android.location.GpsSatellite;
+import android.location.GpsStatus;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
+import android.os.Build;
 import android.os.Bundle;
-import android.os.CountDownTimer;
+import android.os.Environment;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.PowerManager;
 import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.List;
 
 import static android.location.LocationManager.GPS_PROVIDER;
+import static android.location.LocationManager.NETWORK_PROVIDER;
+import static android.location.LocationManager.PASSIVE_PROVIDER;
 
 public class ActivityMonitorService extends Service{
     private static final String LOG = "AT_MonitorService";
@@ -41,42 +47,121 @@ public class ActivityMonitorService extends Service{
     private static final long PERIOD_INCREMENT = 5000;
     private static final long PERIOD_MAX = 30000;
 
+    // 움직임/정지 판정이 확실해지면 ACTIVE_TIME을 기다리지 않고 센싱 구간을 끝낸다.
+    private static final boolean EARLY_DECISION = true;
+    // 움직임으로 판정했지만 활동(걷기/달리기/차량) 분류에 샘플이 모자라면 ACTIVE_TIME 뒤로 최대 이만큼 더 측정
+    private static final long RECOGNITION_TIME = 500;
+
+    // true이면 서비스 동작 중 선형 가속도 데이터를 트레이스 파일로 기록한다. (분류기 평가용)
+    private static final boolean RECORD_SENSOR_TRACE = false;
+
+    // true이면 하드웨어 걸음 센서가 있을 때 소프트웨어 방식도 함께 켜서 구간마다 두 결과를 기록한다.
+    // (ComparingStepSource, 기록에는 하드웨어 결과를 사용)
+    private static final boolean COMPARE_STEP_SOURCES = false;
+
+    // FIFO 배치 모드: 센서 허브에 샘플을 모아 두었다가 최대 이 시간(us)마다 한꺼번에 전달받는다.
+    private static final int MAX_REPORT_LATENCY_US = 10000000;
+    // SENSOR_DELAY_GAME의 샘플링 주기 (us)
+    private static final int SAMPLING_PERIOD_US = 20000;
+
+    // 연달아 오는 WIFI 스캔 결과 broadcast를 이 시간(ms) 동안 모아서 한 번만 처리
+    private static final long SCAN_COALESCE_TIME = 2000;
+
+    // 서비스 종료 시 남은 파일 기록을 기다리는 최대 시간
+    private static final long WRITER_DRAIN_TIMEOUT = 2000;
+    // 센싱 통계 snapshot을 파일에 저장하는 간격
+    private static final long METRICS_DUMP_INTERVAL = 600000;  // 10분
+
+    // 실내/실외 분류기의 증거가 1/e로 줄어드는 시간
+    private static final long INDOOR_EVIDENCE_TIME = 600000;    // 10분
+    // 정지 구간 시작 시 이 시간 이내의 WIFI 스캔 결과가 없으면 GPS보다 먼저 WIFI 스캔을 요청
+    private static final long WIFI_EVIDENCE_AGE = 60000;        // 1분
+
     // 본 프로젝트에서 정의한 상수
     private static final float INITIAL_GPS_ACCURACY = 50.f;
     private static final long MOVING_TIME_THRESHOLD = 60000;    // 1분
     private static final long STAYING_TIME_THRESHOLD = 210000;  // 3분 30초
     private static final float GPS_ACCURACY_THRESHOLD = 25.f;
 
-    // 좌표
+    // GPS 수집 모드: 정지 구간마다 GPS_ACCURACY_THRESHOLD 이내의 fix를 처음 얻거나 GPS_TIME_BUDGET이 지나면
+    // GPS를 끄고, 그 정지 구간 동안에는 다시 켜지 않는다.
+    private static final long GPS_TIME_BUDGET = 60000;          // 1분
+    // 이 시간 이내에 얻은 정확한 fix가 있으면 GPS를 켜지 않고 재사용
+    private static final long FIX_REUSE_TIME = 120000;          // 2분
+    // GPS를 켜기 전에 network fix를 기다리는 시간
+    private static final long NETWORK_TIME_BUDGET = 10000;      // 10초
+
+    // 한 시간에 wakelock을 잡고 있을 수 있는 시간 (센싱 구간 + GPS 수집)
+    private static final long WAKELOCK_HOURLY_BUDGET = 600000;  // 10분
+    // GPS_FIX lease의 제한 시간 = GPS_TIME_BUDGET + GPS_LEASE_MARGIN
+    private static final long GPS_LEASE_MARGIN = 5000;
+
+    // 실외 장소 정의 파일 (Download 디렉토리). 한 줄에 "장소명,위도,경도,반경(m)"
+    // 파일이 없으면 아래 기본 장소를 사용
+    private static final String OUTDOOR_PLACE_FILE = "ActivityTrackerPlaces.csv";
+
+    // 기본 장소 좌표
     private final double GROUND_X = 37.5740339;
     private final double GROUND_Y = 126.976775;
     private final double UNIVHQ_X = 37.5740339;
     private final double UNIVHQ_Y = 126.976775;
 
-    // WIFI
+    // 실내 장소 fingerprint 파일 (Download 디렉토리). 한 줄에 "장소명,RSSI기준(dBm),최소일치개수,BSSID1;BSSID2;..."
+    // 파일이 없으면 아래 기본 장소를 사용
+    private static final String INDOOR_PLACE_FILE = "ActivityTrackerWifiPlaces.csv";
+
+    // 기본 장소 WIFI prefix
     private final String INDOOR1_MAC = "78:4a:cg";
     private final String INDOOR2_MAC = "24:9c:78";
 
-    // 기록
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm", java.util.Locale.getDefault());
+    // 기록 (날짜별 상태 구간 바이너리 로그와 장소 번호 대응표)
+    private SegmentedStore segmentStore;
+    private SegmentLogWriter segmentLogWriter;
+    private PlaceDictionary placeDictionary;
+    // 누적 통계 (구간을 기록할 때마다 갱신하여 저장)
+    private ActivitySummary summary;
+    private File summaryFile;
+    // 센싱 통계 (alarm, wakelock, 센서, GPS, WIFI)
+    private MetricsRegistry metrics;
+    private File metricsFile;
+    private File timeOfDayFile;             // TimeOfDayPolicy의 시간대별 학습 결과
+    private long lastMetricsDumpTime;
+    private long nextAlarmTime;             // 예약한 alarm 시각 (elapsedRealtime)
+    private long gpsSessionStartTime;       // 이번에 GPS를 켠 시각 (elapsedRealtime)
+    private long reportedStepSamples;       // metrics에 반영한 StepSource 이벤트 수
+    private long reportedStepDeliveries;
+    // 전력 소모 추정용 센싱 이벤트 로그 (EnergyAccountant)
+    private EnergyEventLog energyLog;
+    private long stepSourceStartTime;       // 걸음 수 측정을 시작한 시각 (elapsedRealtime)
 
     // 센싱
     private AlarmManager alarmManager;
     private WifiManager wifiManager;
     private PendingIntent pendingIntent;
-    private PowerManager.WakeLock wakeLock;
-    private CountDownTimer countDownTimer;
 
     private SensorManager sensorManager;
-    private Sensor accelLinear;
-    private StepMonitor stepMonitor = new StepMonitor();
+    // 걸음 수 측정 (하드웨어 step counter/detector, 없으면 선형 가속도로 직접 셈)
+    private StepSource stepSource;
+    // 걸음 센서 FIFO flush를 기다리느라 아직 기록하지 않은 이동 구간 (pendingEnd가 0이면 없음)
+    private long pendingStart;
+    private long pendingEnd;
+    private SensorTraceRecorder traceRecorder;
 
     // 상태 측정 관련 객체
-    private MovingMonitor movingMonitor;
+    // wakelock과 MovingMonitor를 가진 센싱 구간. 서비스가 하나만 만들어 alarm마다 재사용한다.
+    private SensingSession sensingSession;
+    // 모든 wakelock은 여기서 tag별 lease로 받는다. (센싱 구간, GPS 수집)
+    private WakeLockManager wakeLocks;
     private LocationManager locationManager = null;
 
     private long period = 10000;
-    private boolean previousMovingState = false;
+    // 센싱 주기 결정 정책 (LinearBackoffPolicy: 기존 방식, ExponentialBackoffPolicy, TimeOfDayPolicy)
+    private DutyCyclePolicy dutyCyclePolicy = new LinearBackoffPolicy(period, PERIOD_FOR_MOVING, PERIOD_INCREMENT, PERIOD_MAX);
+    private long windowDuration = ACTIVE_TIME;
+
+    // 센싱 구간 통계 (조기 판정으로 절약한 깨어있는 시간 확인용)
+    private int windowCount = 0;
+    private long totalWindowDuration = 0;
     private boolean isRequestRegistered = false;
 
     // GPS 값
@@ -84,12 +169,44 @@ public class ActivityMonitorService extends Service{
     private double latitude = 0.0;
     private float accuracy = INITIAL_GPS_ACCURACY;
 
+    // GPS 수집 상태
+    private Handler gpsHandler = new Handler();
+    private boolean isStayFixDone = false;  // 이번 정지 구간의 위치 수집이 끝났는지
+    private long lastFixTime = 0;           // 마지막 fix 시각 (elapsedRealtime)
+    private long gpsStartTime;              // GPS를 켠 시각 (elapsedRealtime)
+    private long gpsOnTime = 0;             // 이번 정지 구간의 위치 수집에서 GPS가 켜져 있던 시간 (ms)
+    private long totalGpsOnTime = 0;
+    private boolean isNetworkRequestPending = false;
+    private GpsStatus gpsStatus;
+    private int gpsSessions = 0;
+    private int gpsSessionsAvoided = 0;     // 최근 fix 재사용이나 network fix로 GPS를 켜지 않은 횟수
+    private int gpsSessionsDenied = 0;      // wakelock 예산이 모자라 GPS를 켜지 않은 횟수
+    private int fixesReused = 0;
+
+    // 제공자별 fix 수
+    private int passiveFixes = 0;
+    private int networkFixes = 0;
+    private int gpsFixes = 0;
+
+    // 실내/실외 판단
+    private IndoorOutdoorClassifier indoorClassifier = new IndoorOutdoorClassifier(INDOOR_EVIDENCE_TIME);
+    private long wifiScanRequestTime = 0;   // 위치 수집 전에 WIFI 스캔을 요청한 시각, 0이면 요청 안 함
+    private int indoorSkips = 0;            // 실내가 확실하여 위치 수집을 건너뛴 센싱 구간 수
+
     // 현재 위치명
     private String placeName;
 
-    // 상태 시간 측정
-    private long startTime;
-    private long endTime;
+    // 실외 장소 인덱스
+    private PlaceIndex outdoorPlaces;
+    // 실내 장소 인덱스
+    private WifiFingerprintIndex indoorPlaces;
+    private WifiScanProcessor wifiScanProcessor;
+    private Handler scanHandler = new Handler();
+    private boolean isScanPending = false;
+    private long scansSkipped = 0;
+
+    // 이동/정지 상태 구간 관리
+    private ActivityStateMachine stateMachine;
 
     /*************************************서비스 생명주기******************************************/
     @Override
@@ -99,14 +216,10 @@ public class ActivityMonitorService extends Service{
         // startId: start 요청을 나타내는 unique integer id
         Toast.makeText(this, R.string.start_tracking, Toast.LENGTH_SHORT).show();
 
-        // Alarm이 발생할 시간이 되었을 때, 안드로이드 시스템에 전송을 요청할 broadcast를 지정
-        Intent in = new Intent(BROADCAST_ALARM);
-        pendingIntent = PendingIntent.getBroadcast(getApplicationContext(), 0, in, 0);
-
         // Alarm이 발생할 시간 및 alarm 발생시 이용할 pending intent 설정
         // 설정한 시간 (5000-> 5초, 10000->10초) 후 alarm 발생
-        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                SystemClock.elapsedRealtime() + period, pendingIntent);
+        nextAlarmTime = SystemClock.elapsedRealtime() + period;
+        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, nextAlarmTime, pendingIntent);
 
         return super.onStartCommand(intent, flags, startId);
     }
@@ -121,26 +234,83 @@ public class ActivityMonitorService extends Service{
 
         // AlarmManager 객체 얻기
         alarmManager = (AlarmManager) getSystemService(ALARM_SERVICE);
+        // Alarm이 발생할 시간이 되었을 때, 안드로이드 시스템에 전송을 요청할 broadcast를 지정
+        // 매번 같은 broadcast이므로 한 번만 만들어 alarm을 등록할 때마다 재사용
+        Intent in = new Intent(BROADCAST_ALARM);
+        pendingIntent = PendingIntent.getBroadcast(getApplicationContext(), 0, in, 0);
 
         // WifiManager 객체 얻기
         wifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
         IntentFilter wifiIntentFilter = new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
         registerReceiver(wifiReceiver, wifiIntentFilter);
 
-        // StepMonitor 객체
+        // 걸음 수 측정 방식
+        // 하드웨어 걸음 센서가 있으면 AP를 거의 깨우지 않으므로 우선 사용하고, 없으면 소프트웨어 방식
+        // 센서 허브에 FIFO가 있으면 두 방식 모두 배치 모드로 MAX_REPORT_LATENCY_US까지 모아서 전달받는다.
         sensorManager = (SensorManager) getApplicationContext().getSystemService(Context.SENSOR_SERVICE);
-        accelLinear = sensorManager.getDefaultSensor(Sensor.TYPE_LINEAR_ACCELERATION);
+        StepSource softwareSource = new SoftwareStepSource(sensorManager, MAX_REPORT_LATENCY_US, SAMPLING_PERIOD_US);
+        StepSource hardwareSource = HardwareStepSource.create(sensorManager, MAX_REPORT_LATENCY_US);
+        if (hardwareSource == null) {
+            stepSource = softwareSource;
+        } else if (COMPARE_STEP_SOURCES) {
+            stepSource = new ComparingStepSource(hardwareSource, softwareSource);
+        } else {
+            stepSource = hardwareSource;
+        }
+        Log.d(LOG, "step source: " + stepSource.getName());
+
+        // 다른 앱이나 시스템이 받은 fix를 함께 받도록 passive provider 등록
+        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+        try {
+            locationManager.requestLocationUpdates(PASSIVE_PROVIDER, 0, 0, passiveListener);
+        } catch (SecurityException se) {
+            se.printStackTrace();
+            Log.e(LOG, "PERMISSION_NOT_GRANTED");
+        }
+
+        // 상태 구간 로그
+        File folder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        segmentStore = SegmentLogWriter.openStore(folder);
+        segmentLogWriter = new SegmentLogWriter(segmentStore, AsyncFileWriter.getInstance());
+        placeDictionary = new PlaceDictionary(new File(folder, PlaceDictionary.FILE_NAME));
+        summaryFile = new File(folder, ActivitySummary.FILE_NAME);
+        loadSummary();
+        importLegacyLog(folder);
+        metrics = new MetricsRegistry(System.currentTimeMillis());
+        metricsFile = new File(folder, MetricsRegistry.FILE_NAME);
+        // 시간대별 정책은 이전에 학습한 정지 비율에 이어서 학습한다.
+        timeOfDayFile = new File(folder, TimeOfDayPolicy.FILE_NAME);
+        if (dutyCyclePolicy instanceof TimeOfDayPolicy) {
+            ((TimeOfDayPolicy) dutyCyclePolicy).read(timeOfDayFile);
+        }
+        lastMetricsDumpTime = SystemClock.elapsedRealtime();
+        energyLog = new EnergyEventLog();
+        wakeLocks = new WakeLockManager(this, "HS_Wakelock", WAKELOCK_HOURLY_BUDGET);
+        wakeLocks.setOnReleaseListener(wakeLockReleaseListener);
+        sensingSession = new SensingSession(this, wakeLocks, ACTIVE_TIME, RECOGNITION_TIME, EARLY_DECISION,
+                sessionListener);
+
+        // 실외, 실내 장소 읽기
+        loadOutdoorPlaces();
+        loadIndoorPlaces();
+        wifiScanProcessor = new WifiScanProcessor(indoorPlaces);
+
+        // 센서 트레이스 기록
+        if (RECORD_SENSOR_TRACE) {
+            traceRecorder = new SensorTraceRecorder(this);
+            traceRecorder.start();
+        }
 
         // 초기화
-        startTime = System.currentTimeMillis();
-        endTime = System.currentTimeMillis();
+        stateMachine = new ActivityStateMachine(MOVING_TIME_THRESHOLD, STAYING_TIME_THRESHOLD,
+                System.currentTimeMillis(), stateListener);
     }
 
     public void onDestroy() {
         Toast.makeText(this, R.string.finish_tracking, Toast.LENGTH_SHORT).show();
 
-        writeRecord(previousMovingState);
-        sendBroadcastToActivity();
+        // 진행 중이던 구간을 지금 시각으로 끝내고 기록
+        stateMachine.finish(System.currentTimeMillis());
 
         try {
             // Alarm 발생 시 전송되는 broadcast 수신 receiver를 해제
@@ -151,14 +321,34 @@ public class ActivityMonitorService extends Service{
         // AlarmManager에 등록한 alarm 취소
         alarmManager.cancel(pendingIntent);
         unregisterReceiver(wifiReceiver);
+        scanHandler.removeCallbacks(processScanRunnable);
+        cancelLocationRequest();
+        try {
+            locationManager.removeUpdates(passiveListener);
+        } catch (SecurityException se) {
+            se.printStackTrace();
+        }
 
         // release all the resources you use
-        if (countDownTimer != null)
-            countDownTimer.cancel();
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-            wakeLock = null;
+        sensingSession.stop();
+        wakeLocks.releaseAll();
+        Log.d(LOG, "wakelocks\n" + wakeLocks.format());
+        if (traceRecorder != null)
+            traceRecorder.stop();
+        stopStepSource();
+        // 걸음 센서 flush를 기다리던 구간은 지금까지의 걸음 수로 기록
+        writePendingRecord();
+        dumpMetrics();
+
+        // 큐에 남은 기록을 모두 파일에 쓴다.
+        AsyncFileWriter writer = AsyncFileWriter.getInstance();
+        if (!writer.drain(WRITER_DRAIN_TIMEOUT)) {
+            Log.w(LOG, "file writer drain timeout. queue depth: " + writer.getQueueDepth());
         }
+        Log.d(LOG, "file writer - records: " + writer.getRecordsWritten() + ", batches: " + writer.getBatches()
+                + ", max queue depth: " + writer.getMaxQueueDepth()
+                + ", avg latency: " + writer.getAverageLatency() / 1000 + "us"
+                + ", max latency: " + writer.getMaxLatency() / 1000 + "us");
     }
 
     @Override
@@ -176,177 +366,353 @@ public class ActivityMonitorService extends Service{
         public void onReceive(Context context, Intent intent) {
             if (intent.getAction().equals(BROADCAST_ALARM)) {
                 Log.d(LOG, "Alarm fired!!!!");
+                long now = SystemClock.elapsedRealtime();
+                metrics.increment(MetricsRegistry.ALARMS);
+                if (nextAlarmTime > 0) {
+                    metrics.record(MetricsRegistry.ALARM_DELAY_MS, now - nextAlarmTime);
+                }
                 //-----------------
                 // Alarm receiver에서는 장시간에 걸친 연산을 수행하지 않도록 한다
                 // Alarm을 발생할 때 안드로이드 시스템에서 wakelock을 잡기 때문에 CPU를 사용할 수 있지만
                 // 그 시간은 제한적이기 때문에 애플리케이션에서 필요하면 wakelock을 잡아서 연산을 수행해야 함
                 //-----------------
 
-                PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-                wakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "HS_Wakelock");
-                // ACQUIRE a wakelock here to collect and process accelerometer data and control location updates
-                wakeLock.acquire();
-
-                movingMonitor = new MovingMonitor(context);
-                movingMonitor.onStart();
-
-                countDownTimer = new CountDownTimer(ACTIVE_TIME, 1000) {
-                    @Override
-                    public void onTick(long millisUntilFinished) {
-                    }
-
-                    @Override
-                    public void onFinish() {
-                        Log.d(LOG, "1-second accel data collected!!");
-                        // stop the accel data update
-
-                        boolean currentMovingState = movingMonitor.isMoving();
-                        // 정지 여부에 따라 GPS location update 요청 처리
-                        if (!currentMovingState) {
-                            Log.d(LOG, "before calling requestLocation");
-                            if (!isRequestRegistered) {
-                                requestLocation();
-                                Log.d(LOG, "after calling requestLocation");
-                            }
-                            sensorManager.unregisterListener(stepMonitor);
-                        } else {
-                            Log.d(LOG, "before calling cancelLocationRequest");
-                            if (isRequestRegistered) {
-                                cancelLocationRequest();
-                                Log.d(LOG, "after calling cancelLocationRequest");
-                            }
-                            sensorManager.registerListener(stepMonitor, accelLinear, SensorManager.SENSOR_DELAY_GAME);
-                        }
-                        // 움직임 여부에 따라 다음 alarm 설정
-                        setNextAlarm(currentMovingState);
-
-                        // 상태변화 확인
-                        if (isChangeState(currentMovingState)) {
-                            /**** 상태가 바뀌었다!!! 이전 상태를 기록해야해!!!! ****/
-                            endTime = System.currentTimeMillis();
-                            writeRecord(previousMovingState);
-                            sendBroadcastToActivity();
-                            // 이제는 커런트야! 이제 지금 장소를 확인해보자!
-                            // 아! 그리고 시간도 기록해야해
-                            previousMovingState = currentMovingState;
-                            startTime = System.currentTimeMillis();
-                            // check Place
-                            if (isIndoor()) {
-                                // 실내 특정 장소 확인
-                                identifyIndoorPlace();
-                            } else {
-                                // 실외 특정 장소 확인
-                                identifyOutdoorPlace();
-                            }
-                        }
-                        // When you finish your job, RELEASE the wakelock
-                        wakeLock.release();
-                        wakeLock = null;
-                    }
-                };
-                countDownTimer.start();
+                // wakelock을 잡고 ACTIVE_TIME 동안(조기 판정 시 더 짧게) 가속도 측정
+                // 끝나면 sessionListener.onWindowFinished() 호출
+                if (sensingSession.start()) {
+                    metrics.increment(MetricsRegistry.WAKELOCKS);
+                } else if (!sensingSession.isOpen()) {
+                    // wakelock 예산을 다 씀: 이번 구간은 건너뛰고 정지 상태의 주기로 다음 alarm 등록
+                    setNextAlarm(false);
+                }
             }
         }
     };
 
-    private void setNextAlarm(boolean moving) {
-        // 움직임이면 5초 period로 등록
-        // 움직임이 아니면 5초 증가, max 30초로 제한
-        if (moving) {
-            Log.d(LOG, "MOVING!!");
-            period = PERIOD_FOR_MOVING;
+    private SensingSession.Listener sessionListener = new SensingSession.Listener() {
+        @Override
+        public void onWindowFinished(int activity, long duration, int samples) {
+            Log.d(LOG, "accel data collected!! (" + ActivityRecognizer.getName(activity) + ")");
+            finishSensingWindow(activity, duration, samples);
+        }
+    };
+
+    // 모든 lease가 끝나 wakelock을 놓을 때마다 호출
+    private WakeLockManager.OnReleaseListener wakeLockReleaseListener = new WakeLockManager.OnReleaseListener() {
+        @Override
+        public void onReleased(long heldTime) {
+            metrics.record(MetricsRegistry.WAKELOCK_HOLD_MS, heldTime);
+            energyLog.log(EnergyAccountant.WAKEUP, System.currentTimeMillis() - heldTime, heldTime);
+        }
+    };
+
+    /**
+     * 센싱 구간 종료 처리
+     * ACTIVE_TIME이 지나거나 조기 판정이 내려졌을 때 한 번만 수행된다.
+     * 가속도 listener는 이미 해제되었고, 반환하면 SensingSession이 wakelock을 놓는다.
+     */
+    private void finishSensingWindow(int activity, long duration, int samples) {
+        boolean currentMovingState = activity != ActivityRecognizer.STILL;
+        // 구간 길이(판정 지연 시간) 기록
+        windowDuration = duration;
+        windowCount++;
+        totalWindowDuration += windowDuration;
+        metrics.record(MetricsRegistry.WINDOW_MS, windowDuration);
+        energyLog.log(EnergyAccountant.ACCEL, System.currentTimeMillis() - windowDuration, windowDuration);
+        metrics.add(MetricsRegistry.MOVING_SAMPLES, samples);
+        Log.d(LOG, "decision latency: " + windowDuration + "ms (avg " + (totalWindowDuration / windowCount)
+                + "ms, saved " + (windowCount * ACTIVE_TIME - totalWindowDuration) + "ms in " + windowCount + " windows)");
+
+        long now = SystemClock.elapsedRealtime();
+        indoorClassifier.onMotion(now, currentMovingState);
+        // 정지 여부에 따라 GPS location update 요청 처리
+        if (!currentMovingState) {
+            // 이번 정지 구간의 위치를 아직 얻지 못했으면 수집 시작
+            if (!isStayFixDone && !isRequestRegistered && !isNetworkRequestPending) {
+                if (indoorClassifier.isConfidentlyIndoor(now)) {
+                    // WIFI만으로 실내가 확실하면 GPS를 켜지 않음
+                    indoorSkips++;
+                    Log.d(LOG, "confidently indoor (p=" + indoorClassifier.getProbability(now) + "), skip location");
+                } else if (!indoorClassifier.hasWifiEvidence(now, WIFI_EVIDENCE_AGE) && wifiScanRequestTime == 0
+                        && wifiManager.startScan()) {
+                    // 최근 WIFI 스캔 결과가 없으면 스캔을 먼저 요청하고 다음 센싱 구간에서 다시 판단
+                    wifiScanRequestTime = now;
+                    energyLog.log(EnergyAccountant.WIFI_SCAN, System.currentTimeMillis(), 0);
+                    Log.d(LOG, "wifi scan requested before location");
+                } else {
+                    Log.d(LOG, "before calling acquireLocation");
+                    acquireLocation();
+                }
+            }
+            stopStepSource();
         } else {
-            Log.d(LOG, "NOT MOVING!!");
-            period = period + PERIOD_INCREMENT;
-            if (period >= PERIOD_MAX) {
-                period = PERIOD_MAX;
+            Log.d(LOG, "before calling cancelLocationRequest");
+            if (isRequestRegistered || isNetworkRequestPending) {
+                cancelLocationRequest();
+                Log.d(LOG, "after calling cancelLocationRequest");
+                logAcquisition("cancelled by movement");
+            }
+            // 다음 정지 구간에서 위치를 다시 수집
+            isStayFixDone = false;
+            wifiScanRequestTime = 0;
+            // 차량 이동 중에는 걸음을 세지 않는다.
+            if (activity == ActivityRecognizer.VEHICLE) {
+                stopStepSource();
+            } else {
+                startStepSource();
             }
         }
-        Log.d(LOG, "Next alarm: " + period);
+        // 움직임 여부에 따라 다음 alarm 설정
+        setNextAlarm(currentMovingState);
+
+        // 상태변화 확인
+        // 상태가 바뀌면 stateListener에서 이전 상태 구간을 기록하고 장소를 확인한다.
+        if (!stateMachine.onClassification(System.currentTimeMillis(), toSegmentState(activity))) {
+            Log.d(LOG, "이건 바뀌지 않은거야");
+        }
+        if (now - lastMetricsDumpTime >= METRICS_DUMP_INTERVAL) {
+            dumpMetrics();
+        }
+    }
+
+    // 활동 종류를 구간 상태로 바꾼다. 걷기와 달리기는 도보 이동 구간으로 합친다.
+    private static int toSegmentState(int activity) {
+        switch (activity) {
+            case ActivityRecognizer.STILL:
+                return SegmentLogWriter.STILL;
+            case ActivityRecognizer.VEHICLE:
+                return SegmentLogWriter.VEHICLE;
+            default:
+                return SegmentLogWriter.MOVING;
+        }
+    }
+
+    // 걸음 수 측정이 끝났으므로 기다리던 이동 구간을 기록
+    private Runnable stepSourceStoppedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePendingRecord();
+        }
+    };
+
+    // 이동 중 걸음 수 측정 시작
+    private void startStepSource() {
+        if (stepSource.isStarted()) {
+            return;
+        }
+        if (stepSource.start()) {
+            stepSourceStartTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private void stopStepSource() {
+        if (!stepSource.isStarted()) {
+            return;
+        }
+        // 배치 모드이면 FIFO에 남은 걸음까지 센 뒤 stepSourceStoppedRunnable 호출
+        stepSource.stop(stepSourceStoppedRunnable);
+        reportStepSamples();
+        // 하드웨어 걸음 센서는 센서 허브에서 동작하므로 가속도 센서 사용으로 기록하지 않는다.
+        if (stepSource.usesAccelerometer()) {
+            long duration = SystemClock.elapsedRealtime() - stepSourceStartTime;
+            energyLog.log(EnergyAccountant.ACCEL, System.currentTimeMillis() - duration, duration);
+        }
+        Log.d(LOG, stepSource.getName() + " events: " + stepSource.getEventCount()
+                + ", deliveries: " + stepSource.getDeliveryCount());
+    }
+
+    private void setNextAlarm(boolean moving) {
+        // 다음 주기는 dutyCyclePolicy가 결정
+        // 기본 정책: 움직임이면 5초 period로 등록, 움직임이 아니면 5초 증가, max 30초로 제한
+        Log.d(LOG, moving ? "MOVING!!" : "NOT MOVING!!");
+        period = dutyCyclePolicy.nextPeriod(moving, System.currentTimeMillis());
+        Log.d(LOG, "Next alarm: " + period + " (" + dutyCyclePolicy.getName() + ")");
 
         // 다음 alarm 등록
-        Intent in = new Intent(BROADCAST_ALARM);
-        pendingIntent = PendingIntent.getBroadcast(getApplicationContext(), 0, in, 0);
-        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                SystemClock.elapsedRealtime() + period - ACTIVE_TIME, pendingIntent);
+        nextAlarmTime = SystemClock.elapsedRealtime() + period - windowDuration;
+        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, nextAlarmTime, pendingIntent);
+    }
+
+    // StepSource의 누적 이벤트 수 중 아직 반영하지 않은 만큼 metrics에 더한다.
+    private void reportStepSamples() {
+        long samples = stepSource.getEventCount();
+        long deliveries = stepSource.getDeliveryCount();
+        metrics.add(MetricsRegistry.STEP_SAMPLES, samples - reportedStepSamples);
+        metrics.add(MetricsRegistry.STEP_DELIVERIES, deliveries - reportedStepDeliveries);
+        reportedStepSamples = samples;
+        reportedStepDeliveries = deliveries;
+    }
+
+    // 센싱 통계 snapshot과 duty cycle 학습 결과를 파일에 저장 (수 KB, METRICS_DUMP_INTERVAL마다)
+    private void dumpMetrics() {
+        reportStepSamples();
+        metrics.set(MetricsRegistry.WAKELOCK_WINDOW_MS, wakeLocks.getHeldTime(WakeLockManager.ALARM_WINDOW));
+        metrics.set(MetricsRegistry.WAKELOCK_GPS_MS, wakeLocks.getHeldTime(WakeLockManager.GPS_FIX));
+        long timeouts = 0;
+        long denials = 0;
+        for (int tag = 0; tag < WakeLockManager.TAG_COUNT; tag++) {
+            timeouts += wakeLocks.getTimeouts(tag);
+            denials += wakeLocks.getDenials(tag);
+        }
+        metrics.set(MetricsRegistry.WAKELOCK_TIMEOUTS, timeouts);
+        metrics.set(MetricsRegistry.WAKELOCK_DENIALS, denials);
+        lastMetricsDumpTime = SystemClock.elapsedRealtime();
+        try {
+            MetricsRegistry.write(metricsFile, metrics.toByteArray(System.currentTimeMillis()));
+            if (dutyCyclePolicy instanceof TimeOfDayPolicy) {
+                TimeOfDayPolicy.write(timeOfDayFile, ((TimeOfDayPolicy) dutyCyclePolicy).toByteArray());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
     /**********************************************************************************************/
 
     /*****************************************Classification***************************************/
     /**
-     *
-     * @param currentMovingState
-     * @return 상태 변경 여부
+     * 상태 기계에서 상태가 바뀔 때 호출되는 리스너
      */
-// 이건 상태 변경만 확인해야 해!
-    private boolean isChangeState(boolean currentMovingState) {
-        // 상태가 바뀌면
-        // 이전에 기록된 정보에 대한 확인후 전송
-        if(previousMovingState != currentMovingState) {
-            long threshold;
-            if (currentMovingState) {
-                threshold = MOVING_TIME_THRESHOLD;
-            }
-            else {
-                threshold = STAYING_TIME_THRESHOLD;
-            }
-            long elapsedTime = System.currentTimeMillis() - startTime;
-            if (elapsedTime >= threshold) {
-                Log.d(LOG, "상태가 바뀌었어!!");
-                return true;
+    private ActivityStateMachine.Listener stateListener = new ActivityStateMachine.Listener() {
+        @Override
+        public void onSegment(long start, long end, int state) {
+            /**** 상태가 바뀌었다!!! 이전 상태를 기록해야해!!!! ****/
+            // 기록이 끝나면 MainActivity에 알린다.
+            writeRecord(start, end, state);
+        }
+
+        @Override
+        public void onStateChanged(int state, long time) {
+            Log.d(LOG, "상태가 바뀌었어!!");
+            // 이제는 커런트야! 이제 지금 장소를 확인해보자!
+            // check Place
+            readWifiScan();
+            if (isIndoor()) {
+                // 실내 특정 장소 확인
+                identifyIndoorPlace();
+            } else {
+                // 실외 특정 장소 확인
+                identifyOutdoorPlace();
             }
         }
-        Log.d(LOG, "이건 바뀌지 않은거야");
-        return false;
-    }
+    };
 
 
+    // GPS, WIFI, 움직임 관측을 합친 실내 확률로 판단
     private boolean isIndoor() {
-        if(accuracy > GPS_ACCURACY_THRESHOLD) {
-            Log.d(LOG, "실내에 위치");
+        long now = SystemClock.elapsedRealtime();
+        if (indoorClassifier.isIndoor(now)) {
+            Log.d(LOG, "실내에 위치 (p=" + indoorClassifier.getProbability(now) + ")");
             return true;
         }
-        Log.d(LOG, "실외에 위치");
+        Log.d(LOG, "실외에 위치 (p=" + indoorClassifier.getProbability(now) + ")");
         return false;
     }
 
     private void identifyOutdoorPlace() {
-        if((int)calcDistance(GROUND_X,GROUND_Y) <= 80+20) {
-            placeName = "실외지정장소1";
-        } else if((int)calcDistance(UNIVHQ_X,UNIVHQ_Y) <= 50+20) {
-            placeName = "실외지정장소2";
+        // 현재 위치가 속한 격자의 장소들만 확인
+        int place = outdoorPlaces.find(latitude, longitude);
+        if (place != PlaceIndex.NO_PLACE) {
+            placeName = outdoorPlaces.getName(place);
         } else {
             placeName = "실외";
         }
         Log.d(LOG, placeName);
     }
 
-    private void identifyIndoorPlace() {
-        List<ScanResult> scanList = wifiManager.getScanResults();
-        int indoor1 = 0;
-        int indoor2 = 0;
+    private void loadOutdoorPlaces() {
+        outdoorPlaces = new PlaceIndex();
+        BufferedReader reader = openPlaceFile(OUTDOOR_PLACE_FILE);
+        if (reader != null) {
+            try {
+                outdoorPlaces.read(reader);
+                reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (outdoorPlaces.size() == 0) {
+            // 기본 장소: 반경 + GPS 오차 20m
+            outdoorPlaces.add("실외지정장소1", GROUND_X, GROUND_Y, 80 + 20);
+            outdoorPlaces.add("실외지정장소2", UNIVHQ_X, UNIVHQ_Y, 50 + 20);
+        }
+        Log.d(LOG, "outdoor places: " + outdoorPlaces.size());
+    }
 
-        // 현재 스캔된 wifi 결과 중 미리 정의한 장소의 wifi fingerprinter가 일치하는지 판별함.
-        // 2개 이상이 기준치에 충족되면 실내라고 판단
-        for(int i = 1; i < scanList.size(); i++) {
+    /**
+     * 현재 WIFI 스캔 결과를 한 번 훑어서
+     * - 강한 AP 수를 실내/실외 분류기에 넘기고
+     * - 장소 fingerprint에 등록된 AP들을 wifiScanProcessor에 넘긴다. (장소 판단은 identifyIndoorPlace())
+     */
+    private void readWifiScan() {
+        List<ScanResult> scanList = wifiManager.getScanResults();
+        if (scanList == null) {
+            return;
+        }
+        int strong = 0;
+        wifiScanProcessor.beginScan();
+        for (int i = 0; i < scanList.size(); i++) {
             ScanResult result = scanList.get(i);
-            if((result.BSSID.substring(0, 8)).equals(indoor1_MAC) && result.level > -50) {
-                indoor1++;
-            }
-            else if((result.BSSID.substring(0, 8)).equals(INDOOR2_MAC) && result.level > -70) {
-                indoor2++;
+            if (result.level >= IndoorOutdoorClassifier.STRONG_RSSI) {
+                strong++;
             }
+            wifiScanProcessor.offer(result.BSSID, result.level);
         }
-        if (indoor1 >= 2) {
-            placeName = "실내지정장소1";
+        indoorClassifier.onWifiScan(SystemClock.elapsedRealtime(), strong);
+    }
 
-        } else if (indoor2 >= 2){
-            placeName = "실내지정장소2";
+    // readWifiScan()으로 읽은 스캔 결과로 실내 장소 판단
+    private void identifyIndoorPlace() {
+        // 현재 스캔된 wifi 결과 중 미리 정의한 장소의 wifi fingerprint가 일치하는지 판별함.
+        // 장소별 기준치를 넘는 AP가 최소 일치 개수 이상이면 그 장소로 판단
+        // 직전 스캔과 관련 AP들의 RSSI band가 같으면 직전 결과를 재사용
+        wifiScanProcessor.endScan();
+        int place = wifiScanProcessor.getPlace();
+        if (place != WifiFingerprintIndex.NO_PLACE) {
+            placeName = indoorPlaces.getName(place);
         } else {
             placeName = "실내";
         }
         Log.d(LOG, placeName);
     }
+
+    private void loadIndoorPlaces() {
+        indoorPlaces = new WifiFingerprintIndex();
+        BufferedReader reader = openPlaceFile(INDOOR_PLACE_FILE);
+        if (reader != null) {
+            try {
+                indoorPlaces.read(reader);
+                reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (indoorPlaces.size() == 0) {
+            // 기본 장소: 2개 이상의 AP가 기준치 충족
+            int indoor1 = indoorPlaces.addPlace("실내지정장소1", -50, 2);
+            if (!indoorPlaces.addBssid(indoor1, INDOOR1_MAC)) {
+                Log.w(LOG, "invalid BSSID prefix: " + INDOOR1_MAC);
+            }
+            int indoor2 = indoorPlaces.addPlace("실내지정장소2", -70, 2);
+            if (!indoorPlaces.addBssid(indoor2, INDOOR2_MAC)) {
+                Log.w(LOG, "invalid BSSID prefix: " + INDOOR2_MAC);
+            }
+        }
+        Log.d(LOG, "indoor places: " + indoorPlaces.size());
+    }
+
+    // Download 디렉토리의 장소 정의 파일 열기. 파일이 없으면 null
+    private BufferedReader openPlaceFile(String fileName) {
+        File file = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS), fileName);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new BufferedReader(new FileReader(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
     /**********************************************************************************************/
 
     /*************************************GPS Sensing**********************************************/
@@ -355,9 +721,15 @@ public class ActivityMonitorService extends Service{
             Log.d(LOG, "Longitude : " + location.getLongitude()
                     + " Latitude : " + location.getLatitude() + " Altitude: " + location.getAltitude()
                     + " Accuracy : " + location.getAccuracy());
-            longitude = location.getLongitude();
-            latitude = location.getLatitude();
-            accuracy = location.getAccuracy();
+            gpsFixes++;
+            metrics.increment(MetricsRegistry.GPS_FIXES);
+            updateLocation(location, true);
+
+            // 처음으로 정확한 fix를 얻으면 바로 GPS를 끈다.
+            if (isRequestRegistered && accuracy <= GPS_ACCURACY_THRESHOLD) {
+                Log.d(LOG, "good fix after " + (lastFixTime - gpsStartTime) + "ms");
+                finishAcquisition();
+            }
         }
 
         public void onStatusChanged(String provider, int status, Bundle bundle) {
@@ -381,6 +753,227 @@ public class ActivityMonitorService extends Service{
         }
     };
 
+    // 다른 앱이나 시스템이 받은 fix
+    LocationListener passiveListener = new LocationListener() {
+        public void onLocationChanged(Location location) {
+            // 직접 요청한 fix는 해당 listener에서 처리
+            if (isRequestRegistered || isNetworkRequestPending) {
+                return;
+            }
+            Log.d(LOG, "passive fix from " + location.getProvider() + ", accuracy: " + location.getAccuracy());
+            passiveFixes++;
+            metrics.increment(MetricsRegistry.PASSIVE_FIXES);
+            updateLocation(location, false);
+        }
+
+        public void onStatusChanged(String provider, int status, Bundle bundle) {
+        }
+
+        public void onProviderEnabled(String provider) {
+        }
+
+        public void onProviderDisabled(String provider) {
+        }
+    };
+
+    // GPS를 켜기 전에 한 번 요청하는 network fix
+    LocationListener networkListener = new LocationListener() {
+        public void onLocationChanged(Location location) {
+            if (!isNetworkRequestPending) {
+                return;
+            }
+            isNetworkRequestPending = false;
+            gpsHandler.removeCallbacks(networkTimeoutRunnable);
+            Log.d(LOG, "network fix, accuracy: " + location.getAccuracy());
+            networkFixes++;
+            metrics.increment(MetricsRegistry.NETWORK_FIXES);
+            if (updateLocation(location, false)) {
+                // 장소 판단에 충분한 정확도이므로 GPS를 켜지 않음
+                gpsSessionsAvoided++;
+                finishAcquisition();
+            } else {
+                startGps();
+            }
+        }
+
+        public void onStatusChanged(String provider, int status, Bundle bundle) {
+        }
+
+        public void onProviderEnabled(String provider) {
+        }
+
+        public void onProviderDisabled(String provider) {
+        }
+    };
+
+    // network fix를 시간 안에 받지 못하면 GPS로 넘어간다.
+    private Runnable networkTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Log.d(LOG, "network fix timeout");
+            cancelNetworkRequest();
+            startGps();
+        }
+    };
+
+    /**
+     * fix 반영
+     * GPS가 아닌 fix(passive, network)는 장소 판단에 필요한 정확도를 만족할 때만 사용한다.
+     * (부정확한 network fix 때문에 실내로 판단하지 않도록)
+     *
+     * @return 정확도가 GPS_ACCURACY_THRESHOLD 이내이면 true
+     */
+    private boolean updateLocation(Location location, boolean isGps) {
+        // 실내/실외 판단에는 GPS fix만 사용 (network fix는 실내에서도 정확할 수 있음)
+        if (GPS_PROVIDER.equals(location.getProvider()) && location.hasAccuracy()) {
+            indoorClassifier.onGpsFix(SystemClock.elapsedRealtime(), location.getAccuracy());
+        }
+        boolean isAccurate = location.hasAccuracy() && location.getAccuracy() <= GPS_ACCURACY_THRESHOLD;
+        if (!isGps && !isAccurate) {
+            return false;
+        }
+        longitude = location.getLongitude();
+        latitude = location.getLatitude();
+        accuracy = location.getAccuracy();
+        // passive fix는 조금 전에 얻은 것일 수 있으므로 fix 자체의 시각을 사용
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            lastFixTime = location.getElapsedRealtimeNanos() / 1000000;
+        } else {
+            lastFixTime = SystemClock.elapsedRealtime();
+        }
+        return isAccurate;
+    }
+
+    // GPS가 켜져 있는 동안 위성 신호 세기를 실내/실외 분류기에 넘긴다.
+    GpsStatus.Listener gpsStatusListener = new GpsStatus.Listener() {
+        @Override
+        public void onGpsStatusChanged(int event) {
+            if (event != GpsStatus.GPS_EVENT_SATELLITE_STATUS || locationManager == null) {
+                return;
+            }
+            try {
+                gpsStatus = locationManager.getGpsStatus(gpsStatus);
+            } catch (SecurityException se) {
+                se.printStackTrace();
+                return;
+            }
+            if (gpsStatus == null) {
+                return;
+            }
+            int strong = 0;
+            int visible = 0;
+            for (GpsSatellite satellite : gpsStatus.getSatellites()) {
+                visible++;
+                if (satellite.getSnr() >= IndoorOutdoorClassifier.STRONG_SNR) {
+                    strong++;
+                }
+            }
+            indoorClassifier.onSatellites(SystemClock.elapsedRealtime(), strong, visible);
+        }
+    };
+
+    /**
+     * 정지 구간의 위치 수집 시작
+     * 1. 최근(FIX_REUSE_TIME 이내)에 얻은 정확한 fix가 있으면 재사용 (passive fix 포함)
+     * 2. 없으면 network fix를 한 번 요청
+     * 3. network fix가 없거나 부정확하면 GPS를 켠다.
+     */
+    private void acquireLocation() {
+        long now = SystemClock.elapsedRealtime();
+        if (lastFixTime > 0 && accuracy <= GPS_ACCURACY_THRESHOLD && now - lastFixTime <= FIX_REUSE_TIME) {
+            Log.d(LOG, "reuse last fix (" + (now - lastFixTime) + "ms old)");
+            fixesReused++;
+            gpsSessionsAvoided++;
+            finishAcquisition();
+            return;
+        }
+        if (!requestNetworkLocation()) {
+            startGps();
+        }
+    }
+
+    private boolean requestNetworkLocation() {
+        try {
+            if (!locationManager.isProviderEnabled(NETWORK_PROVIDER)) {
+                return false;
+            }
+            locationManager.requestSingleUpdate(NETWORK_PROVIDER, networkListener, null);
+            isNetworkRequestPending = true;
+            gpsHandler.postDelayed(networkTimeoutRunnable, NETWORK_TIME_BUDGET);
+            return true;
+        } catch (SecurityException se) {
+            se.printStackTrace();
+            Log.e(LOG, "PERMISSION_NOT_GRANTED");
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private void cancelNetworkRequest() {
+        gpsHandler.removeCallbacks(networkTimeoutRunnable);
+        if (!isNetworkRequestPending) {
+            return;
+        }
+        try {
+            locationManager.removeUpdates(networkListener);
+        } catch (SecurityException se) {
+            se.printStackTrace();
+        }
+        isNetworkRequestPending = false;
+    }
+
+    private void startGps() {
+        // 시간 예산이 끝날 때까지 CPU를 깨워 두어 gpsBudgetRunnable이 늦지 않게 한다.
+        // gpsBudgetRunnable은 uptime 기준이라 CPU가 잠들면 GPS를 끄지 못하므로
+        // wakelock 예산이 모자라 lease가 거절되면 이번 정지 구간에는 GPS를 켜지 않는다.
+        if (!wakeLocks.acquire(WakeLockManager.GPS_FIX, GPS_TIME_BUDGET + GPS_LEASE_MARGIN)) {
+            gpsSessionsDenied++;
+            finishAcquisition();
+            return;
+        }
+        requestLocation();
+        if (!isRequestRegistered) {
+            wakeLocks.release(WakeLockManager.GPS_FIX);
+            return;
+        }
+        gpsSessions++;
+        metrics.increment(MetricsRegistry.GPS_SESSIONS);
+        gpsHandler.postDelayed(gpsBudgetRunnable, GPS_TIME_BUDGET);
+    }
+
+    // 시간 예산 안에 정확한 fix를 얻지 못함
+    private Runnable gpsBudgetRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Log.d(LOG, "GPS time budget exhausted. accuracy: " + accuracy);
+            // 이번 수집에서 fix를 하나도 얻지 못했으면 실내일 가능성이 높음
+            if (lastFixTime < gpsStartTime) {
+                indoorClassifier.onGpsNoFix(SystemClock.elapsedRealtime());
+            }
+            finishAcquisition();
+        }
+    };
+
+    // 이번 정지 구간의 위치 수집 종료: 다음 이동 전까지 GPS를 다시 켜지 않는다.
+    private void finishAcquisition() {
+        cancelLocationRequest();
+        isStayFixDone = true;
+        logAcquisition("done");
+    }
+
+    // 위치 수집 한 번에서 GPS가 켜져 있던 시간을 출력하고 0부터 다시 센다.
+    // 수집은 첫 정지 센싱 구간에서 시작하므로 상태 기계의 정지 구간(STAYING_TIME_THRESHOLD 뒤 시작)이 아니라
+    // 수집이 끝나거나 움직임으로 취소될 때 출력한다.
+    private void logAcquisition(String result) {
+        Log.d(LOG, "GPS on " + gpsOnTime + "ms in stay acquisition (" + result + ", total " + totalGpsOnTime
+                + "ms, sessions " + gpsSessions + ", avoided " + gpsSessionsAvoided + ", denied " + gpsSessionsDenied
+                + ", reused fixes " + fixesReused + ")");
+        Log.d(LOG, "fixes by provider - passive: " + passiveFixes + ", network: " + networkFixes
+                + ", gps: " + gpsFixes + ", indoor skips: " + indoorSkips);
+        gpsOnTime = 0;
+    }
+
     private void requestLocation() {
         try {
             if (locationManager == null) {
@@ -390,7 +983,10 @@ public class ActivityMonitorService extends Service{
                     3000,
                     0,
                     locationListener);
+            locationManager.addGpsStatusListener(gpsStatusListener);
             isRequestRegistered = true;
+            gpsStartTime = SystemClock.elapsedRealtime();
+            gpsSessionStartTime = gpsStartTime;
 
         } catch (SecurityException se) {
             se.printStackTrace();
@@ -399,14 +995,26 @@ public class ActivityMonitorService extends Service{
     }
 
     private void cancelLocationRequest() {
-        if (locationManager != null) {
+        cancelNetworkRequest();
+        gpsHandler.removeCallbacks(gpsBudgetRunnable);
+        if (isRequestRegistered) {
+            long now = SystemClock.elapsedRealtime();
+            long time = now - gpsStartTime;
+            gpsOnTime += time;
+            totalGpsOnTime += time;
+            long session = now - gpsSessionStartTime;
+            metrics.record(MetricsRegistry.GPS_ON_MS, session);
+            energyLog.log(EnergyAccountant.GPS, System.currentTimeMillis() - session, session);
+            wakeLocks.release(WakeLockManager.GPS_FIX);
+        }
+        if (locationManager != null && isRequestRegistered) {
             try {
                 locationManager.removeUpdates(locationListener);
+                locationManager.removeGpsStatusListener(gpsStatusListener);
             } catch (SecurityException se) {
                 se.printStackTrace();
             }
         }
-        locationManager = null;
         isRequestRegistered = false;
     }
     /**********************************************************************************************/
@@ -416,60 +1024,166 @@ public class ActivityMonitorService extends Service{
         @Override
         public void onReceive(Context context, Intent intent) {
             String action = intent.getAction();
-            if (action.equals(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION))
-                identifyIndoorPlace();
+            if (action.equals(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION)) {
+                wifiScanProcessor.onScanReceived();
+                metrics.increment(MetricsRegistry.WIFI_SCANS);
+                // 연달아 오는 broadcast는 한 번으로 모아서 처리
+                if (!isScanPending) {
+                    isScanPending = true;
+                    scanHandler.postDelayed(processScanRunnable, SCAN_COALESCE_TIME);
+                }
+            }
+        }
+    };
+
+    private Runnable processScanRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isScanPending = false;
+            // 위치 수집 전에 요청한 스캔은 움직임이 멈춘 직후(상태 기계는 아직 이동 중)에 도착하므로
+            // 상태와 상관없이 처리해야 다음 센싱 구간에서 실내 여부로 GPS를 건너뛸 수 있다.
+            if (stateMachine.isMoving() && wifiScanRequestTime == 0) {
+                // 이동 중이면 실내 장소를 확인할 필요가 없음
+                scansSkipped++;
+            } else {
+                // 강한 AP 수는 실외로 판단하고 있더라도 분류기에 넘긴다.
+                long startTime = System.nanoTime();
+                readWifiScan();
+                if (isIndoor()) {
+                    identifyIndoorPlace();
+                } else {
+                    scansSkipped++;
+                }
+                metrics.increment(MetricsRegistry.WIFI_SCANS_PROCESSED);
+                metrics.record(MetricsRegistry.WIFI_PROCESS_US, (System.nanoTime() - startTime) / 1000);
+                // 실내가 확실해지면 진행 중인 GPS 수집을 멈춘다.
+                if (isRequestRegistered && indoorClassifier.isConfidentlyIndoor(SystemClock.elapsedRealtime())) {
+                    Log.d(LOG, "confidently indoor, stop GPS");
+                    finishAcquisition();
+                }
+            }
+            Log.d(LOG, "wifi scans received: " + wifiScanProcessor.getScansReceived()
+                    + ", processed: " + wifiScanProcessor.getScansProcessed()
+                    + ", skipped: " + scansSkipped
+                    + ", recomputations avoided: " + wifiScanProcessor.getRecomputationsAvoided());
         }
     };
     /**********************************************************************************************/
 
     /********************************************Recording*****************************************/
-    private void writeRecord(boolean moving) {
-        // 날짜 기록용 객체들
-        // 만난 시각을 텍스트 파일에 기록한다.
-        String outputSentence = dateFormat.format(new Date(startTime)) + "~" + dateFormat.format(new Date(endTime)) + " " +
-                msTominute(endTime - startTime) + "분 " + ((previousMovingState == true) ? "이동 " + (int) stepMonitor.getSteps() + "걸음" : "정지 " + placeName) + "\n";
-        stepMonitor.resetSteps();
-
-        Log.d(LOG, outputSentence);
-        new TextFileManager().save(outputSentence);
+    // 상태 구간을 바이너리 로그에 기록한다. 화면에 보여 줄 문장은 MainActivity에서 만든다.
+    // 이동 구간은 걸음 센서 FIFO에 남은 걸음까지 센 뒤에 기록한다. (stepSourceStoppedRunnable)
+    private void writeRecord(long startTime, long endTime, int state) {
+        // 기록 순서를 지키기 위해 기다리던 구간이 있으면 먼저 기록
+        writePendingRecord();
+        if (state == SegmentLogWriter.MOVING && stepSource.isFlushing()) {
+            pendingStart = startTime;
+            pendingEnd = endTime;
+            return;
+        }
+        appendRecord(startTime, endTime, state);
     }
 
-    private void sendBroadcastToActivity() {
-        Intent intent = new Intent(BROADCAST_ACTION_ACTIVITY);
-        sendBroadcast(intent);
+    private void writePendingRecord() {
+        if (pendingEnd == 0) {
+            return;
+        }
+        long endTime = pendingEnd;
+        pendingEnd = 0;
+        appendRecord(pendingStart, endTime, SegmentLogWriter.MOVING);
     }
 
-    /**********************************************************************************************/
+    private void appendRecord(long startTime, long endTime, int state) {
+        int steps = state == SegmentLogWriter.MOVING ? stepSource.getSteps() : 0;
+        int place = SegmentLogWriter.NO_PLACE;
+        if (state == SegmentLogWriter.STILL && placeName != null) {
+            place = placeDictionary.idOf(placeName);
+        }
+        stepSource.resetSteps();
 
-    /*******************************Caclculate Value***********************************************/
-    /**
-     * 두 시각 사이의 간격(시간)을 계산하여 String값으로 반환하는 메소드
-     * 분 형식
-     * 출처: http://stackoverflow.com/questions/6710094/how-to-format-an-elapsed-time-interval-in-hhmmss-sss-format-in-java
-     */
-    private int msTominute(long val) {
-        return (int) (val / 60000);
+        Log.d(LOG, "segment " + startTime + "~" + endTime + " state: " + state + ", steps: " + steps + ", place: " + place);
+        // MainActivity에서 기록을 지웠으면 통계도 처음부터
+        if (summary.getSegmentCount() > 0 && segmentStore.getSegmentCount() == 0) {
+            summary = new ActivitySummary();
+        }
+        summary.add(startTime, endTime, state, steps, place);
+        metrics.increment(MetricsRegistry.SEGMENTS);
+        energyLog.log(EnergyAccountant.SEGMENT, startTime, endTime - startTime);
+        final byte[] snapshot = summary.toByteArray();
+
+        // 구간이 파일에 기록되면 writer 스레드에서 통계를 저장하고 MainActivity에 알린다.
+        // (통계 파일의 마지막 구간이 로그보다 앞서지 않도록 구간 기록 뒤에 저장)
+        segmentLogWriter.append(startTime, endTime, state, steps, place, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ActivitySummary.write(summaryFile, snapshot);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                sendBroadcastToActivity();
+            }
+        });
     }
 
-    public double calcDistance(double lat1, double lon1){
-        double EARTH_R, Rad, radLat1, radLat2, radDist;
-        double distance, ret;
-
-        EARTH_R = 6371000.0;
-        Rad = Math.PI/180;
-        radLat1 = Rad * lat1;
-        radLat2 = Rad * latitude;
-        radDist = Rad * (lon1 - longitude);
+    // 저장된 누적 통계를 읽고, 로그와 맞지 않으면 로그에서 다시 계산한다.
+    private void loadSummary() {
+        summary = ActivitySummary.read(summaryFile);
+        try {
+            SegmentLogReader segmentLog = SegmentLogReader.open(segmentStore.segments());
+            if (summary == null || !summary.isUpToDate(segmentLog)) {
+                Log.d(LOG, "rebuild summary from " + segmentLog.size() + " segments");
+                summary = ActivitySummary.rebuild(segmentLog);
+                ActivitySummary.write(summaryFile, summary.toByteArray());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (summary == null) {
+                summary = new ActivitySummary();
+            }
+        }
+    }
 
-        distance = Math.sin(radLat1) * Math.sin(radLat2);
-        distance = distance + Math.cos(radLat1) * Math.cos(radLat2) * Math.cos(radDist);
-        ret = EARTH_R * Math.acos(distance);
+    // 이전 버전의 문장 로그(ActivityTrackerLog.txt)가 남아 있으면 상태 구간 로그로 옮기고 통계를 다시 계산한다.
+    private void importLegacyLog(File folder) {
+        File legacyLog = new File(folder, LegacyLogImporter.FILE_NAME);
+        if (!legacyLog.exists()) {
+            return;
+        }
+        final Handler handler = new Handler();
+        try {
+            int count = LegacyLogImporter.importLog(legacyLog, segmentLogWriter, placeDictionary, new Runnable() {
+                @Override
+                public void run() {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            rebuildSummary();
+                            sendBroadcastToActivity();
+                        }
+                    });
+                }
+            });
+            Log.d(LOG, "imported " + count + " segments from " + LegacyLogImporter.FILE_NAME);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        double rslt = Math.round(Math.round(ret) / 1000);
-        double result = rslt;
-        result = Math.round(ret);
+    private void rebuildSummary() {
+        try {
+            SegmentLogReader segmentLog = SegmentLogReader.open(segmentStore.segments());
+            summary = ActivitySummary.rebuild(segmentLog);
+            ActivitySummary.write(summaryFile, summary.toByteArray());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        return result;
+    private void sendBroadcastToActivity() {
+        Intent intent = new Intent(BROADCAST_ACTION_ACTIVITY);
+        sendBroadcast(intent);
     }
-    /*******************************Caclculate Value***********************************************/
+
+    /**********************************************************************************************/
 }
@@ -0,0 +1,314 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ActivityQuery
+ * - 상태 구간 로그(SegmentedStore)에 대한 기간 조회 (Android 의존성 없음)
+ *   기간 [from, to)의 시간/일/주별 이동 시간과 걸음 수, 장소별 머문 시간
+ * - segment 파일(하루)마다 ActivityRollup을 만들어 두고 재사용하므로 몇 달 기간을 조회해도
+ *   원본 구간을 다시 읽지 않는다. 크기나 수정 시각이 바뀐 파일(보통 오늘)만 다시 집계한다.
+ * - 집계가 없는 파일이 여러 개이면(앱 시작 후 첫 조회 등) ForkJoinPool에서 파일별로 나누어 집계한다.
+ * - 조회 기간은 시간 단위로 맞춘다. (from은 내림, to는 올림)
+ *   일/주 구간은 기기 시간대 기준이며, 파일의 집계 범위가 한 구간 안에 들어가면 파일 합계를 바로 더한다.
+ */
+public class ActivityQuery {
+    // 집계 단위
+    public static final int HOUR = 0;
+    public static final int DAY = 1;
+    public static final int WEEK = 2;
+
+    private static final long HOUR_MILLIS = ActivityRollup.HOUR;
+    // 한 작업에서 집계할 최대 파일 수
+    private static final int FORK_THRESHOLD = 4;
+
+    private static ForkJoinPool pool;
+
+    // 집계 단위 구간 하나의 결과
+    public static class Bucket {
+        public final long start;
+        public final long end;
+        private long movingMillis;
+        private long steps;
+
+        Bucket(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getMovingMillis() {
+            return movingMillis;
+        }
+
+        public int getMovingMinutes() {
+            return SegmentFormatter.toMinutes(movingMillis);
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+    }
+
+    private final SegmentedStore store;
+    private final HashMap<File, ActivityRollup> rollups = new HashMap<>();
+    private final Calendar calendar = Calendar.getInstance();
+
+    // 통계
+    private long rollupsBuilt;
+    private long rollupsReused;
+
+    public ActivityQuery(SegmentedStore store) {
+        this.store = store;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        }
+        return pool;
+    }
+
+    /**
+     * 기간 [from, to)를 unit 단위로 나눈 구간별 이동 시간과 걸음 수
+     *
+     * @param unit - HOUR, DAY, WEEK
+     * @return 시간순 구간 목록 (첫 구간과 마지막 구간은 조회 기간에 맞게 잘림)
+     */
+    public synchronized List<Bucket> rollup(long from, long to, int unit) {
+        from = floorHour(from);
+        to = ceilHour(to);
+        long[] edges = edges(from, to, unit);
+        ArrayList<Bucket> buckets = new ArrayList<>(edges.length);
+        for (int i = 0; i + 1 < edges.length; i++) {
+            buckets.add(new Bucket(edges[i], edges[i + 1]));
+        }
+        if (buckets.isEmpty()) {
+            return buckets;
+        }
+
+        for (ActivityRollup rollup : rollupsFor(from, to)) {
+            if (rollup.getHourCount() == 0) {
+                continue;
+            }
+            // 파일 전체가 한 구간 안이면 합계를 사용
+            int first = bucketOf(edges, rollup.getStartTime());
+            if (rollup.getStartTime() >= from && rollup.getEndTime() <= to
+                    && first >= 0 && rollup.getEndTime() <= edges[first + 1]) {
+                Bucket bucket = buckets.get(first);
+                bucket.movingMillis += rollup.getTotalMovingMillis();
+                bucket.steps += rollup.getTotalSteps();
+                continue;
+            }
+            for (int i = 0; i < rollup.getHourCount(); i++) {
+                int index = bucketOf(edges, rollup.getHourStart(i));
+                if (index < 0) {
+                    continue;
+                }
+                Bucket bucket = buckets.get(index);
+                bucket.movingMillis += rollup.getMovingMillis(i);
+                bucket.steps += rollup.getSteps(i);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * 기간 [from, to) 동안 장소별 머문 시간 (분)
+     *
+     * @return 장소 번호(PlaceDictionary)로 찾는 배열
+     */
+    public synchronized int[] dwellMinutes(long from, long to) {
+        from = floorHour(from);
+        to = ceilHour(to);
+        long[] millis = new long[8];
+        for (ActivityRollup rollup : rollupsFor(from, to)) {
+            if (rollup.getPlaceCount() > millis.length) {
+                millis = Arrays.copyOf(millis, Math.max(rollup.getPlaceCount(), millis.length * 2));
+            }
+            if (rollup.getStartTime() >= from && rollup.getEndTime() <= to) {
+                for (int place = 0; place < rollup.getPlaceCount(); place++) {
+                    millis[place] += rollup.getTotalDwellMillis(place);
+                }
+                continue;
+            }
+            for (int i = 0; i < rollup.getDwellCount(); i++) {
+                long hour = rollup.getDwellHourStart(i);
+                if (hour >= from && hour < to) {
+                    millis[rollup.getDwellPlace(i)] += rollup.getDwellMillis(i);
+                }
+            }
+        }
+        int[] minutes = new int[millis.length];
+        for (int place = 0; place < millis.length; place++) {
+            minutes[place] = SegmentFormatter.toMinutes(millis[place]);
+        }
+        return minutes;
+    }
+
+    // 재사용하던 집계를 모두 버린다. (로그를 지웠을 때)
+    public synchronized void clear() {
+        rollups.clear();
+    }
+
+    public long getRollupsBuilt() {
+        return rollupsBuilt;
+    }
+
+    public long getRollupsReused() {
+        return rollupsReused;
+    }
+
+    // 기간에 걸칠 수 있는 파일들의 집계
+    // 구간은 시작한 날짜의 파일에 있으므로 from 이전의 마지막 파일도 포함한다. (주말 내내 이어진 정지 구간 등)
+    // 구간은 겹치지 않고 이어지므로 그보다 앞선 파일의 구간은 from 전에 끝난다.
+    private List<ActivityRollup> rollupsFor(long from, long to) {
+        List<File> files = store.segments(from, to - 1);
+        File before = store.segmentBefore(from);
+        if (before != null) {
+            files.add(0, before);
+        }
+        ActivityRollup[] result = new ActivityRollup[files.size()];
+        ArrayList<Integer> stale = new ArrayList<>();
+        for (int i = 0; i < result.length; i++) {
+            File file = files.get(i);
+            ActivityRollup rollup = rollups.get(file);
+            if (rollup != null && rollup.isUpToDate(file)) {
+                result[i] = rollup;
+                rollupsReused++;
+            } else {
+                stale.add(i);
+            }
+        }
+
+        if (stale.size() == 1) {
+            int i = stale.get(0);
+            result[i] = build(files.get(i));
+        } else if (stale.size() > 1) {
+            int[] indexes = new int[stale.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = stale.get(i);
+            }
+            getPool().invoke(new BuildTask(files, indexes, result, 0, indexes.length));
+        }
+        for (int i = 0; i < stale.size(); i++) {
+            int index = stale.get(i);
+            rollups.put(files.get(index), result[index]);
+            rollupsBuilt++;
+        }
+        // 보관 기간이 지나 지워진 파일의 집계는 버린다.
+        if (rollups.size() > store.getSegmentCount()) {
+            Iterator<File> iterator = rollups.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!iterator.next().exists()) {
+                    iterator.remove();
+                }
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    private static ActivityRollup build(File file) {
+        try {
+            return ActivityRollup.build(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ActivityRollup.empty();
+        }
+    }
+
+    // 집계가 없는 파일들을 나누어 집계하는 작업
+    private static class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+        private final int[] indexes;
+        private final ActivityRollup[] result;
+        private final int from;
+        private final int to;
+
+        BuildTask(List<File> files, int[] indexes, ActivityRollup[] result, int from, int to) {
+            this.files = files;
+            this.indexes = indexes;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= FORK_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    result[indexes[i]] = build(files.get(indexes[i]));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BuildTask(files, indexes, result, from, mid),
+                    new BuildTask(files, indexes, result, mid, to));
+        }
+    }
+
+    // 구간 경계 시각들: from, ..., to
+    private long[] edges(long from, long to, int unit) {
+        if (to <= from) {
+            return new long[0];
+        }
+        long[] edges = new long[16];
+        int count = 0;
+        edges[count++] = from;
+        long time = from;
+        while (time < to) {
+            time = Math.min(to, nextEdge(time, unit));
+            if (count == edges.length) {
+                edges = Arrays.copyOf(edges, count * 2);
+            }
+            edges[count++] = time;
+        }
+        return Arrays.copyOf(edges, count);
+    }
+
+    // time 다음의 구간 경계 (일/주는 기기 시간대의 자정)
+    private long nextEdge(long time, int unit) {
+        if (unit == HOUR) {
+            return floorHour(time) + HOUR_MILLIS;
+        }
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (unit == WEEK) {
+            int days = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, 7 - days);
+        } else {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    // time이 속한 구간 번호, 범위 밖이면 -1
+    private static int bucketOf(long[] edges, long time) {
+        if (edges.length < 2 || time < edges[0] || time >= edges[edges.length - 1]) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(edges, time);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static long floorHour(long time) {
+        return time / HOUR_MILLIS * HOUR_MILLIS;
+    }
+
+    private static long ceilHour(long time) {
+        return floorHour(time + HOUR_MILLIS - 1);
+    }
+}
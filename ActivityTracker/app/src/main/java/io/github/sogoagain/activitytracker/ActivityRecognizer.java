@@ -0,0 +1,276 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * ActivityRecognizer
+ * - 선형 가속도 샘플 스트림을 정지 / 걷기 / 달리기 / 차량 이동으로 분류하는 엔진 (Android 의존성 없음)
+ * - 최근 WINDOW_SIZE개 샘플 구간의 특징을 샘플마다 O(1)로 갱신한다.
+ *   가속도 크기(magnitude)와 대역별 신호를 primitive 링 버퍼에 넣고, 빠지는 값을 빼고 새 값을 더하는 누적 합만 유지
+ *   - MEAN: 크기 평균 (log)
+ *   - VARIANCE: 크기 분산 (log)
+ *   - GAIT_ENERGY: 걸음 대역(약 1~3Hz) 에너지 / 분산
+ *   - HIGH_ENERGY: 3Hz 이상 대역 에너지 / 분산 (차량의 엔진, 노면 진동)
+ *   - PEAK_RATE: 초당 피크 수 (걸음이면 걸음 빈도)
+ *   대역은 1Hz, 3Hz 1차 저역통과 필터의 차로 나눈다. 필터 계수는 SENSOR_DELAY_GAME(약 20ms) 기준
+ * - 분류 모델은 클래스별, 특징별 평균과 표준편차를 담은 평탄한 배열이다. (대각 공분산 가우시안)
+ *   가장 로그 우도가 큰 클래스를 고른다. 기본 모델 값은 가속도 크기의 일반적인 범위에서 정한 추정치이며,
+ *   기록한 트레이스로 구한 값을 생성자로 넘겨 바꿀 수 있다.
+ * - 샘플마다 객체를 할당하지 않는다.
+ */
+public class ActivityRecognizer {
+    // 활동 종류
+    public static final int STILL = 0;
+    public static final int WALK = 1;
+    public static final int RUN = 2;
+    public static final int VEHICLE = 3;
+    public static final int CLASS_COUNT = 4;
+
+    // 특징
+    public static final int MEAN = 0;
+    public static final int VARIANCE = 1;
+    public static final int GAIT_ENERGY = 2;
+    public static final int HIGH_ENERGY = 3;
+    public static final int PEAK_RATE = 4;
+    public static final int FEATURE_COUNT = 5;
+
+    private static final String[] CLASS_NAMES = {"still", "walk", "run", "vehicle"};
+
+    // 특징 구간 크기 (2의 거듭제곱), SENSOR_DELAY_GAME 기준 약 1.3초
+    public static final int WINDOW_SIZE = 64;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+    // 분류에 필요한 최소 샘플 수 (약 0.9초, 걷기 두 걸음 정도)
+    public static final int MIN_SAMPLES = 45;
+
+    // 1차 저역통과 필터 계수: dt / (1 / (2 * pi * fc) + dt), dt = 0.02초
+    private static final float LOW_ALPHA = 0.1116f;     // fc = 1Hz
+    private static final float GAIT_ALPHA = 0.2737f;    // fc = 3Hz
+
+    // 피크 검출 (StepDetector와 같은 방식): 평균보다 HYSTERESIS 이상 올라갔다가 내려오면 피크
+    private static final float HYSTERESIS = 0.3f;
+    private static final float MIN_PEAK = 1.5f;
+    private static final long MIN_PEAK_INTERVAL_NS = 250000000L;
+
+    private static final double EPSILON = 1e-4;
+
+    // 기본 모델: [클래스 * FEATURE_COUNT + 특징]
+    // MEAN, VARIANCE는 log(m/s^2), log((m/s^2)^2), PEAK_RATE는 Hz
+    private static final float[] DEFAULT_MEANS = {
+            -2.8f, -6.5f, 0.10f, 0.50f, 0.0f,   // STILL
+            0.4f, -0.3f, 0.25f, 0.35f, 1.9f,    // WALK
+            1.5f, 1.8f, 0.20f, 0.45f, 2.6f,     // RUN
+            -0.6f, -2.5f, 0.10f, 0.55f, 0.2f    // VEHICLE
+    };
+    private static final float[] DEFAULT_DEVIATIONS = {
+            1.0f, 1.5f, 0.20f, 0.30f, 0.5f,
+            0.6f, 1.0f, 0.20f, 0.20f, 0.6f,
+            0.5f, 1.0f, 0.20f, 0.20f, 0.7f,
+            0.6f, 1.2f, 0.15f, 0.25f, 0.5f
+    };
+
+    // 모델: 분류할 때 곱셈만 하도록 분산의 역수와 정규화 항을 미리 계산
+    private final float[] means;
+    private final float[] inverseVariances;
+    private final float[] logNorms;
+
+    // 링 버퍼
+    private final float[] magnitudes = new float[WINDOW_SIZE];
+    private final float[] gaitSquares = new float[WINDOW_SIZE];
+    private final float[] highSquares = new float[WINDOW_SIZE];
+    private final boolean[] peaks = new boolean[WINDOW_SIZE];
+    private final long[] timestamps = new long[WINDOW_SIZE];
+    private int index;
+    private int count;
+
+    // 누적 합
+    private double sum;
+    private double sumSquares;
+    private double gaitSum;
+    private double highSum;
+    private int peakCount;
+
+    // 필터와 피크 검출 상태
+    private float low;
+    private float gait;
+    private boolean isAbove;
+    private float peak;
+    private long lastPeakTime;
+
+    private final float[] features = new float[FEATURE_COUNT];
+    private final double[] scores = new double[CLASS_COUNT];
+
+    public ActivityRecognizer() {
+        this(DEFAULT_MEANS, DEFAULT_DEVIATIONS);
+    }
+
+    /**
+     * @param means      - 클래스별 특징 평균 [클래스 * FEATURE_COUNT + 특징]
+     * @param deviations - 클래스별 특징 표준편차 (0보다 커야 함)
+     */
+    public ActivityRecognizer(float[] means, float[] deviations) {
+        if (means.length != CLASS_COUNT * FEATURE_COUNT || deviations.length != means.length) {
+            throw new IllegalArgumentException("model size must be " + CLASS_COUNT * FEATURE_COUNT);
+        }
+        this.means = means.clone();
+        inverseVariances = new float[means.length];
+        logNorms = new float[CLASS_COUNT];
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            double norm = 0;
+            for (int f = 0; f < FEATURE_COUNT; f++) {
+                double deviation = deviations[c * FEATURE_COUNT + f];
+                inverseVariances[c * FEATURE_COUNT + f] = (float) (1.0 / (deviation * deviation));
+                norm -= Math.log(deviation);
+            }
+            logNorms[c] = (float) norm;
+        }
+        reset();
+    }
+
+    public void reset() {
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            magnitudes[i] = 0;
+            gaitSquares[i] = 0;
+            highSquares[i] = 0;
+            peaks[i] = false;
+            timestamps[i] = 0;
+        }
+        index = 0;
+        count = 0;
+        sum = 0;
+        sumSquares = 0;
+        gaitSum = 0;
+        highSum = 0;
+        peakCount = 0;
+        isAbove = false;
+        peak = 0;
+        lastPeakTime = 0;
+    }
+
+    /**
+     * 샘플 하나를 처리한다.
+     *
+     * @param timestamp - 샘플 시각 (ns)
+     */
+    public void onSample(long timestamp, float x, float y, float z) {
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        if (count == 0) {
+            // 필터의 시작 과도 응답을 줄이기 위해 첫 값으로 초기화
+            low = magnitude;
+            gait = magnitude;
+        }
+        low += LOW_ALPHA * (magnitude - low);
+        gait += GAIT_ALPHA * (magnitude - gait);
+        float gaitBand = gait - low;
+        float highBand = magnitude - gait;
+
+        // 피크 검출: 3Hz 이하로 걸러낸 신호가 구간 평균 위로 올라갔다가 내려오면 피크
+        float mean = count == 0 ? magnitude : (float) (sum / Math.min(count, WINDOW_SIZE));
+        boolean isPeak = false;
+        if (!isAbove) {
+            if (gait > mean + HYSTERESIS) {
+                isAbove = true;
+                peak = gait;
+            }
+        } else if (gait > peak) {
+            peak = gait;
+        } else if (gait < mean) {
+            isAbove = false;
+            if (peak >= MIN_PEAK && timestamp - lastPeakTime >= MIN_PEAK_INTERVAL_NS) {
+                isPeak = true;
+                lastPeakTime = timestamp;
+            }
+        }
+
+        // 링 버퍼 갱신: 가장 오래된 값을 빼고 새 값을 더함
+        sum += magnitude - magnitudes[index];
+        sumSquares += magnitude * magnitude - magnitudes[index] * magnitudes[index];
+        gaitSum += gaitBand * gaitBand - gaitSquares[index];
+        highSum += highBand * highBand - highSquares[index];
+        if (peaks[index]) {
+            peakCount--;
+        }
+        if (isPeak) {
+            peakCount++;
+        }
+        magnitudes[index] = magnitude;
+        gaitSquares[index] = gaitBand * gaitBand;
+        highSquares[index] = highBand * highBand;
+        peaks[index] = isPeak;
+        timestamps[index] = timestamp;
+        index = (index + 1) & WINDOW_MASK;
+        count++;
+    }
+
+    // 분류에 충분한 샘플이 모였는지 여부
+    public boolean isReady() {
+        return count >= MIN_SAMPLES;
+    }
+
+    public int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * 현재 구간의 특징을 계산한다.
+     *
+     * @return 특징 배열 (내부 배열이므로 다음 호출 때 바뀜)
+     */
+    public float[] computeFeatures() {
+        int n = Math.min(count, WINDOW_SIZE);
+        if (n == 0) {
+            for (int f = 0; f < FEATURE_COUNT; f++) {
+                features[f] = 0;
+            }
+            return features;
+        }
+        double mean = sum / n;
+        double variance = Math.max(0, sumSquares / n - mean * mean);
+        double energy = variance + EPSILON;
+        features[MEAN] = (float) Math.log(mean + EPSILON);
+        features[VARIANCE] = (float) Math.log(energy);
+        features[GAIT_ENERGY] = (float) Math.min(1.0, Math.max(0, gaitSum) / n / energy);
+        features[HIGH_ENERGY] = (float) Math.min(1.0, Math.max(0, highSum) / n / energy);
+
+        // 구간의 가장 오래된 샘플부터 가장 최근 샘플까지의 시간
+        int oldest = count > WINDOW_SIZE ? index : 0;
+        int newest = (index - 1) & WINDOW_MASK;
+        long span = timestamps[newest] - timestamps[oldest];
+        features[PEAK_RATE] = span > 0 ? (float) (peakCount * 1e9 / span) : 0;
+        return features;
+    }
+
+    // 가장 가능성이 높은 활동
+    public int classify() {
+        return classify(STILL);
+    }
+
+    // 정지를 제외하고 가장 가능성이 높은 활동 (움직임은 이미 판정된 경우)
+    public int classifyMoving() {
+        return classify(WALK);
+    }
+
+    // 마지막 classify()의 클래스별 로그 우도 (상수항 제외)
+    public double getScore(int activity) {
+        return scores[activity];
+    }
+
+    public static String getName(int activity) {
+        return CLASS_NAMES[activity];
+    }
+
+    private int classify(int firstClass) {
+        computeFeatures();
+        int best = firstClass;
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            double score = logNorms[c];
+            int offset = c * FEATURE_COUNT;
+            for (int f = 0; f < FEATURE_COUNT; f++) {
+                float d = features[f] - means[offset + f];
+                score -= 0.5 * d * d * inverseVariances[offset + f];
+            }
+            scores[c] = score;
+            if (c > firstClass && score > scores[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,230 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * ActivityRecognizerBenchmark
+ * - ActivityRecognizer의 샘플당 특징 갱신 비용과 구간(센싱 구간 하나)당 분류 비용을 재는 PC(JVM)용 도구
+ * - 분류 결과는 TraceReplayer로 앱과 같은 경로(MovingMonitor.getActivity())를 거쳐 혼동 행렬로 출력한다.
+ *   MovementDetector가 움직임이 아니라고 하면 정지, 움직임이면 classifyMoving()의 결과를 쓴다.
+ * - "활동=트레이스" 인자로 기록한 트레이스(SensorTraceRecorder)를 주면 그 트레이스로 평가한다.
+ *   예) java ActivityRecognizerBenchmark 200000 walk=walk.attr vehicle=bus.attr
+ * - 트레이스가 없으면 구간마다 진폭, 주기, 잡음을 무작위로 뽑은 합성 신호로 평가한다.
+ *   범위는 휴대폰 가속도의 일반적인 범위로 정했고 모델 값(ActivityRecognizer.DEFAULT_MEANS)에 맞추지 않았다.
+ *   시간 측정용 신호와는 다른 seed를 쓴다.
+ *
+ * 사용법: java ActivityRecognizerBenchmark [구간 수] [활동=트레이스 ...]
+ */
+public class ActivityRecognizerBenchmark {
+    private static final long SAMPLE_PERIOD_NS = 20000000L;    // SENSOR_DELAY_GAME
+    // 센싱 구간 하나의 샘플 수 (ACTIVE_TIME 1초)
+    private static final int WINDOW_SAMPLES = 50;
+    // 합성 신호로 평가할 때 활동별 구간 수
+    private static final int EVALUATION_WINDOWS = 1000;
+    private static final long EVALUATION_SEED = 1000;
+
+    public static void main(String[] args) throws IOException {
+        int windows = args.length > 0 && args[0].indexOf('=') < 0 ? Integer.parseInt(args[0]) : 200000;
+
+        measureSpeed(windows);
+
+        int[][] confusion = new int[ActivityRecognizer.CLASS_COUNT][];
+        TraceReplayer replayer = new TraceReplayer();
+        boolean hasTrace = false;
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            int activity = findActivity(arg.substring(0, separator));
+            SensorTrace trace = SensorTrace.read(new File(arg.substring(separator + 1)));
+            add(confusion, activity, replayer.replay(trace));
+            hasTrace = true;
+        }
+        if (!hasTrace) {
+            for (int activity = 0; activity < ActivityRecognizer.CLASS_COUNT; activity++) {
+                int samples = EVALUATION_WINDOWS * WINDOW_SAMPLES;
+                long[] timestamps = new long[samples];
+                float[] values = synthesize(activity, timestamps, new Random(EVALUATION_SEED + activity));
+                add(confusion, activity, replayer.replay(timestamps, values, samples));
+            }
+        }
+        System.out.println(hasTrace ? "confusion matrix (recorded traces)" : "confusion matrix (held-out synthetic)");
+        printConfusion(confusion);
+    }
+
+    private static void measureSpeed(int windows) {
+        // 합성 신호를 미리 만들어 두고 측정에는 포함하지 않는다.
+        float[][] signals = new float[ActivityRecognizer.CLASS_COUNT][];
+        for (int activity = 0; activity < ActivityRecognizer.CLASS_COUNT; activity++) {
+            signals[activity] = synthesize(activity, new long[WINDOW_SAMPLES * 64], new Random(activity));
+        }
+
+        ActivityRecognizer recognizer = new ActivityRecognizer();
+        // 워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            boolean isWarmup = round == 0;
+            int n = isWarmup ? windows / 10 : windows;
+            long sampleTime = 0;
+            long classifyTime = 0;
+            int sink = 0;
+            for (int w = 0; w < n; w++) {
+                float[] signal = signals[w % ActivityRecognizer.CLASS_COUNT];
+                int offset = (w / ActivityRecognizer.CLASS_COUNT % 64) * WINDOW_SAMPLES * 3 % (signal.length - WINDOW_SAMPLES * 3);
+                offset -= offset % 3;
+                long start = System.nanoTime();
+                recognizer.reset();
+                for (int i = 0; i < WINDOW_SAMPLES; i++) {
+                    int s = offset + i * 3;
+                    recognizer.onSample(i * SAMPLE_PERIOD_NS, signal[s], signal[s + 1], signal[s + 2]);
+                }
+                long middle = System.nanoTime();
+                sink += recognizer.classifyMoving();
+                long end = System.nanoTime();
+                sampleTime += middle - start;
+                classifyTime += end - middle;
+            }
+            if (!isWarmup) {
+                System.out.println(String.format("%d windows: %.1f ns/sample, %.1f ns/classify, %.2f us/window (%d)",
+                        n, (double) sampleTime / n / WINDOW_SAMPLES, (double) classifyTime / n,
+                        (sampleTime + classifyTime) / 1e3 / n, sink));
+            }
+        }
+    }
+
+    private static int findActivity(String name) {
+        for (int activity = 0; activity < ActivityRecognizer.CLASS_COUNT; activity++) {
+            if (ActivityRecognizer.getName(activity).equalsIgnoreCase(name)) {
+                return activity;
+            }
+        }
+        throw new IllegalArgumentException("unknown activity: " + name);
+    }
+
+    private static void add(int[][] confusion, int activity, TraceReplayer.Result result) {
+        if (confusion[activity] == null) {
+            confusion[activity] = new int[ActivityRecognizer.CLASS_COUNT];
+        }
+        for (int c = 0; c < ActivityRecognizer.CLASS_COUNT; c++) {
+            confusion[activity][c] += result.activityWindows[c];
+        }
+    }
+
+    // 행: 실제 활동, 열: 분류 결과
+    private static void printConfusion(int[][] confusion) {
+        StringBuilder header = new StringBuilder(String.format("%-8s", "actual"));
+        for (int c = 0; c < ActivityRecognizer.CLASS_COUNT; c++) {
+            header.append(String.format(" %8s", ActivityRecognizer.getName(c)));
+        }
+        System.out.println(header.append("  accuracy"));
+        for (int activity = 0; activity < ActivityRecognizer.CLASS_COUNT; activity++) {
+            int[] row = confusion[activity];
+            if (row == null) {
+                continue;
+            }
+            StringBuilder builder = new StringBuilder(String.format("%-8s", ActivityRecognizer.getName(activity)));
+            int total = 0;
+            for (int c = 0; c < ActivityRecognizer.CLASS_COUNT; c++) {
+                builder.append(String.format(" %8d", row[c]));
+                total += row[c];
+            }
+            builder.append(String.format("  %5.1f%%", total == 0 ? 0 : 100.0 * row[activity] / total));
+            System.out.println(builder);
+        }
+    }
+
+    /**
+     * 활동을 흉내 낸 3축 선형 가속도 (x, y, z 순서로 이어 붙임)
+     * 구간(WINDOW_SAMPLES)마다 아래 범위에서 진폭, 주기, 잡음을 새로 뽑는다.
+     * - 정지: 잡음만 0.01 ~ 0.1 m/s^2
+     * - 걷기: 1.5 ~ 2.3Hz 걸음, 착지 피크 2 ~ 6 m/s^2
+     * - 달리기: 2.3 ~ 3.3Hz 걸음, 착지 피크 6 ~ 15 m/s^2
+     * - 차량: 0.05 ~ 0.3Hz 가감속 0.2 ~ 2 m/s^2, 0.1 ~ 0.5Hz 회전 0.1 ~ 1 m/s^2, 5 ~ 20Hz 노면 진동 0.1 ~ 1.5 m/s^2
+     *
+     * @param timestamps - 샘플 시각을 채울 배열 (길이 = 샘플 수)
+     */
+    private static float[] synthesize(int activity, long[] timestamps, Random random) {
+        int samples = timestamps.length;
+        float[] signal = new float[samples * 3];
+        double phase = 0;
+        double frequency = 0;
+        double amplitude = 0;
+        double sway = 0;
+        double noise = 0;
+        double slowFrequency = 0;
+        double turnFrequency = 0;
+        double turn = 0;
+        double vibration = 0;
+        double vibrationFrequency = 0;
+        for (int i = 0; i < samples; i++) {
+            if (i % WINDOW_SAMPLES == 0) {
+                switch (activity) {
+                    case ActivityRecognizer.WALK:
+                        frequency = uniform(random, 1.5, 2.3);
+                        amplitude = uniform(random, 2.0, 6.0);
+                        sway = uniform(random, 0.1, 0.4) * amplitude;
+                        noise = uniform(random, 0.1, 0.4);
+                        break;
+                    case ActivityRecognizer.RUN:
+                        frequency = uniform(random, 2.3, 3.3);
+                        amplitude = uniform(random, 6.0, 15.0);
+                        sway = uniform(random, 0.1, 0.4) * amplitude;
+                        noise = uniform(random, 0.3, 1.0);
+                        break;
+                    case ActivityRecognizer.VEHICLE:
+                        slowFrequency = uniform(random, 0.05, 0.3);
+                        amplitude = uniform(random, 0.2, 2.0);
+                        turnFrequency = uniform(random, 0.1, 0.5);
+                        turn = uniform(random, 0.1, 1.0);
+                        vibrationFrequency = uniform(random, 5.0, 20.0);
+                        vibration = uniform(random, 0.1, 1.5);
+                        noise = uniform(random, 0.05, 0.2);
+                        break;
+                    default:
+                        noise = uniform(random, 0.01, 0.1);
+                        break;
+                }
+            }
+            double t = i * SAMPLE_PERIOD_NS / 1e9;
+            double x;
+            double y;
+            double z;
+            switch (activity) {
+                case ActivityRecognizer.WALK:
+                case ActivityRecognizer.RUN:
+                    phase += 2 * Math.PI * frequency * (1 + 0.05 * random.nextGaussian()) * SAMPLE_PERIOD_NS / 1e9;
+                    z = gait(phase, amplitude);
+                    x = sway * Math.sin(phase / 2);
+                    y = 0.5 * sway * Math.sin(phase + 1);
+                    break;
+                case ActivityRecognizer.VEHICLE:
+                    x = amplitude * Math.sin(2 * Math.PI * slowFrequency * t);
+                    y = turn * Math.sin(2 * Math.PI * turnFrequency * t + 1);
+                    z = vibration * Math.sin(2 * Math.PI * vibrationFrequency * t);
+                    break;
+                default:
+                    x = 0;
+                    y = 0;
+                    z = 0;
+                    break;
+            }
+            timestamps[i] = i * SAMPLE_PERIOD_NS;
+            signal[i * 3] = (float) (x + noise * random.nextGaussian());
+            signal[i * 3 + 1] = (float) (y + noise * random.nextGaussian());
+            signal[i * 3 + 2] = (float) (z + noise * random.nextGaussian());
+        }
+        return signal;
+    }
+
+    private static double uniform(Random random, double min, double max) {
+        return min + random.nextDouble() * (max - min);
+    }
+
+    // 걸음 한 주기의 수직 가속도: 착지 때 큰 양의 피크, 나머지는 작은 음의 골
+    private static double gait(double phase, double amplitude) {
+        double s = Math.sin(phase);
+        return s > 0 ? amplitude * s * s * s : 0.3 * amplitude * s;
+    }
+}
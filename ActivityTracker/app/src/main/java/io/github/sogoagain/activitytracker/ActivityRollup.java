@@ -0,0 +1,206 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * ActivityRollup
+ * - 상태 구간 segment 파일 하나(하루)를 시간 단위로 미리 집계해 둔 값 (Android 의존성 없음)
+ *   시간별 이동 시간(ms)과 걸음 수, 시간별 장소 머문 시간(ms), 그리고 파일 전체의 합계
+ * - 시간 구간은 epoch 기준 1시간 단위이다. 구간이 여러 시간에 걸치면 겹치는 시간만큼 나누어 넣고
+ *   걸음 수도 같은 비율로 나눈다. (나눈 걸음 수의 합은 원래 걸음 수와 같음)
+ * - 자정을 넘긴 구간은 시작한 날짜의 파일에 기록되므로 집계 범위가 다음 날로 넘어갈 수 있다.
+ * - ActivityQuery가 파일의 크기나 수정 시각이 바뀌었을 때만 다시 만든다. (isUpToDate)
+ */
+public class ActivityRollup {
+    public static final long HOUR = 60 * 60 * 1000L;
+
+    private final int recordCount;
+    // 집계한 파일의 크기와 수정 시각 (파일에서 만들었을 때)
+    private long fileLength = -1;
+    private long fileModified;
+
+    // 첫 시간 구간의 epoch 시간 번호 (시각 / HOUR)
+    private long firstHour;
+    private int hourCount;
+    private long[] movingMillis = new long[0];
+    private long[] steps = new long[0];
+
+    // 시간별 장소 머문 시간: (시간 번호, 장소 번호, ms)
+    private long[] dwellHours = new long[16];
+    private int[] dwellPlaces = new int[16];
+    private long[] dwellMillis = new long[16];
+    private int dwellCount;
+
+    // 파일 전체 합계
+    private long totalMovingMillis;
+    private long totalSteps;
+    private long[] totalDwellMillis = new long[8];
+    private int placeCount;
+
+    private ActivityRollup(int recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    // 구간이 없는 집계 (파일을 읽을 수 없을 때)
+    public static ActivityRollup empty() {
+        return new ActivityRollup(0);
+    }
+
+    public static ActivityRollup build(File file) throws IOException {
+        // 읽기 전에 확인해 두므로 읽는 도중 기록이 추가되면 다음 조회에서 다시 만든다.
+        long length = file.length();
+        long modified = file.lastModified();
+        ActivityRollup rollup = build(SegmentLogReader.open(file));
+        rollup.fileLength = length;
+        rollup.fileModified = modified;
+        return rollup;
+    }
+
+    // log의 모든 구간을 집계한다. (구간 범위를 먼저 확인하고 배열을 한 번만 할당)
+    public static ActivityRollup build(SegmentLogReader log) {
+        int count = log.size();
+        ActivityRollup rollup = new ActivityRollup(count);
+        if (count == 0) {
+            return rollup;
+        }
+        long minStart = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            minStart = Math.min(minStart, log.getStart(i));
+            maxEnd = Math.max(maxEnd, log.getEnd(i));
+        }
+        rollup.firstHour = minStart / HOUR;
+        rollup.hourCount = (int) (Math.max(maxEnd - 1, minStart) / HOUR - rollup.firstHour + 1);
+        rollup.movingMillis = new long[rollup.hourCount];
+        rollup.steps = new long[rollup.hourCount];
+        for (int i = 0; i < count; i++) {
+            rollup.add(log.getStart(i), log.getEnd(i), log.getState(i), log.getSteps(i), log.getPlace(i));
+        }
+        return rollup;
+    }
+
+    private void add(long start, long end, int state, int segmentSteps, int place) {
+        if (end <= start) {
+            return;
+        }
+        long duration = end - start;
+        long elapsed = 0;
+        long assignedSteps = 0;
+        for (long hour = start / HOUR; hour * HOUR < end; hour++) {
+            long overlap = Math.min(end, (hour + 1) * HOUR) - Math.max(start, hour * HOUR);
+            elapsed += overlap;
+            int bucket = (int) (hour - firstHour);
+            if (state == SegmentLogWriter.MOVING) {
+                long cumulative = segmentSteps * elapsed / duration;
+                movingMillis[bucket] += overlap;
+                steps[bucket] += cumulative - assignedSteps;
+                assignedSteps = cumulative;
+            } else if (state == SegmentLogWriter.STILL && place >= 0) {
+                addDwell(hour, place, overlap);
+            }
+        }
+        if (state == SegmentLogWriter.MOVING) {
+            totalMovingMillis += duration;
+            totalSteps += segmentSteps;
+        } else if (state == SegmentLogWriter.STILL && place >= 0) {
+            if (place >= totalDwellMillis.length) {
+                totalDwellMillis = Arrays.copyOf(totalDwellMillis, Math.max(place + 1, totalDwellMillis.length * 2));
+            }
+            totalDwellMillis[place] += duration;
+            placeCount = Math.max(placeCount, place + 1);
+        }
+    }
+
+    private void addDwell(long hour, int place, long millis) {
+        // 바로 앞 항목과 같은 시간, 같은 장소이면 합친다. (정지 구간이 이어지는 경우)
+        int last = dwellCount - 1;
+        if (last >= 0 && dwellHours[last] == hour && dwellPlaces[last] == place) {
+            dwellMillis[last] += millis;
+            return;
+        }
+        if (dwellCount == dwellHours.length) {
+            dwellHours = Arrays.copyOf(dwellHours, dwellCount * 2);
+            dwellPlaces = Arrays.copyOf(dwellPlaces, dwellCount * 2);
+            dwellMillis = Arrays.copyOf(dwellMillis, dwellCount * 2);
+        }
+        dwellHours[dwellCount] = hour;
+        dwellPlaces[dwellCount] = place;
+        dwellMillis[dwellCount] = millis;
+        dwellCount++;
+    }
+
+    // 집계에 쓴 레코드 수
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 집계한 뒤로 파일이 바뀌지 않았는지 여부
+     * 레코드 수만 비교하면 로그를 지우고 같은 날짜의 파일이 같은 레코드 수로 다시 만들어졌을 때 알 수 없으므로
+     * 크기와 수정 시각을 함께 비교한다.
+     */
+    public boolean isUpToDate(File file) {
+        return fileLength >= 0 && file.length() == fileLength && file.lastModified() == fileModified;
+    }
+
+    // 집계 범위 [getStartTime(), getEndTime()) (epoch ms, 시간 단위)
+    public long getStartTime() {
+        return firstHour * HOUR;
+    }
+
+    public long getEndTime() {
+        return (firstHour + hourCount) * HOUR;
+    }
+
+    public int getHourCount() {
+        return hourCount;
+    }
+
+    // index번째 시간 구간의 시작 시각
+    public long getHourStart(int index) {
+        return (firstHour + index) * HOUR;
+    }
+
+    public long getMovingMillis(int index) {
+        return movingMillis[index];
+    }
+
+    public long getSteps(int index) {
+        return steps[index];
+    }
+
+    public int getDwellCount() {
+        return dwellCount;
+    }
+
+    public long getDwellHourStart(int index) {
+        return dwellHours[index] * HOUR;
+    }
+
+    public int getDwellPlace(int index) {
+        return dwellPlaces[index];
+    }
+
+    public long getDwellMillis(int index) {
+        return dwellMillis[index];
+    }
+
+    public long getTotalMovingMillis() {
+        return totalMovingMillis;
+    }
+
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    // 장소 번호 범위 [0, getPlaceCount())
+    public int getPlaceCount() {
+        return placeCount;
+    }
+
+    public long getTotalDwellMillis(int place) {
+        return place >= 0 && place < placeCount ? totalDwellMillis[place] : 0;
+    }
+}
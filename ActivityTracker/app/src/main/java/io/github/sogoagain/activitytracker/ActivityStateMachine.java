@@ -0,0 +1,80 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * ActivityStateMachine
+ * - 센싱 구간마다 나오는 활동 판정(분류기 출력)을 받아 상태 구간을 만드는 상태 기계
+ *   상태는 SegmentLogWriter.STILL(정지), MOVING(도보 이동), VEHICLE(차량 이동)
+ * - Android 의존성이 없으므로 기록된 타임라인을 PC(JVM)에서 그대로 흘려 넣을 수 있다.
+ *
+ * 상태 전이 규칙 (히스테리시스)
+ * - 판정이 현재 상태와 다르고, 현재 상태가 시작된 지 아래 시간 이상 지났을 때만 상태를 바꾼다.
+ *   이동(도보, 차량)으로 바뀌려면 movingThreshold, 정지로 바뀌려면 stayingThreshold
+ * - 상태가 바뀌면 직전 상태 구간을 onSegment()로, 새 상태를 onStateChanged()로 알린다.
+ */
+public class ActivityStateMachine {
+
+    public interface Listener {
+        // 상태 구간 하나가 끝남
+        void onSegment(long start, long end, int state);
+
+        // 새 상태가 시작됨
+        void onStateChanged(int state, long time);
+    }
+
+    private final long movingThreshold;
+    private final long stayingThreshold;
+    private final Listener listener;
+
+    private int state = SegmentLogWriter.STILL;
+    private long startTime;
+
+    public ActivityStateMachine(long movingThreshold, long stayingThreshold, long startTime, Listener listener) {
+        this.movingThreshold = movingThreshold;
+        this.stayingThreshold = stayingThreshold;
+        this.startTime = startTime;
+        this.listener = listener;
+    }
+
+    /**
+     * 분류기 출력 하나를 처리한다.
+     *
+     * @param time     - 판정 시각 (ms)
+     * @param newState - 판정 결과 (SegmentLogWriter.STILL, MOVING, VEHICLE)
+     * @return 상태가 바뀌었으면 true
+     */
+    public boolean onClassification(long time, int newState) {
+        if (newState == state) {
+            return false;
+        }
+        long threshold = newState == SegmentLogWriter.STILL ? stayingThreshold : movingThreshold;
+        if (time - startTime < threshold) {
+            return false;
+        }
+
+        // 이전 상태 구간을 내보내고 새 상태 시작
+        listener.onSegment(startTime, time, state);
+        state = newState;
+        startTime = time;
+        listener.onStateChanged(newState, time);
+        return true;
+    }
+
+    // 모니터링 종료: 진행 중인 구간을 time에서 끝내고 내보낸다.
+    public void finish(long time) {
+        listener.onSegment(startTime, time, state);
+        startTime = time;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    // 도보 또는 차량 이동 중
+    public boolean isMoving() {
+        return state != SegmentLogWriter.STILL;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+}
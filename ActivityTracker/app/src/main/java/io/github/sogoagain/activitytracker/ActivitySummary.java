@@ -0,0 +1,198 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ActivitySummary
+ * - 상태 구간 로그 전체의 누적 통계 (Android 의존성 없음)
+ *   총 이동 시간(분), 총 걸음 수, 장소별 머문 시간(분), 가장 오래 머문 지정 장소
+ * - 서비스가 구간을 기록할 때마다 add()로 갱신하고 파일로 저장하므로
+ *   화면에서는 로그 길이와 관계없이 O(1)로 통계를 보여 줄 수 있다.
+ * - 마지막으로 반영한 구간의 시각을 함께 저장해 두고, 로그의 마지막 구간과 다르면 rebuild()로 로그에서 다시 계산한다.
+ *   (보관 기간이 지난 segment가 지워져도 누적 통계는 유지된다. rebuild()는 남아 있는 로그만 반영)
+ *
+ * 파일 형식 (big-endian)
+ * - int MAGIC, int VERSION, int 구간 수, long 마지막 구간 시작 시각, long 마지막 구간 종료 시각,
+ *   long 이동 시간(분), long 걸음 수, int 장소 수, int[장소 수] 머문 시간(분)
+ */
+public class ActivitySummary {
+    public static final String FILE_NAME = "ActivityTrackerSummary.bin";
+    public static final int NO_PLACE = -1;
+
+    private static final int MAGIC = 0x41545355;    // "ATSU"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 48;
+
+    private int segmentCount;
+    private long lastStart;
+    private long lastEnd;
+    private long movingMinutes;
+    private long steps;
+    // 장소 번호(PlaceDictionary)별 머문 시간 (분)
+    private int[] dwellMinutes = new int[8];
+    private int placeCount;
+    private int topPlace = NO_PLACE;
+
+    /**
+     * 구간 하나를 반영한다.
+     * 가장 오래 머문 장소는 머문 시간이 늘어난 장소와 기존 1위만 비교하여 갱신한다.
+     * (머문 시간은 줄어들지 않으므로 전체를 다시 볼 필요가 없음)
+     */
+    public void add(long start, long end, int state, int segmentSteps, int place) {
+        segmentCount++;
+        lastStart = start;
+        lastEnd = end;
+        int minutes = SegmentFormatter.toMinutes(end - start);
+        if (state == SegmentLogWriter.MOVING) {
+            movingMinutes += minutes;
+            steps += segmentSteps;
+            return;
+        }
+        // 차량 이동 구간은 도보 이동 시간에도, 머문 시간에도 넣지 않는다.
+        if (state != SegmentLogWriter.STILL || place < 0) {
+            return;
+        }
+        ensureCapacity(place + 1);
+        dwellMinutes[place] += minutes;
+        if (place >= PlaceDictionary.FIRST_NAMED) {
+            updateTopPlace(place);
+        }
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public long getMovingMinutes() {
+        return movingMinutes;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    // 가장 오래 머문 지정 장소 번호 ("실내", "실외" 제외), 없으면 NO_PLACE
+    public int getTopPlace() {
+        return topPlace;
+    }
+
+    public int getDwellMinutes(int place) {
+        return place >= 0 && place < placeCount ? dwellMinutes[place] : 0;
+    }
+
+    /**
+     * 로그의 마지막 구간까지 반영되어 있는지 여부
+     *
+     * @param logCount  - 로그의 구간 수
+     * @param lastStart - 로그의 마지막 구간 시작 시각 (logCount가 0이면 무시)
+     * @param lastEnd   - 로그의 마지막 구간 종료 시각 (logCount가 0이면 무시)
+     */
+    public boolean isUpToDate(int logCount, long lastStart, long lastEnd) {
+        if (logCount == 0) {
+            return segmentCount == 0;
+        }
+        return segmentCount > 0 && this.lastStart == lastStart && this.lastEnd == lastEnd;
+    }
+
+    public boolean isUpToDate(SegmentLogReader log) {
+        int last = log.size() - 1;
+        return last < 0 ? isUpToDate(0, 0, 0) : isUpToDate(log.size(), log.getStart(last), log.getEnd(last));
+    }
+
+    // 로그 전체를 다시 읽어 통계를 계산한다. (파일이 없거나 맞지 않을 때의 복구용)
+    public static ActivitySummary rebuild(SegmentLogReader log) {
+        ActivitySummary summary = new ActivitySummary();
+        for (int i = 0; i < log.size(); i++) {
+            summary.add(log.getStart(i), log.getEnd(i), log.getState(i), log.getSteps(i), log.getPlace(i));
+        }
+        return summary;
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + placeCount * 4);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(segmentCount);
+        buffer.putLong(lastStart);
+        buffer.putLong(lastEnd);
+        buffer.putLong(movingMinutes);
+        buffer.putLong(steps);
+        buffer.putInt(placeCount);
+        for (int i = 0; i < placeCount; i++) {
+            buffer.putInt(dwellMinutes[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 파일에서 읽기
+     *
+     * @return 파일이 없거나 형식이 맞지 않으면 null
+     */
+    public static ActivitySummary read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                ActivitySummary summary = new ActivitySummary();
+                summary.segmentCount = in.readInt();
+                summary.lastStart = in.readLong();
+                summary.lastEnd = in.readLong();
+                summary.movingMinutes = in.readLong();
+                summary.steps = in.readLong();
+                int count = in.readInt();
+                summary.ensureCapacity(count);
+                for (int place = 0; place < count; place++) {
+                    summary.dwellMinutes[place] = in.readInt();
+                    if (place >= PlaceDictionary.FIRST_NAMED) {
+                        summary.updateTopPlace(place);
+                    }
+                }
+                return summary;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * toByteArray()의 내용을 파일에 저장한다.
+     * SnapshotFile로 저장하므로 저장 도중 종료되어도 이전 내용이 남는다.
+     */
+    public static void write(File file, byte[] data) throws IOException {
+        SnapshotFile.write(file, data);
+    }
+
+    // 머문 시간이 같으면 번호가 작은 장소
+    private void updateTopPlace(int place) {
+        if (dwellMinutes[place] <= 0) {
+            return;
+        }
+        if (topPlace == NO_PLACE || dwellMinutes[place] > dwellMinutes[topPlace]
+                || (dwellMinutes[place] == dwellMinutes[topPlace] && place < topPlace)) {
+            topPlace = place;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > dwellMinutes.length) {
+            dwellMinutes = Arrays.copyOf(dwellMinutes, Math.max(count, dwellMinutes.length * 2));
+        }
+        if (count > placeCount) {
+            placeCount = count;
+        }
+    }
+}
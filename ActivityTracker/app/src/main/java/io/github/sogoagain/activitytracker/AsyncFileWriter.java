@@ -0,0 +1,372 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AsyncFileWriter
+ * - 파일 append를 백그라운드 스레드 하나에서 모아서 처리하는 writer (Android 의존성 없음)
+ * - write()는 기록할 내용을 큐에 넣고 바로 돌아오므로 main 스레드에서 호출해도 된다.
+ *   큐가 가득 차면 자리가 날 때까지 기다린다. (기록을 버리지 않음)
+ * - writer 스레드는 큐에 쌓인 기록을 최대 MAX_BATCH개까지 한 번에 꺼내서
+ *   파일마다 한 번 열고, 한 번 write하고, 닫는다. (group commit)
+ *   같은 파일에 대한 기록 순서는 write() 호출 순서와 같다.
+ *
+ * flush 정책
+ * - SYNC_NONE: batch마다 write만 하고 fsync는 하지 않는다. (디스크 기록은 OS에 맡김)
+ * - SYNC_EVERY_BATCH: batch마다 fsync
+ * - SYNC_INTERVAL: 마지막 fsync로부터 syncInterval(ms)이 지난 batch에서 fsync
+ * - drain()은 정책과 관계없이 그때까지 넣은 기록을 모두 쓰고 fsync한다. (서비스 종료 시)
+ * - fsync할 때는 이번 batch의 파일뿐 아니라 마지막 fsync 이후 기록한 모든 파일을 fsync한다.
+ *
+ * 기록에 실패한 파일(IOException)의 기록은 callback을 호출하지 않는다.
+ * (callback은 기록이 파일에 들어간 뒤에만 할 일, 예를 들어 로그보다 앞서면 안 되는 통계 저장에 쓰이기 때문)
+ */
+public class AsyncFileWriter {
+    public static final int SYNC_NONE = 0;
+    public static final int SYNC_EVERY_BATCH = 1;
+    public static final int SYNC_INTERVAL = 2;
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+
+    private static AsyncFileWriter instance;
+
+    // 큐에 넣는 기록 하나. file이 null이면 drain()의 표시
+    private static class Record {
+        final File file;
+        final byte[] header;
+        final byte[] data;
+        final Runnable callback;
+        final CountDownLatch barrier;
+        final long enqueueTime;
+
+        Record(File file, byte[] header, byte[] data, Runnable callback, CountDownLatch barrier) {
+            this.file = file;
+            this.header = header;
+            this.data = data;
+            this.callback = callback;
+            this.barrier = barrier;
+            this.enqueueTime = System.nanoTime();
+        }
+    }
+
+    private final ArrayBlockingQueue<Record> queue;
+    private final Thread thread;
+
+    private volatile int syncPolicy = SYNC_NONE;
+    private volatile long syncInterval = 0;
+    private long lastSyncTime;
+    // 마지막 fsync 이후 기록한 파일 (writer 스레드만 사용)
+    private final HashSet<File> unsyncedFiles = new HashSet<>();
+
+    // 통계 (writer 스레드만 갱신)
+    private volatile long recordsWritten;
+    private volatile long bytesWritten;
+    private volatile long batches;
+    private volatile long syncs;
+    private volatile long errors;
+    private volatile int maxQueueDepth;
+    private volatile long totalLatency;     // 큐에 넣은 뒤 기록될 때까지 (ns)
+    private volatile long maxLatency;
+    private volatile long totalCommitTime;  // batch 하나를 기록하는 데 걸린 시간 (ns)
+    private volatile long maxCommitTime;
+    // 큐가 가득 차서 write()가 기다린 횟수
+    private final AtomicLong blockedWrites = new AtomicLong();
+
+    // 프로세스 안의 모든 파일 기록이 공유하는 writer
+    public static synchronized AsyncFileWriter getInstance() {
+        if (instance == null) {
+            instance = new AsyncFileWriter(QUEUE_CAPACITY);
+        }
+        return instance;
+    }
+
+    public AsyncFileWriter(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, "AsyncFileWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param policy   - SYNC_NONE, SYNC_EVERY_BATCH, SYNC_INTERVAL
+     * @param interval - SYNC_INTERVAL일 때 fsync 간격 (ms)
+     */
+    public void setSyncPolicy(int policy, long interval) {
+        syncInterval = interval;
+        syncPolicy = policy;
+    }
+
+    public void write(File file, byte[] data) {
+        write(file, null, data, null);
+    }
+
+    /**
+     * 파일 끝에 data를 덧붙이도록 큐에 넣는다.
+     *
+     * @param header   - 기록 시점에 파일이 비어 있으면 data 앞에 먼저 쓸 내용 (없으면 null)
+     * @param callback - 기록이 끝난 뒤 writer 스레드에서 호출 (없으면 null). 기록에 실패하면 호출하지 않는다.
+     */
+    public void write(File file, byte[] header, byte[] data, Runnable callback) {
+        enqueue(new Record(file, header, data, callback, null));
+    }
+
+    /**
+     * 그때까지 넣은 기록을 모두 쓰고 fsync할 때까지 기다린다.
+     *
+     * @return timeout(ms) 안에 끝나면 true
+     */
+    public boolean drain(long timeout) {
+        CountDownLatch barrier = new CountDownLatch(1);
+        enqueue(new Record(null, null, null, null, barrier));
+        try {
+            return barrier.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getSyncs() {
+        return syncs;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getBlockedWrites() {
+        return blockedWrites.get();
+    }
+
+    // 큐에 넣은 뒤 기록될 때까지 걸린 평균 시간 (ns)
+    public long getAverageLatency() {
+        long count = recordsWritten;
+        return count == 0 ? 0 : totalLatency / count;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    // batch 하나를 기록하는 데 걸린 평균 시간 (ns)
+    public long getAverageCommitTime() {
+        long count = batches;
+        return count == 0 ? 0 : totalCommitTime / count;
+    }
+
+    public long getMaxCommitTime() {
+        return maxCommitTime;
+    }
+
+    private void enqueue(Record record) {
+        if (queue.offer(record)) {
+            return;
+        }
+        blockedWrites.incrementAndGet();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(record);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        ArrayList<Record> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(ArrayList<Record> batch) {
+        long startTime = System.nanoTime();
+        int depth = batch.size() + queue.size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+
+        // 파일별로 내용을 모은다. (처음 나온 파일 순서로 기록)
+        boolean isDrain = false;
+        int count = 0;
+        LinkedHashMap<File, ByteArrayOutputStream> buffers = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            if (record.file == null) {
+                isDrain = true;
+                continue;
+            }
+            ByteArrayOutputStream buffer = buffers.get(record.file);
+            if (buffer == null) {
+                buffer = new ByteArrayOutputStream();
+                buffers.put(record.file, buffer);
+            }
+            if (record.header != null && buffer.size() == 0 && record.file.length() == 0) {
+                buffer.write(record.header, 0, record.header.length);
+            }
+            buffer.write(record.data, 0, record.data.length);
+            count++;
+        }
+
+        boolean sync = isDrain || syncPolicy == SYNC_EVERY_BATCH
+                || (syncPolicy == SYNC_INTERVAL && startTime - lastSyncTime >= syncInterval * 1000000);
+        long bytes = 0;
+        HashSet<File> failedFiles = null;
+        for (Map.Entry<File, ByteArrayOutputStream> entry : buffers.entrySet()) {
+            File file = entry.getKey();
+            unsyncedFiles.add(file);
+            FileOutputStream fos = null;
+            try {
+                fos = new FileOutputStream(file, true);
+                entry.getValue().writeTo(fos);
+                if (sync) {
+                    fos.getFD().sync();
+                    unsyncedFiles.remove(file);
+                }
+                bytes += entry.getValue().size();
+            } catch (IOException e) {
+                e.printStackTrace();
+                errors++;
+                if (failedFiles == null) {
+                    failedFiles = new HashSet<>();
+                }
+                failedFiles.add(file);
+            } finally {
+                if (fos != null) {
+                    try {
+                        fos.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        if (sync) {
+            // 이전 batch에서 fsync 없이 기록한 파일들
+            syncUnsyncedFiles();
+        }
+        long endTime = System.nanoTime();
+        if (sync) {
+            lastSyncTime = endTime;
+            syncs++;
+        }
+
+        // 통계
+        long latencySum = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            if (record.file == null) {
+                continue;
+            }
+            long latency = endTime - record.enqueueTime;
+            latencySum += latency;
+            if (latency > maxLatency) {
+                maxLatency = latency;
+            }
+        }
+        totalLatency += latencySum;
+        recordsWritten += count;
+        bytesWritten += bytes;
+        batches++;
+        long commitTime = endTime - startTime;
+        totalCommitTime += commitTime;
+        if (commitTime > maxCommitTime) {
+            maxCommitTime = commitTime;
+        }
+
+        // 기록이 끝났음을 알림 (기록에 실패한 파일은 제외)
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            if (record.callback != null && (failedFiles == null || !failedFiles.contains(record.file))) {
+                try {
+                    record.callback.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (record.barrier != null) {
+                record.barrier.countDown();
+            }
+        }
+    }
+
+    // 마지막 fsync 이후 기록한 파일들을 fsync한다. 실패한 파일은 다음 fsync 때 다시 시도
+    private void syncUnsyncedFiles() {
+        ArrayList<File> files = new ArrayList<>(unsyncedFiles);
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            // 그 사이에 지워진 파일(로그 삭제, 보관 기간 정리)은 다시 만들지 않는다.
+            if (!file.exists()) {
+                unsyncedFiles.remove(file);
+                continue;
+            }
+            FileOutputStream fos = null;
+            try {
+                // 같은 파일을 다시 열어도 fsync는 파일 전체의 기록을 디스크에 내린다.
+                fos = new FileOutputStream(file, true);
+                fos.getFD().sync();
+                unsyncedFiles.remove(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+                errors++;
+            } finally {
+                if (fos != null) {
+                    try {
+                        fos.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+}
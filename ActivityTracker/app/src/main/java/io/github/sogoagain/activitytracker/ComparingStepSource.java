@@ -0,0 +1,118 @@
+package io.github.sogoagain.activitytracker;
+
+import android.util.Log;
+
+/**
+ * ComparingStepSource
+ * - 두 StepSource를 함께 켜고, 걸음 수는 primary의 값을 사용하는 비교 모드
+ * - resetSteps()가 불릴 때마다(상태 구간을 기록할 때마다) 두 방식의 걸음 수와 AP로 전달된 이벤트 수를
+ *   CSV로 기록해서 정확도와 전력(가속도 센서 사용, AP wakeup) 차이를 비교할 수 있게 한다.
+ *   한 줄에 "구간 시작(epoch ms),구간 끝,이름,걸음 수,이벤트 수,전달 수,이름,걸음 수,이벤트 수,전달 수" (primary, reference 순)
+ * - main 스레드에서만 호출한다고 가정한다.
+ */
+public class ComparingStepSource implements StepSource {
+    private static final String TAG = "AT_ComparingStepSource";
+    public static final String DIRECTORY_NAME = "ActivityTrackerStepCompare";
+
+    private final StepSource primary;
+    private final StepSource reference;
+    private final TextFileManager fileManager = new TextFileManager(DIRECTORY_NAME);
+    private final StringBuilder builder = new StringBuilder(96);
+
+    // 이번 구간의 시작 시각과, 구간을 시작할 때의 이벤트/전달 수
+    private long resetTime = System.currentTimeMillis();
+    private long primaryEvents;
+    private long primaryDeliveries;
+    private long referenceEvents;
+    private long referenceDeliveries;
+
+    /**
+     * @param primary   - 기록에 사용할 걸음 수
+     * @param reference - 비교 대상
+     */
+    public ComparingStepSource(StepSource primary, StepSource reference) {
+        this.primary = primary;
+        this.reference = reference;
+    }
+
+    public boolean start() {
+        boolean started = primary.start();
+        reference.start();
+        return started;
+    }
+
+    // 두 방식 모두 남은 이벤트까지 반영된 뒤 onStopped 호출
+    public void stop(final Runnable onStopped) {
+        final int[] remaining = {2};
+        Runnable stopped = new Runnable() {
+            @Override
+            public void run() {
+                if (--remaining[0] == 0 && onStopped != null) {
+                    onStopped.run();
+                }
+            }
+        };
+        primary.stop(stopped);
+        reference.stop(stopped);
+    }
+
+    public boolean isStarted() {
+        return primary.isStarted();
+    }
+
+    public boolean isFlushing() {
+        return primary.isFlushing() || reference.isFlushing();
+    }
+
+    public int getSteps() {
+        return primary.getSteps();
+    }
+
+    // 이번 구간의 두 결과를 기록한 뒤 둘 다 0부터 다시 센다.
+    public void resetSteps() {
+        long now = System.currentTimeMillis();
+        int primarySteps = primary.getSteps();
+        int referenceSteps = reference.getSteps();
+        long events = primary.getEventCount() - primaryEvents;
+        long deliveries = primary.getDeliveryCount() - primaryDeliveries;
+        long otherEvents = reference.getEventCount() - referenceEvents;
+        long otherDeliveries = reference.getDeliveryCount() - referenceDeliveries;
+
+        // 두 방식 모두 측정하지 않은 구간(정지 구간)은 기록하지 않는다.
+        if (primarySteps > 0 || referenceSteps > 0 || events > 0 || otherEvents > 0) {
+            builder.setLength(0);
+            builder.append(resetTime).append(',').append(now)
+                    .append(',').append(primary.getName()).append(',').append(primarySteps)
+                    .append(',').append(events).append(',').append(deliveries)
+                    .append(',').append(reference.getName()).append(',').append(referenceSteps)
+                    .append(',').append(otherEvents).append(',').append(otherDeliveries).append('\n');
+            fileManager.save(builder.toString());
+            Log.d(TAG, primary.getName() + ": " + primarySteps + " steps / " + deliveries + " deliveries, "
+                    + reference.getName() + ": " + referenceSteps + " steps / " + otherDeliveries + " deliveries");
+        }
+
+        primary.resetSteps();
+        reference.resetSteps();
+        resetTime = now;
+        primaryEvents = primary.getEventCount();
+        primaryDeliveries = primary.getDeliveryCount();
+        referenceEvents = reference.getEventCount();
+        referenceDeliveries = reference.getDeliveryCount();
+    }
+
+    public long getEventCount() {
+        return primary.getEventCount() + reference.getEventCount();
+    }
+
+    public long getDeliveryCount() {
+        return primary.getDeliveryCount() + reference.getDeliveryCount();
+    }
+
+    public boolean usesAccelerometer() {
+        return primary.usesAccelerometer() || reference.usesAccelerometer();
+    }
+
+    public String getName() {
+        return primary.getName() + " vs " + reference.getName();
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.TimeZone;
+
+/**
+ * DutyCycleEvaluator
+ * - 기록된 이동/정지 타임라인을 DutyCyclePolicy에 재생하여 정책을 비교하는 오프라인 평가기 (Android 의존성 없음)
+ *   java io.github.sogoagain.activitytracker.DutyCycleEvaluator timeline.csv
+ * - 타임라인 파일은 한 줄에 "시작시각(ms),종료시각(ms),상태(1: 이동, 0: 정지)" 형식의 구간 하나
+ * - 센싱 시각마다 실제 상태를 정책에 넘겨 다음 주기를 얻고,
+ *   시간당 깨어난 횟수와 한 번도 관측되지 못한 구간(놓친 상태 변화), 상태 변화 감지 지연을 계산한다.
+ */
+public class DutyCycleEvaluator {
+    private static final long HOUR = 3600000L;
+
+    /**
+     * 이동/정지 구간들의 나열
+     */
+    public static class Timeline {
+        private long[] starts;
+        private long[] ends;
+        private boolean[] moving;
+        private int count;
+
+        public Timeline() {
+            starts = new long[64];
+            ends = new long[64];
+            moving = new boolean[64];
+        }
+
+        public void add(long start, long end, boolean isMoving) {
+            if (count == starts.length) {
+                starts = java.util.Arrays.copyOf(starts, count * 2);
+                ends = java.util.Arrays.copyOf(ends, count * 2);
+                moving = java.util.Arrays.copyOf(moving, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            moving[count] = isMoving;
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public static Timeline read(String path) throws IOException {
+            Timeline timeline = new Timeline();
+            BufferedReader reader = new BufferedReader(new FileReader(path));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split(",");
+                    timeline.add(Long.parseLong(fields[0].trim()), Long.parseLong(fields[1].trim()),
+                            Integer.parseInt(fields[2].trim()) != 0);
+                }
+            } finally {
+                reader.close();
+            }
+            return timeline;
+        }
+    }
+
+    /**
+     * 정책 하나의 평가 결과
+     */
+    public static class Result {
+        public String policy;
+        public long wakeups;
+        public long duration;           // 타임라인 길이 (ms)
+        public int transitions;         // 실제 상태 변화 수
+        public int missedTransitions;   // 관측 결과로는 보이지 않은 상태 변화 수 (transitions = missed + detected)
+        public long totalDetectionDelay;// 관측된 구간의 시작부터 첫 센싱까지 지연 합 (ms)
+        public int detectedTransitions;
+
+        public double getWakeupsPerHour() {
+            return duration == 0 ? 0 : wakeups * (double) HOUR / duration;
+        }
+
+        public long getAverageDetectionDelay() {
+            return detectedTransitions == 0 ? 0 : totalDetectionDelay / detectedTransitions;
+        }
+
+        @Override
+        public String toString() {
+            return policy + ": wakeups/h=" + String.format(java.util.Locale.US, "%.1f", getWakeupsPerHour())
+                    + " transitions=" + transitions
+                    + " missed=" + missedTransitions
+                    + " avgDelay=" + getAverageDetectionDelay() + "ms";
+        }
+    }
+
+    public Result evaluate(DutyCyclePolicy policy, Timeline timeline) {
+        Result result = new Result();
+        result.policy = policy.getName();
+        if (timeline.count == 0) {
+            return result;
+        }
+        policy.reset();
+
+        long begin = timeline.starts[0];
+        long end = timeline.ends[timeline.count - 1];
+        result.duration = end - begin;
+
+        int segment = 0;
+        int lastObserved = -1;  // 마지막으로 센싱 시점이 들어간 구간
+        long time = begin;
+        while (time < end) {
+            // time이 속한 구간 찾기 (시간은 증가만 하므로 앞으로만 이동)
+            while (segment < timeline.count - 1 && time >= timeline.ends[segment]) {
+                segment++;
+            }
+            boolean isMoving = timeline.moving[segment];
+            result.wakeups++;
+
+            if (segment != lastObserved) {
+                if (segment > 0) {
+                    // 건너뛴 구간들은 놓친 것
+                    for (int i = lastObserved + 1; i < segment; i++) {
+                        if (timeline.moving[i] != timeline.moving[i - 1]) {
+                            result.missedTransitions++;
+                        }
+                    }
+                    // 이번 구간으로의 변화는 마지막으로 관측한 상태와 달라야 검출한 것
+                    // (정지 -> 놓친 이동 -> 정지이면 관측 결과는 계속 정지이므로 이 변화도 놓친 것)
+                    if (timeline.moving[segment] != timeline.moving[segment - 1]) {
+                        if (lastObserved >= 0 && isMoving != timeline.moving[lastObserved]) {
+                            result.detectedTransitions++;
+                            result.totalDetectionDelay += time - timeline.starts[segment];
+                        } else {
+                            result.missedTransitions++;
+                        }
+                    }
+                }
+                lastObserved = segment;
+            }
+            time += policy.nextPeriod(isMoving, time);
+        }
+        // 마지막 센싱 이후의 구간들
+        for (int i = lastObserved + 1; i < timeline.count; i++) {
+            if (timeline.moving[i] != timeline.moving[i - 1]) {
+                result.missedTransitions++;
+            }
+        }
+        for (int i = 1; i < timeline.count; i++) {
+            if (timeline.moving[i] != timeline.moving[i - 1]) {
+                result.transitions++;
+            }
+        }
+        return result;
+    }
+
+    // ActivityMonitorService와 같은 상수로 만든 비교 대상 정책들
+    public static DutyCyclePolicy[] defaultPolicies() {
+        return new DutyCyclePolicy[]{
+                new LinearBackoffPolicy(10000, 5000, 5000, 30000),
+                new ExponentialBackoffPolicy(10000, 5000, 2.0, 30000),
+                new TimeOfDayPolicy(10000, 5000, 5000, 30000, 120000, TimeZone.getDefault())
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        DutyCycleEvaluator evaluator = new DutyCycleEvaluator();
+        for (String path : args) {
+            Timeline timeline = Timeline.read(path);
+            System.out.println(path + " (" + timeline.getCount() + " segments)");
+            for (DutyCyclePolicy policy : defaultPolicies()) {
+                System.out.println("  " + evaluator.evaluate(policy, timeline));
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * DutyCyclePolicy
+ * - 센싱(alarm) 주기를 결정하는 스케줄링 정책
+ * - ActivityMonitorService.setNextAlarm()이 센싱 구간이 끝날 때마다 호출한다.
+ * - 구현체는 Android 의존성이 없어야 DutyCycleEvaluator로 PC에서 평가할 수 있다.
+ */
+public interface DutyCyclePolicy {
+    /**
+     * @param moving - 이번 센싱 구간의 판정 결과
+     * @param now    - 현재 시각 (System.currentTimeMillis() 기준, ms)
+     * @return 다음 센싱까지의 주기 (ms)
+     */
+    long nextPeriod(boolean moving, long now);
+
+    // 정책 상태를 처음으로 되돌린다.
+    void reset();
+
+    String getName();
+}
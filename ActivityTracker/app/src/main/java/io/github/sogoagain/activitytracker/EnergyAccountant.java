@@ -0,0 +1,358 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * EnergyAccountant
+ * - 센싱 이벤트 로그와 PowerProfile로 소모 전하(mAh)를 추정하는 클래스 (Android 의존성 없음)
+ *   하위 시스템(CPU, 가속도 센서, GPS, WIFI, 블루투스)별 합계, 시간별, 상태 구간별로 나누어 본다.
+ * - 이벤트 로그는 EnergyEventLog가 기록하는 CSV이다. 한 줄에 "시작 시각(epoch ms),종류,길이(ms)"
+ *   ActivityMonitorService와 EncounterMonitor의 MonitoringService가 같은 형식으로 기록한다.
+ * - 길이가 있는 이벤트의 전하는 시간에 비례하여 시간/구간에 나누어 넣는다.
+ * - PC(JVM)에서 기록해 둔 로그로 실행할 수 있으므로, 센싱 방식이나 주기를 바꾼 뒤 폰 없이 비교할 수 있다.
+ *
+ * 사용법: java EnergyAccountant [-p 전력값 파일] 이벤트 로그 파일...
+ */
+public class EnergyAccountant {
+    // 이벤트 종류 (로그의 두 번째 열)
+    public static final String WAKEUP = "WAKEUP";               // 깨어나서 wakelock을 잡음, 길이 = 잡고 있던 시간
+    public static final String AWAKE = "AWAKE";                 // 깨어나는 비용 없이 wakelock을 잡고 있던 시간
+    public static final String ACCEL = "ACCEL";                 // 가속도 센서를 켜 둔 시간
+    public static final String GPS = "GPS";                     // GPS를 켜 둔 시간
+    public static final String WIFI_SCAN = "WIFI_SCAN";         // 직접 요청한 WIFI 스캔 (길이 무시)
+    public static final String BT_DISCOVERY = "BT_DISCOVERY";   // 블루투스 discovery 시간
+    public static final String SEGMENT = "SEGMENT";             // 상태 구간 (비용 없음, 구간별 집계 기준)
+
+    // 하위 시스템
+    public static final int CPU = 0;
+    public static final int ACCEL_SENSOR = 1;
+    public static final int GPS_RECEIVER = 2;
+    public static final int WIFI_RADIO = 3;
+    public static final int BLUETOOTH_RADIO = 4;
+    public static final int SUBSYSTEM_COUNT = 5;
+
+    private static final String[] SUBSYSTEM_NAMES = {"cpu", "accel", "gps", "wifi", "bt"};
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final double MAS_PER_MAH = 3600.0;
+
+    private final PowerProfile profile;
+
+    // 비용 이벤트: 시작 시각, 길이(ms), 하위 시스템, 전하(mAs)
+    private long[] starts = new long[64];
+    private long[] durations = new long[64];
+    private int[] subsystems = new int[64];
+    private double[] charges = new double[64];
+    private int eventCount;
+
+    // 상태 구간 (시작 시각순)
+    private long[] segmentStarts = new long[16];
+    private long[] segmentEnds = new long[16];
+    private int segmentCount;
+    private boolean isSegmentSorted = true;
+
+    private final double[] totals = new double[SUBSYSTEM_COUNT];
+    private long skippedLines;
+
+    public EnergyAccountant(PowerProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * 이벤트 하나를 반영한다.
+     *
+     * @return 알 수 없는 종류이면 false
+     */
+    public boolean addEvent(long start, String type, long duration) {
+        if (duration < 0) {
+            duration = 0;
+        }
+        double seconds = duration / 1000.0;
+        if (WAKEUP.equals(type)) {
+            addCharge(start, duration, CPU, profile.getWakeupCharge() + profile.getCpuAwakeCurrent() * seconds);
+        } else if (AWAKE.equals(type)) {
+            addCharge(start, duration, CPU, profile.getCpuAwakeCurrent() * seconds);
+        } else if (ACCEL.equals(type)) {
+            addCharge(start, duration, ACCEL_SENSOR, profile.getAccelCurrent() * seconds);
+        } else if (GPS.equals(type)) {
+            addCharge(start, duration, GPS_RECEIVER, profile.getGpsCurrent() * seconds);
+        } else if (WIFI_SCAN.equals(type)) {
+            addCharge(start, 0, WIFI_RADIO, profile.getWifiScanCharge());
+        } else if (BT_DISCOVERY.equals(type)) {
+            addCharge(start, duration, BLUETOOTH_RADIO, profile.getBluetoothDiscoveryCurrent() * seconds);
+        } else if (SEGMENT.equals(type)) {
+            addSegment(start, start + duration);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 이벤트 로그 읽기. 형식이 틀린 줄은 건너뛴다. (getSkippedLines())
+     *
+     * @return 반영한 이벤트 수
+     */
+    public int read(BufferedReader reader) throws IOException {
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 3) {
+                skippedLines++;
+                continue;
+            }
+            try {
+                if (addEvent(Long.parseLong(fields[0].trim()), fields[1].trim(), Long.parseLong(fields[2].trim()))) {
+                    count++;
+                } else {
+                    skippedLines++;
+                }
+            } catch (NumberFormatException e) {
+                skippedLines++;
+            }
+        }
+        return count;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    // 하위 시스템의 합계 (mAh)
+    public double getTotal(int subsystem) {
+        return totals[subsystem] / MAS_PER_MAH;
+    }
+
+    // 전체 합계 (mAh)
+    public double getTotal() {
+        double sum = 0;
+        for (int i = 0; i < SUBSYSTEM_COUNT; i++) {
+            sum += totals[i];
+        }
+        return sum / MAS_PER_MAH;
+    }
+
+    /**
+     * 시간별 소모량
+     *
+     * @return 시간 시작 시각(epoch ms, epoch 기준 1시간 단위) -> 하위 시스템별 mAh
+     */
+    public SortedMap<Long, double[]> getHourly() {
+        TreeMap<Long, double[]> hours = new TreeMap<>();
+        for (int i = 0; i < eventCount; i++) {
+            long start = starts[i];
+            long end = start + durations[i];
+            long hour = Math.max(0, start) / HOUR;
+            do {
+                double share = durations[i] == 0 ? 1.0
+                        : (double) (Math.min(end, (hour + 1) * HOUR) - Math.max(start, hour * HOUR)) / durations[i];
+                double[] values = hours.get(hour * HOUR);
+                if (values == null) {
+                    values = new double[SUBSYSTEM_COUNT];
+                    hours.put(hour * HOUR, values);
+                }
+                values[subsystems[i]] += charges[i] * share / MAS_PER_MAH;
+                hour++;
+            } while (hour * HOUR < end);
+        }
+        return hours;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public long getSegmentStart(int index) {
+        sortSegments();
+        return segmentStarts[index];
+    }
+
+    public long getSegmentEnd(int index) {
+        sortSegments();
+        return segmentEnds[index];
+    }
+
+    /**
+     * 상태 구간별 소모량. 어느 구간에도 걸치지 않는 부분은 빠진다.
+     *
+     * @return [구간 번호][하위 시스템] mAh
+     */
+    public double[][] getSegmentCharges() {
+        sortSegments();
+        double[][] result = new double[segmentCount][SUBSYSTEM_COUNT];
+        for (int i = 0; i < eventCount; i++) {
+            long start = starts[i];
+            long end = start + durations[i];
+            // 이벤트 시작 시각 이후에 끝나는 첫 구간
+            int low = 0;
+            int high = segmentCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (segmentEnds[mid] <= start) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int s = low; s < segmentCount && segmentStarts[s] <= end; s++) {
+                double share;
+                if (durations[i] == 0) {
+                    if (start < segmentStarts[s]) {
+                        break;
+                    }
+                    share = 1.0;
+                } else {
+                    long overlap = Math.min(end, segmentEnds[s]) - Math.max(start, segmentStarts[s]);
+                    if (overlap <= 0) {
+                        continue;
+                    }
+                    share = (double) overlap / durations[i];
+                }
+                result[s][subsystems[i]] += charges[i] * share / MAS_PER_MAH;
+                if (durations[i] == 0) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // 합계, 시간별, 구간별 소모량 보고서
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.getDefault());
+        builder.append(String.format(Locale.US, "total %.3f mAh", getTotal()));
+        for (int i = 0; i < SUBSYSTEM_COUNT; i++) {
+            builder.append(String.format(Locale.US, ", %s %.3f", SUBSYSTEM_NAMES[i], getTotal(i)));
+        }
+        builder.append('\n');
+
+        builder.append("hour");
+        for (String name : SUBSYSTEM_NAMES) {
+            builder.append(',').append(name);
+        }
+        builder.append('\n');
+        for (Map.Entry<Long, double[]> entry : getHourly().entrySet()) {
+            builder.append(dateFormat.format(new Date(entry.getKey())));
+            appendCharges(builder, entry.getValue());
+        }
+
+        double[][] segmentCharges = getSegmentCharges();
+        if (segmentCount > 0) {
+            builder.append("segment");
+            for (String name : SUBSYSTEM_NAMES) {
+                builder.append(',').append(name);
+            }
+            builder.append('\n');
+        }
+        for (int s = 0; s < segmentCount; s++) {
+            builder.append(dateFormat.format(new Date(segmentStarts[s]))).append('~')
+                    .append(dateFormat.format(new Date(segmentEnds[s])));
+            appendCharges(builder, segmentCharges[s]);
+        }
+        return builder.toString();
+    }
+
+    private static void appendCharges(StringBuilder builder, double[] values) {
+        for (double value : values) {
+            builder.append(String.format(Locale.US, ",%.4f", value));
+        }
+        builder.append('\n');
+    }
+
+    private void addCharge(long start, long duration, int subsystem, double charge) {
+        if (eventCount == starts.length) {
+            int capacity = eventCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            subsystems = Arrays.copyOf(subsystems, capacity);
+            charges = Arrays.copyOf(charges, capacity);
+        }
+        starts[eventCount] = start;
+        durations[eventCount] = duration;
+        subsystems[eventCount] = subsystem;
+        charges[eventCount] = charge;
+        eventCount++;
+        totals[subsystem] += charge;
+    }
+
+    private void addSegment(long start, long end) {
+        if (segmentCount == segmentStarts.length) {
+            segmentStarts = Arrays.copyOf(segmentStarts, segmentCount * 2);
+            segmentEnds = Arrays.copyOf(segmentEnds, segmentCount * 2);
+        }
+        if (segmentCount > 0 && start < segmentStarts[segmentCount - 1]) {
+            isSegmentSorted = false;
+        }
+        segmentStarts[segmentCount] = start;
+        segmentEnds[segmentCount] = end;
+        segmentCount++;
+    }
+
+    // 여러 로그를 합쳐 읽으면 순서가 섞일 수 있으므로 시작 시각순으로 정렬
+    private void sortSegments() {
+        if (isSegmentSorted) {
+            return;
+        }
+        long[][] pairs = new long[segmentCount][];
+        for (int i = 0; i < segmentCount; i++) {
+            pairs[i] = new long[]{segmentStarts[i], segmentEnds[i]};
+        }
+        Arrays.sort(pairs, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < segmentCount; i++) {
+            segmentStarts[i] = pairs[i][0];
+            segmentEnds[i] = pairs[i][1];
+        }
+        isSegmentSorted = true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PowerProfile profile = new PowerProfile();
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-p")) {
+            FileReader reader = new FileReader(args[1]);
+            try {
+                profile = PowerProfile.read(reader);
+            } finally {
+                reader.close();
+            }
+            first = 2;
+        }
+        if (first >= args.length) {
+            System.err.println("usage: java EnergyAccountant [-p profile] events.csv...");
+            return;
+        }
+        EnergyAccountant accountant = new EnergyAccountant(profile);
+        for (int i = first; i < args.length; i++) {
+            BufferedReader reader = new BufferedReader(new FileReader(args[i]));
+            try {
+                accountant.read(reader);
+            } finally {
+                reader.close();
+            }
+        }
+        System.out.print(accountant.format());
+        if (accountant.getSkippedLines() > 0) {
+            System.err.println("skipped lines: " + accountant.getSkippedLines());
+        }
+    }
+}
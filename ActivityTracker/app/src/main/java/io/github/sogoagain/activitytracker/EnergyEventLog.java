@@ -0,0 +1,26 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * EnergyEventLog
+ * - 전력 소모 추정(EnergyAccountant)에 쓰는 센싱 이벤트를 CSV로 기록하는 클래스
+ *   한 줄에 "시작 시각(epoch ms),종류,길이(ms)", 종류는 EnergyAccountant의 상수
+ * - 날짜별 segment(TextFileManager)에 기록하므로 로그 파일을 그대로 PC로 옮겨 분석할 수 있다.
+ * - main 스레드에서만 호출한다고 가정한다. (줄을 만드는 StringBuilder를 재사용)
+ */
+public class EnergyEventLog {
+    public static final String DIRECTORY_NAME = "ActivityTrackerEnergy";
+
+    private final TextFileManager fileManager = new TextFileManager(DIRECTORY_NAME);
+    private final StringBuilder builder = new StringBuilder(48);
+
+    /**
+     * @param type     - EnergyAccountant.WAKEUP, ACCEL, GPS, WIFI_SCAN, SEGMENT 등
+     * @param start    - 시작 시각 (epoch ms)
+     * @param duration - 길이 (ms)
+     */
+    public void log(String type, long start, long duration) {
+        builder.setLength(0);
+        builder.append(start).append(',').append(type).append(',').append(duration).append('\n');
+        fileManager.save(builder.toString());
+    }
+}
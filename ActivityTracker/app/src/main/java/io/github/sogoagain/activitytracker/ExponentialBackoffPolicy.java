@@ -0,0 +1,42 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * ExponentialBackoffPolicy
+ * - 움직이면 movingPeriod 주기로, 정지 중에는 매번 주기를 factor배씩 늘려 max까지 늘리는 정책
+ * - 정지 상태가 길게 이어질 때 선형 방식보다 빨리 최대 주기에 도달한다.
+ */
+public class ExponentialBackoffPolicy implements DutyCyclePolicy {
+    private final long initialPeriod;
+    private final long movingPeriod;
+    private final double factor;
+    private final long max;
+    private long period;
+
+    public ExponentialBackoffPolicy(long initialPeriod, long movingPeriod, double factor, long max) {
+        this.initialPeriod = initialPeriod;
+        this.movingPeriod = movingPeriod;
+        this.factor = factor;
+        this.max = max;
+        reset();
+    }
+
+    @Override
+    public long nextPeriod(boolean moving, long now) {
+        if (moving) {
+            period = movingPeriod;
+        } else {
+            period = Math.min((long) (period * factor), max);
+        }
+        return period;
+    }
+
+    @Override
+    public void reset() {
+        period = initialPeriod;
+    }
+
+    @Override
+    public String getName() {
+        return "exponential";
+    }
+}
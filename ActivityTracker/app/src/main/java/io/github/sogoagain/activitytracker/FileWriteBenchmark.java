@@ -0,0 +1,76 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * FileWriteBenchmark
+ * - 기존 TextFileManager.save() 방식(기록마다 파일을 열고 쓰고 닫음)과
+ *   AsyncFileWriter(group commit)의 초당 기록 수를 비교하는 PC(JVM)용 도구
+ *
+ * 사용법: java FileWriteBenchmark [기록 수] [디렉토리]
+ */
+public class FileWriteBenchmark {
+    private static final String RECORD = "12:00~12:05 5분 이동 512걸음\n";
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File folder = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        byte[] data = RECORD.getBytes("UTF-8");
+
+        // 워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            boolean isWarmup = round == 0;
+            int n = isWarmup ? count / 10 : count;
+            report(isWarmup, "open-write-close", n, runDirect(new File(folder, "bench_direct.txt"), data, n));
+            report(isWarmup, "async SYNC_NONE", n,
+                    runAsync(new File(folder, "bench_async.txt"), data, n, AsyncFileWriter.SYNC_NONE));
+            report(isWarmup, "async SYNC_INTERVAL(1s)", n,
+                    runAsync(new File(folder, "bench_async_interval.txt"), data, n, AsyncFileWriter.SYNC_INTERVAL));
+            report(isWarmup, "async SYNC_EVERY_BATCH", n,
+                    runAsync(new File(folder, "bench_async_sync.txt"), data, n, AsyncFileWriter.SYNC_EVERY_BATCH));
+        }
+    }
+
+    // 기존 방식: 기록마다 append 모드로 열고 쓰고 닫는다.
+    private static long runDirect(File file, byte[] data, int count) throws IOException {
+        file.delete();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            FileOutputStream fos = new FileOutputStream(file, true);
+            fos.write(data);
+            fos.close();
+        }
+        long time = System.nanoTime() - start;
+        file.delete();
+        return time;
+    }
+
+    // 모든 기록을 큐에 넣고 drain()으로 기록이 끝날 때까지 걸린 시간
+    private static long runAsync(File file, byte[] data, int count, int policy) {
+        file.delete();
+        AsyncFileWriter writer = new AsyncFileWriter(1024);
+        writer.setSyncPolicy(policy, 1000);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            writer.write(file, data);
+        }
+        writer.drain(60000);
+        long time = System.nanoTime() - start;
+        System.out.println("  batches: " + writer.getBatches() + ", syncs: " + writer.getSyncs()
+                + ", max queue depth: " + writer.getMaxQueueDepth()
+                + ", blocked writes: " + writer.getBlockedWrites()
+                + ", avg latency: " + writer.getAverageLatency() / 1000 + "us");
+        file.delete();
+        return time;
+    }
+
+    private static void report(boolean isWarmup, String name, int count, long time) {
+        if (isWarmup) {
+            return;
+        }
+        System.out.println(String.format("%-26s %8d records %9.1f ms %12.0f records/s",
+                name, count, time / 1e6, count / (time / 1e9)));
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.sogoagain.activitytracker;
+
+import java.util.Random;
+
+/**
+ * GeoDistanceBenchmark
+ * - GeoDistance의 오차와 속도를 기존 calcDistance(구면 코사인 법칙)와 비교하는 PC(JVM)용 도구
+ * - 오차: 위도 +-60도 안의 무작위 위치 쌍(10km 이내)으로
+ *   haversine distance()와 구면 코사인 법칙의 차이, equirectangular 근사와 haversine의 상대 오차를 잰다.
+ * - 속도: 같은 장소 배열에 대해 구면 코사인 법칙, haversine, isWithin(), findFirstWithin() 한 번 훑기의
+ *   장소당 시간을 잰다.
+ *
+ * 사용법: java GeoDistanceBenchmark [위치 쌍 수]
+ */
+public class GeoDistanceBenchmark {
+    private static final double EARTH_R = 6371000.0;
+    private static final double RAD = Math.PI / 180;
+    private static final double MAX_LATITUDE = 60;
+    private static final double MAX_DISTANCE = 10000;      // m
+    // 속도 측정용 장소 수 (한 격자의 후보 수보다 넉넉하게)
+    private static final int PLACES = 256;
+    private static final double RADIUS = 100;
+
+    public static void main(String[] args) {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        checkTolerance(pairs, new Random(1));
+        measureSpeed(pairs, new Random(2));
+    }
+
+    private static void checkTolerance(int pairs, Random random) {
+        GeoDistance geoDistance = new GeoDistance();
+        double maxCosineError = 0;
+        double maxCosineErrorDistance = 0;
+        double maxCosineError1m = 0;        // 1m 이상 거리에서의 차이
+        int cosineNaN = 0;
+        double maxRelativeError = 0;
+        double maxAbsoluteError100 = 0;     // 반경 100m 근처에서의 오차 (m)
+        for (int i = 0; i < pairs; i++) {
+            double lat = (random.nextDouble() * 2 - 1) * MAX_LATITUDE;
+            double lon = (random.nextDouble() * 2 - 1) * 180;
+            // 가까운 거리도 고르게 나오도록 거리를 로그 분포로 뽑는다. (1cm ~ 10km)
+            double distance = Math.pow(10, -2 + random.nextDouble() * 6);
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double otherLat = lat + distance * Math.cos(bearing) / (EARTH_R * RAD);
+            double otherLon = lon + distance * Math.sin(bearing) / (EARTH_R * RAD * Math.cos(lat * RAD));
+
+            geoDistance.setFix(lat, lon);
+            double haversine = geoDistance.distance(otherLat, otherLon);
+            double cosine = lawOfCosines(lat, lon, otherLat, otherLon);
+            if (Double.isNaN(cosine)) {
+                cosineNaN++;
+            } else {
+                if (Math.abs(cosine - haversine) > maxCosineError) {
+                    maxCosineError = Math.abs(cosine - haversine);
+                    maxCosineErrorDistance = haversine;
+                }
+                if (haversine >= 1) {
+                    maxCosineError1m = Math.max(maxCosineError1m, Math.abs(cosine - haversine));
+                }
+            }
+            if (haversine > MAX_DISTANCE) {
+                continue;
+            }
+            double equirectangular = Math.sqrt(geoDistance.squaredDistance(otherLat, otherLon));
+            double error = Math.abs(equirectangular - haversine);
+            if (haversine >= 1) {
+                maxRelativeError = Math.max(maxRelativeError, error / haversine);
+            }
+            if (haversine >= 50 && haversine <= 200) {
+                maxAbsoluteError100 = Math.max(maxAbsoluteError100, error);
+            }
+        }
+        System.out.println(String.format("%d pairs (|lat| <= %.0f, 1cm ~ %.0fkm)", pairs, MAX_LATITUDE, MAX_DISTANCE / 1000));
+        System.out.println(String.format("  haversine vs law of cosines: max difference %.4f m (at %.2f m), "
+                + "%.4f m for >= 1 m, NaN %d", maxCosineError, maxCosineErrorDistance, maxCosineError1m, cosineNaN));
+        System.out.println(String.format("  equirectangular vs haversine: max relative error %.6f%%, "
+                + "max error %.4f m for 50~200 m", maxRelativeError * 100, maxAbsoluteError100));
+    }
+
+    private static void measureSpeed(int count, Random random) {
+        double[] lats = new double[PLACES];
+        double[] lons = new double[PLACES];
+        double[] radii = new double[PLACES];
+        // 모든 장소 밖에 있는 위치를 조회해서 매번 배열 끝까지 훑도록 한다.
+        double fixLat = 37.5;
+        double fixLon = 127.0;
+        for (int i = 0; i < PLACES; i++) {
+            lats[i] = fixLat + 0.01 + random.nextDouble() * 0.05;
+            lons[i] = fixLon + 0.01 + random.nextDouble() * 0.05;
+            radii[i] = RADIUS;
+        }
+        GeoDistance geoDistance = new GeoDistance();
+        int scans = Math.max(1, count / PLACES);
+
+        // 워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            boolean isWarmup = round == 0;
+            int n = isWarmup ? Math.max(1, scans / 10) : scans;
+            int hits = 0;
+
+            long start = System.nanoTime();
+            for (int s = 0; s < n; s++) {
+                for (int i = 0; i < PLACES; i++) {
+                    if (lawOfCosines(fixLat, fixLon, lats[i], lons[i]) <= radii[i]) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+            long cosineTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 0; s < n; s++) {
+                geoDistance.setFix(fixLat, fixLon);
+                for (int i = 0; i < PLACES; i++) {
+                    if (geoDistance.distance(lats[i], lons[i]) <= radii[i]) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+            long haversineTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 0; s < n; s++) {
+                geoDistance.setFix(fixLat, fixLon);
+                for (int i = 0; i < PLACES; i++) {
+                    if (geoDistance.isWithin(lats[i], lons[i], radii[i])) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+            long withinTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 0; s < n; s++) {
+                geoDistance.setFix(fixLat, fixLon);
+                if (geoDistance.findFirstWithin(lats, lons, radii, 0, PLACES) >= 0) {
+                    hits++;
+                }
+            }
+            long batchTime = System.nanoTime() - start;
+
+            if (!isWarmup) {
+                long checks = (long) n * PLACES;
+                System.out.println(String.format("%d checks (hits %d)", checks, hits));
+                report("law of cosines", checks, cosineTime, cosineTime);
+                report("haversine", checks, haversineTime, cosineTime);
+                report("isWithin", checks, withinTime, cosineTime);
+                report("findFirstWithin", checks, batchTime, cosineTime);
+            }
+        }
+    }
+
+    private static void report(String name, long checks, long time, long baseTime) {
+        System.out.println(String.format("  %-16s %7.2f ns/place  x%.1f", name, (double) time / checks,
+                (double) baseTime / time));
+    }
+
+    // 기존 ActivityMonitorService.calcDistance (반올림 제외)
+    private static double lawOfCosines(double lat1, double lon1, double lat2, double lon2) {
+        double radLat1 = RAD * lat1;
+        double radLat2 = RAD * lat2;
+        double radDist = RAD * (lon1 - lon2);
+        double distance = Math.sin(radLat1) * Math.sin(radLat2);
+        distance = distance + Math.cos(radLat1) * Math.cos(radLat2) * Math.cos(radDist);
+        return EARTH_R * Math.acos(distance);
+    }
+}
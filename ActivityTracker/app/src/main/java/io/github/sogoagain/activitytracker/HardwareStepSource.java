@@ -0,0 +1,194 @@
+package io.github.sogoagain.activitytracker;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * HardwareStepSource
+ * - 센서 허브가 걸음을 세는 TYPE_STEP_COUNTER 또는 TYPE_STEP_DETECTOR를 사용하는 방식
+ *   걸음 검출은 센서 허브에서 하고 AP에는 걸음이 있을 때만(배치 모드이면 모아서) 이벤트가 온다.
+ * - TYPE_STEP_COUNTER를 우선 사용한다. 값이 누적 걸음 수이므로 배치 FIFO가 넘쳐 이벤트를 잃어도
+ *   다음 이벤트로 걸음 수가 맞춰진다. 등록 직후 첫 이벤트(현재 누적값)를 기준값으로 삼는다.
+ * - TYPE_STEP_DETECTOR는 이벤트 하나가 한 걸음이다.
+ * - stop()하면 FIFO를 flush하고 onFlushCompleted()에서 해제한다. 바로 해제하면 FIFO에 남은 이벤트가 버려지고,
+ *   다음 start()에서 기준값을 새로 잡으므로 TYPE_STEP_COUNTER라도 그 걸음은 다시 세지 못한다.
+ */
+public class HardwareStepSource implements SensorEventListener2, StepSource {
+    // 이 간격(ns) 이상 떨어져 도착한 이벤트는 새로운 전달(burst)로 간주 (StepMonitor와 같음)
+    private static final long BURST_GAP_NS = 5000000L;
+    // flush 완료가 오지 않으면 이 시간(ms) 뒤에 그냥 해제
+    private static final long FLUSH_TIMEOUT = 2000;
+
+    private final SensorManager sensorManager;
+    private final Sensor sensor;
+    private final boolean isCounter;
+    private final int maxReportLatencyUs;
+    private boolean isStarted = false;
+    private boolean isFlushing = false;     // stop() 후 flush 완료를 기다리는 중 (listener는 아직 등록됨)
+    private Runnable onStopped;
+
+    private final Handler handler = new Handler();
+    private final Runnable unregisterRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isFlushing) {
+                unregister();
+            }
+        }
+    };
+
+    private int steps;
+    private float lastCount = -1;   // 마지막으로 받은 누적값 (TYPE_STEP_COUNTER), -1이면 아직 받지 못함
+    private long lastArrival;
+
+    // 전달 통계
+    private long eventCount;
+    private long deliveryCount;
+
+    private HardwareStepSource(SensorManager sensorManager, Sensor sensor, int maxReportLatencyUs) {
+        this.sensorManager = sensorManager;
+        this.sensor = sensor;
+        this.isCounter = sensor.getType() == Sensor.TYPE_STEP_COUNTER;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /**
+     * 기기에 걸음 센서가 있으면 만든다.
+     *
+     * @param maxReportLatencyUs - 배치 모드의 최대 전달 지연 (us)
+     * @return TYPE_STEP_COUNTER, TYPE_STEP_DETECTOR 모두 없으면 null
+     */
+    public static HardwareStepSource create(SensorManager sensorManager, int maxReportLatencyUs) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return null;
+        }
+        Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+        if (sensor == null) {
+            sensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
+        }
+        if (sensor == null) {
+            return null;
+        }
+        return new HardwareStepSource(sensorManager, sensor, maxReportLatencyUs);
+    }
+
+    public boolean start() {
+        if (isStarted) {
+            return true;
+        }
+        if (isFlushing) {
+            // 해제하기 전에 다시 시작: 기준값을 유지하므로 flush로 오는 걸음도 이어서 센다.
+            handler.removeCallbacks(unregisterRunnable);
+            isFlushing = false;
+            isStarted = true;
+            notifyStopped();
+            return true;
+        }
+        // 걸음 센서는 on-change 방식이므로 샘플링 주기는 의미가 없고, 전달 지연만 허용한다.
+        sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_NORMAL, maxReportLatencyUs);
+        // 꺼져 있는 동안의 걸음은 세지 않도록 새 기준값을 받는다.
+        lastCount = -1;
+        isStarted = true;
+        return true;
+    }
+
+    public void stop(Runnable onStopped) {
+        if (!isStarted) {
+            if (onStopped != null) {
+                onStopped.run();
+            }
+            return;
+        }
+        isStarted = false;
+        this.onStopped = onStopped;
+        if (maxReportLatencyUs > 0 && sensorManager.flush(this)) {
+            isFlushing = true;
+            handler.postDelayed(unregisterRunnable, FLUSH_TIMEOUT);
+            return;
+        }
+        unregister();
+    }
+
+    private void unregister() {
+        handler.removeCallbacks(unregisterRunnable);
+        sensorManager.unregisterListener(this);
+        isFlushing = false;
+        notifyStopped();
+    }
+
+    private void notifyStopped() {
+        Runnable callback = onStopped;
+        onStopped = null;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    public boolean isStarted() {
+        return isStarted;
+    }
+
+    public boolean isFlushing() {
+        return isFlushing;
+    }
+
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+
+    }
+
+    // flush 전에 FIFO에 있던 이벤트는 모두 onSensorChanged()로 전달된 뒤이다.
+    public void onFlushCompleted(Sensor sensor) {
+        if (isFlushing) {
+            unregister();
+        }
+    }
+
+    public void onSensorChanged(SensorEvent event) {
+        eventCount++;
+        long arrival = SystemClock.elapsedRealtimeNanos();
+        if (arrival - lastArrival > BURST_GAP_NS) {
+            deliveryCount++;
+        }
+        lastArrival = arrival;
+
+        if (!isCounter) {
+            steps++;
+            return;
+        }
+        float count = event.values[0];
+        // 재부팅 등으로 누적값이 줄어들면 기준값만 다시 잡는다.
+        if (lastCount >= 0 && count >= lastCount) {
+            steps += (int) (count - lastCount);
+        }
+        lastCount = count;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void resetSteps() {
+        steps = 0;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getDeliveryCount() {
+        return deliveryCount;
+    }
+
+    public boolean usesAccelerometer() {
+        return false;
+    }
+
+    public String getName() {
+        return isCounter ? "step counter" : "step detector";
+    }
+}
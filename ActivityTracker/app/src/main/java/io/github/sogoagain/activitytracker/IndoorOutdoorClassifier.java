@@ -0,0 +1,187 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * IndoorOutdoorClassifier
+ * - GPS 정확도, 위성 신호, WIFI 스캔 세기, 움직임 상태를 합쳐 실내일 확률을 계산하는 분류기 (Android 의존성 없음)
+ * - 실내일 로그 오즈(log-odds) = 사전값 + 관측 종류별 증거의 합
+ *   관측 종류마다 가장 최근 증거 하나만 유지하므로 같은 관측이 반복되어도 증거가 쌓이지 않는다.
+ * - 증거는 시간이 지나면 지수적으로 줄어들어 사전값으로 돌아간다. (오래된 fix를 믿지 않음)
+ *   움직이는 중에는 주변 환경이 바뀌므로 더 빨리 줄어든다.
+ * - 상태 크기가 고정되어 있고 관측 하나당 O(1)에 갱신된다.
+ * - WIFI 증거만으로도 isConfidentlyIndoor()가 될 수 있으므로 GPS를 켜지 않고 실내로 판단할 수 있다.
+ */
+public class IndoorOutdoorClassifier {
+    // 관측 종류
+    private static final int GPS_FIX = 0;
+    private static final int SATELLITES = 1;
+    private static final int WIFI = 2;
+    private static final int SOURCE_COUNT = 3;
+
+    // 증거가 없을 때의 로그 오즈 (실내에 있는 시간이 더 길다고 가정, 약 0.6)
+    private static final double PRIOR = 0.4;
+
+    // 확실하다고 볼 확률 0.9의 로그 오즈
+    private static final double CONFIDENT = Math.log(0.9 / 0.1);
+
+    // GPS fix 정확도(m)별 증거
+    private static final double FIX_ACCURATE = -2.5;       // 10m 이내: 하늘이 열려 있음
+    private static final double FIX_GOOD = -1.5;           // 25m 이내
+    private static final double FIX_POOR = 0.5;            // 50m 이내
+    private static final double FIX_BAD = 1.5;             // 50m 초과
+    // 시간 예산 안에 fix를 하나도 얻지 못함
+    private static final double NO_FIX = 2.0;
+
+    // 위성 신호: SNR이 STRONG_SNR 이상인 위성 수별 증거
+    public static final float STRONG_SNR = 25.f;
+    private static final double SATELLITES_STRONG = -1.5;  // 4개 이상
+    private static final double SATELLITES_NONE = 1.0;     // 보이지만 강한 위성이 없음
+
+    // WIFI: RSSI가 STRONG_RSSI 이상인 AP 하나당 증거, 최대 WIFI_MAX
+    public static final int STRONG_RSSI = -70;
+    private static final double WIFI_PER_AP = 0.8;
+    private static final double WIFI_MAX = 3.0;
+    private static final double WIFI_NONE = -1.0;          // 강한 AP가 하나도 없음
+
+    // 움직이는 중에는 증거가 이 배수만큼 빨리 줄어든다.
+    private static final double MOVING_DECAY_SPEEDUP = 4.0;
+
+    // 증거가 1/e로 줄어드는 시간 (ms)
+    private final double decayTime;
+
+    private final double[] evidence = new double[SOURCE_COUNT];
+    private final long[] observedTimes = new long[SOURCE_COUNT];
+    private double evidenceSum;
+    private long updateTime;
+    private boolean isMoving;
+
+    /**
+     * @param decayTime - 증거가 1/e로 줄어드는 시간 (ms)
+     */
+    public IndoorOutdoorClassifier(long decayTime) {
+        this.decayTime = decayTime;
+        reset();
+    }
+
+    public void reset() {
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            evidence[i] = 0;
+            observedTimes[i] = Long.MIN_VALUE;
+        }
+        evidenceSum = 0;
+        updateTime = 0;
+        isMoving = false;
+    }
+
+    // GPS fix 하나 (정확도 m)
+    public void onGpsFix(long time, float accuracy) {
+        double value;
+        if (accuracy <= 10) {
+            value = FIX_ACCURATE;
+        } else if (accuracy <= 25) {
+            value = FIX_GOOD;
+        } else if (accuracy <= 50) {
+            value = FIX_POOR;
+        } else {
+            value = FIX_BAD;
+        }
+        observe(GPS_FIX, time, value);
+    }
+
+    // GPS를 켰지만 시간 안에 fix를 얻지 못함
+    public void onGpsNoFix(long time) {
+        observe(GPS_FIX, time, NO_FIX);
+    }
+
+    /**
+     * 위성 상태
+     *
+     * @param strong  - SNR이 STRONG_SNR 이상인 위성 수
+     * @param visible - 보이는 위성 수
+     */
+    public void onSatellites(long time, int strong, int visible) {
+        double value;
+        if (strong >= 4) {
+            value = SATELLITES_STRONG;
+        } else if (strong == 0 && visible > 0) {
+            value = SATELLITES_NONE;
+        } else {
+            // 위성 정보가 아직 없거나 애매함
+            value = 0;
+        }
+        observe(SATELLITES, time, value);
+    }
+
+    /**
+     * WIFI 스캔 결과
+     *
+     * @param strong - RSSI가 STRONG_RSSI 이상인 AP 수
+     */
+    public void onWifiScan(long time, int strong) {
+        double value = strong == 0 ? WIFI_NONE : Math.min(WIFI_MAX, strong * WIFI_PER_AP);
+        observe(WIFI, time, value);
+    }
+
+    // 움직임 상태 (센싱 구간마다)
+    public void onMotion(long time, boolean moving) {
+        advance(time);
+        isMoving = moving;
+    }
+
+    // 실내일 로그 오즈
+    public double getLogOdds(long time) {
+        return PRIOR + evidenceSum * decayFactor(time);
+    }
+
+    // 실내일 확률
+    public double getProbability(long time) {
+        return 1.0 / (1.0 + Math.exp(-getLogOdds(time)));
+    }
+
+    public boolean isIndoor(long time) {
+        return getLogOdds(time) > 0;
+    }
+
+    public boolean isConfidentlyIndoor(long time) {
+        return getLogOdds(time) >= CONFIDENT;
+    }
+
+    public boolean isConfidentlyOutdoor(long time) {
+        return getLogOdds(time) <= -CONFIDENT;
+    }
+
+    // maxAge(ms) 이내의 WIFI 스캔 증거가 있는지 여부
+    public boolean hasWifiEvidence(long time, long maxAge) {
+        return observedTimes[WIFI] != Long.MIN_VALUE && time - observedTimes[WIFI] <= maxAge;
+    }
+
+    private void observe(int source, long time, double value) {
+        advance(time);
+        // 같은 종류의 이전 증거를 새 증거로 바꾼다.
+        evidenceSum += value - evidence[source];
+        evidence[source] = value;
+        observedTimes[source] = time;
+    }
+
+    // 증거들을 time 시각 기준으로 줄여 둔다.
+    private void advance(long time) {
+        double factor = decayFactor(time);
+        if (factor != 1.0) {
+            for (int i = 0; i < SOURCE_COUNT; i++) {
+                evidence[i] *= factor;
+            }
+            evidenceSum *= factor;
+        }
+        if (time > updateTime) {
+            updateTime = time;
+        }
+    }
+
+    private double decayFactor(long time) {
+        long elapsed = time - updateTime;
+        if (elapsed <= 0) {
+            return 1.0;
+        }
+        double rate = isMoving ? MOVING_DECAY_SPEEDUP / decayTime : 1.0 / decayTime;
+        return Math.exp(-elapsed * rate);
+    }
+}
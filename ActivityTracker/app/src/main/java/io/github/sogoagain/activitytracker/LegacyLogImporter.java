@@ -0,0 +1,162 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * LegacyLogImporter
+ * - 이전 버전이 Download/ActivityTrackerLog.txt에 남긴 문장 로그를 상태 구간 로그(SegmentLogWriter)로 옮기는 클래스
+ *   (Android 의존성 없음)
+ * - 이전 로그의 한 줄: "HH:mm~HH:mm N분 이동 S걸음" 또는 "HH:mm~HH:mm N분 정지 장소명"
+ *   날짜가 없으므로 파일의 마지막 수정 날짜를 마지막 줄의 날짜로 보고,
+ *   시작 시각이 다음 줄보다 늦은 줄을 만날 때마다 하루씩 거슬러 올라간다.
+ * - 모든 구간이 기록되면 이전 로그 파일을 지운다. 읽을 수 있는 줄이 하나도 없으면 파일을 그대로 둔다.
+ */
+public class LegacyLogImporter {
+    public static final String FILE_NAME = "ActivityTrackerLog.txt";
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+    private static final String MOVING = "이동";
+    private static final String STILL = "정지";
+    private static final String STEPS = "걸음";
+
+    private LegacyLogImporter() {
+    }
+
+    /**
+     * 이전 로그를 읽어 구간마다 writer에 넘긴다.
+     *
+     * @param onImported - 모든 구간이 기록되고 이전 로그를 지운 뒤 writer 스레드에서 호출 (없으면 null)
+     * @return 옮긴 구간 수
+     */
+    public static int importLog(final File file, SegmentLogWriter writer, PlaceDictionary places,
+                                final Runnable onImported) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (isRecord(line)) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        int count = lines.size();
+        if (count == 0) {
+            if (file.length() == 0) {
+                file.delete();
+            }
+            return 0;
+        }
+
+        // 마지막 줄부터 날짜를 정한다.
+        long[] days = new long[count];
+        long day = midnightOf(file.lastModified());
+        for (int i = count - 1; i >= 0; i--) {
+            if (i < count - 1 && minuteOf(lines.get(i), 0) > minuteOf(lines.get(i + 1), 0)) {
+                day -= DAY;
+            }
+            days[i] = day;
+        }
+
+        for (int i = 0; i < count; i++) {
+            String line = lines.get(i);
+            long start = days[i] + minuteOf(line, 0) * MINUTE;
+            long end = days[i] + minuteOf(line, 6) * MINUTE;
+            if (end < start) {
+                // 자정을 넘긴 구간
+                end += DAY;
+            }
+            String[] tokens = line.substring(12).split(" ", 3);
+            int state;
+            int steps = 0;
+            int place = SegmentLogWriter.NO_PLACE;
+            if (tokens[1].equals(MOVING)) {
+                state = SegmentLogWriter.MOVING;
+                steps = Integer.parseInt(tokens[2].substring(0, tokens[2].length() - STEPS.length()));
+            } else {
+                state = SegmentLogWriter.STILL;
+                if (tokens.length > 2 && !tokens[2].equals("null")) {
+                    place = places.idOf(tokens[2]);
+                }
+            }
+            Runnable onWritten = null;
+            if (i == count - 1) {
+                onWritten = new Runnable() {
+                    @Override
+                    public void run() {
+                        file.delete();
+                        if (onImported != null) {
+                            onImported.run();
+                        }
+                    }
+                };
+            }
+            writer.append(start, end, state, steps, place, onWritten);
+        }
+        return count;
+    }
+
+    // "HH:mm~HH:mm N분 이동 S걸음", "HH:mm~HH:mm N분 정지 장소명"
+    private static boolean isRecord(String line) {
+        if (line.length() < 16 || line.charAt(5) != '~' || line.charAt(11) != ' ') {
+            return false;
+        }
+        if (!isTime(line, 0) || !isTime(line, 6)) {
+            return false;
+        }
+        String[] tokens = line.substring(12).split(" ", 3);
+        if (tokens.length < 2 || !tokens[0].endsWith("분")) {
+            return false;
+        }
+        if (tokens[1].equals(MOVING)) {
+            if (tokens.length < 3 || !tokens[2].endsWith(STEPS)) {
+                return false;
+            }
+            String steps = tokens[2].substring(0, tokens[2].length() - STEPS.length());
+            return !steps.isEmpty() && isDigits(steps, 0, steps.length());
+        }
+        return tokens[1].equals(STILL);
+    }
+
+    private static boolean isTime(String line, int offset) {
+        return isDigits(line, offset, offset + 2) && line.charAt(offset + 2) == ':'
+                && isDigits(line, offset + 3, offset + 5)
+                && minuteOf(line, offset) < 24 * 60 && Integer.parseInt(line.substring(offset + 3, offset + 5)) < 60;
+    }
+
+    private static boolean isDigits(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // offset 위치의 "HH:mm"을 자정부터의 분으로
+    private static int minuteOf(String line, int offset) {
+        return Integer.parseInt(line.substring(offset, offset + 2)) * 60
+                + Integer.parseInt(line.substring(offset + 3, offset + 5));
+    }
+
+    private static long midnightOf(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+}
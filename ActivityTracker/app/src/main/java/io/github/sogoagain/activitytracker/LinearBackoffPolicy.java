@@ -0,0 +1,42 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * LinearBackoffPolicy
+ * - 움직이면 movingPeriod 주기로, 정지 중에는 매번 increment씩 늘려 max까지 주기를 늘리는 정책
+ * - 기존 setNextAlarm()의 동작 (5초, +5초, 최대 30초)
+ */
+public class LinearBackoffPolicy implements DutyCyclePolicy {
+    private final long initialPeriod;
+    private final long movingPeriod;
+    private final long increment;
+    private final long max;
+    private long period;
+
+    public LinearBackoffPolicy(long initialPeriod, long movingPeriod, long increment, long max) {
+        this.initialPeriod = initialPeriod;
+        this.movingPeriod = movingPeriod;
+        this.increment = increment;
+        this.max = max;
+        reset();
+    }
+
+    @Override
+    public long nextPeriod(boolean moving, long now) {
+        if (moving) {
+            period = movingPeriod;
+        } else {
+            period = Math.min(period + increment, max);
+        }
+        return period;
+    }
+
+    @Override
+    public void reset() {
+        period = initialPeriod;
+    }
+
+    @Override
+    public String getName() {
+        return "linear";
+    }
+}
@@ -6,6 +6,7 @@ package io.github.sogoagain.activitytracker;
 
 import android.Manifest;
 import android.app.ActivityManager;
+import android.app.AlertDialog;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -17,15 +18,17 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.os.Environment;
 import android.util.Log;
 import android.view.View;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
-import java.util.ArrayList;
-import java.util.StringTokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "AT_MainActivity";
@@ -34,12 +37,16 @@ public class MainActivity extends AppCompatActivity {
     private boolean isPermitted = false;
 
     // File
-    private TextFileManager textFileManager = new TextFileManager();
+    private SegmentedStore segmentStore;
+    private ActivityQuery activityQuery;           // 날짜별 집계를 이용한 기간 조회
+    private File placeNameFile;
+    private File summaryFile;
+    private File metricsFile;
 
     // UI
     private ListView listView;
-    private ArrayAdapter<String> arrayAdapter;     // ListView에 쓰일 ArrayAdapter
-    private ArrayList<String> recordList;           // 메모 제목들을 담고있는 ArrayList
+    private SegmentPageCursor segmentCursor;       // 상태 구간 로그를 최신 구간부터 페이지 단위로 읽음
+    private SegmentListAdapter segmentAdapter;     // ListView에 쓰일 adapter
     private TextView totalRecordView;
 
     /**
@@ -66,14 +73,23 @@ public class MainActivity extends AppCompatActivity {
         IntentFilter intentFilter = new IntentFilter(BROADCAST_ACTION_ACTIVITY);
         registerReceiver(MyStepReceiver, intentFilter);
 
+        // 상태 구간 로그 (날짜별 segment)
+        File folder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        segmentStore = SegmentLogWriter.openStore(folder);
+        activityQuery = new ActivityQuery(segmentStore);
+        placeNameFile = new File(folder, PlaceDictionary.FILE_NAME);
+        summaryFile = new File(folder, ActivitySummary.FILE_NAME);
+        metricsFile = new File(folder, MetricsRegistry.FILE_NAME);
+
         /********** UI **********/
         // textView
         totalRecordView = (TextView) findViewById(R.id.totalRecordView);
         //listView
         listView = (ListView)findViewById(R.id.listView);
-        recordList = new ArrayList<>();
-        arrayAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, recordList);
-        listView.setAdapter(arrayAdapter);
+        segmentCursor = new SegmentPageCursor(segmentStore);
+        segmentAdapter = new SegmentListAdapter(this, segmentCursor,
+                new SegmentFormatter(new PlaceDictionary(placeNameFile)));
+        listView.setAdapter(segmentAdapter);
     }
 
     @Override
@@ -87,6 +103,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         unregisterReceiver(MyStepReceiver);
+        segmentCursor.close();
     }
     /**********************************************************************************************/
 
@@ -109,14 +126,36 @@ public class MainActivity extends AppCompatActivity {
                 Toast.makeText(getApplicationContext(), R.string.dont_monitoring, Toast.LENGTH_SHORT).show();
             }
         } else if(v.getId() == R.id.clearLog) {
-            TextFileManager textFileManager = new TextFileManager();
-            textFileManager.delete();
+            if (segmentStore.deleteAll()) {
+                Log.i(TAG, SegmentLogWriter.DIRECTORY_NAME + " successfully deleted");
+            }
+            activityQuery.clear();
+            summaryFile.delete();
+            // 아직 옮기지 않은 이전 버전의 문장 로그도 지운다.
+            new File(summaryFile.getParentFile(), LegacyLogImporter.FILE_NAME).delete();
             updateView();
             Toast.makeText(this, R.string.clear_log, Toast.LENGTH_LONG).show();
+        } else if(v.getId() == R.id.showMetrics) {
+            showMetrics();
         }
         changeTextViewColor();
     }
 
+    // 서비스가 마지막으로 저장한 센싱 통계 snapshot을 보여 준다.
+    private void showMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.read(metricsFile);
+        if (metrics == null) {
+            Toast.makeText(this, R.string.no_metrics, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        long minutes = SegmentFormatter.toMinutes(metrics.getSnapshotTime() - metrics.getStartTime());
+        new AlertDialog.Builder(this)
+                .setTitle("Metrics (" + minutes + "분)")
+                .setMessage(metrics.format())
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
     private void changeTextViewColor() {
         Button startButton = (Button) findViewById(R.id.startMonitor);
         if (isAliveService(MainActivity.this, ActivityMonitorService.class.getName())) {
@@ -127,74 +166,64 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updateView() {
-        int totalMovingTime = 0;
-        int totalSteps = 0;
-        String topPlace = "-";
-        int[] times = new int[4];
-
-        arrayAdapter.clear();
-        ArrayList<String> records = textFileManager.loadLine();
-        Log.d(TAG, records.toString());
-        for(String record : records) {
-            arrayAdapter.add(record);
-            if(record.contains("이동")) {
-                StringTokenizer stringTokenizer = new StringTokenizer(record);
-                while(stringTokenizer.hasMoreTokens()) {
-                    String token = stringTokenizer.nextToken();
-                    if(token.contains("분")) {
-                        totalMovingTime += Integer.parseInt(token.substring(0, token.length() - 1));
-                    } else if(token.contains("걸음")) {
-                        totalSteps += Integer.parseInt(token.substring(0, token.length() - 2));
-                    }
-                }
-            } else {
-                String place = record.substring(record.lastIndexOf(' ') + 1);
-                int time = Integer.parseInt(record.substring(12, record.indexOf("분")));
-
-                switch(place) {
-                    case "실내지정장소1":
-                        times[0] += time;
-                        break;
-                    case "실내지정장소2":
-                        times[1] += time;
-                        break;
-                    case "실외지정장소1":
-                        times[2] += time;
-                        break;
-                    case "실외지정장소2":
-                        times[3] += time;
-                        break;
-                }
+        // 목록은 보이는 행만 그때그때 읽으므로 구간 수만 다시 확인
+        int segmentCount = segmentCursor.refresh();
+        PlaceDictionary places = new PlaceDictionary(placeNameFile);
+        segmentAdapter.setFormatter(new SegmentFormatter(places));
+        segmentAdapter.notifyDataSetChanged();
+        Log.d(TAG, "segments: " + segmentCount + ", page reads: " + segmentCursor.getPageReads());
 
-                int index = 0, max = 0;
-                for(int i = 0; i < 4; i++) {
-                    if(max < times[i]) {
-                        max = times[i];
-                        index = i;
-                    }
-                }
-                switch(index) {
-                    case 0:
-                        topPlace = "실내지정장소1";
-                        break;
-                    case 1:
-                        topPlace = "실내지정장소2";
-                        break;
-                    case 2:
-                        topPlace = "실외지정장소1";
-                        break;
-                    case 3:
-                        topPlace = "실외지정장소2";
-                        break;
-                }
+        // 누적 통계는 서비스가 저장해 둔 값을 사용. 로그와 맞지 않을 때만 로그에서 다시 계산
+        ActivitySummary summary = ActivitySummary.read(summaryFile);
+        if (summary == null || !isSummaryUpToDate(summary, segmentCount)) {
+            Log.d(TAG, "summary is stale, rebuild from log");
+            try {
+                summary = ActivitySummary.rebuild(SegmentLogReader.open(segmentStore.segments()));
+            } catch (IOException e) {
+                e.printStackTrace();
+                summary = new ActivitySummary();
             }
         }
+        String topPlace = places.getName(summary.getTopPlace());
+        if (topPlace == null) {
+            topPlace = "-";
+        }
+
+        // 오늘의 이동 시간과 걸음 수
+        long now = System.currentTimeMillis();
+        Calendar today = Calendar.getInstance();
+        today.setTimeInMillis(now);
+        today.set(Calendar.HOUR_OF_DAY, 0);
+        today.set(Calendar.MINUTE, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MILLISECOND, 0);
+        int todayMinutes = 0;
+        long todaySteps = 0;
+        for (ActivityQuery.Bucket bucket : activityQuery.rollup(today.getTimeInMillis(), now, ActivityQuery.DAY)) {
+            todayMinutes += bucket.getMovingMinutes();
+            todaySteps += bucket.getSteps();
+        }
 
-        totalRecordView.setText("Moving Time: " + totalMovingTime +"분\n" +
-                                    "Steps: " + totalSteps + "걸음\n" +
-                                    "Top Place: " + topPlace);
+        totalRecordView.setText("Moving Time: " + summary.getMovingMinutes() +"분\n" +
+                                    "Steps: " + summary.getSteps() + "걸음\n" +
+                                    "Top Place: " + topPlace + "\n" +
+                                    "Today: " + todayMinutes + "분, " + todaySteps + "걸음");
         return;
     }
+
+    // 통계가 로그의 마지막 구간(목록의 첫 행)까지 반영하고 있는지 여부
+    private boolean isSummaryUpToDate(ActivitySummary summary, int segmentCount) {
+        if (segmentCount == 0) {
+            return summary.isUpToDate(0, 0, 0);
+        }
+        try {
+            segmentCursor.moveToPosition(0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return summary.isUpToDate(segmentCount, segmentCursor.getStart(), segmentCursor.getEnd());
+    }
     /**********************************************************************************************/
 
     /**
@@ -0,0 +1,250 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * MetricsRegistry
+ * - 센싱 경로의 횟수(counter)와 걸린 시간 분포(histogram)를 모으는 registry (Android 의존성 없음)
+ * - 값은 미리 할당한 long 배열에만 더하므로 기록할 때 객체 할당이나 lock이 없다.
+ *   서비스의 main 스레드에서만 기록한다고 가정한다. (receiver, 센서, 위치 callback 모두 main looper)
+ * - histogram은 log2 구간이다. 값 v(>0)는 2^(b-1) <= v < 2^b 인 b번 구간에 들어가고 0은 0번 구간
+ * - toByteArray()로 만든 snapshot을 write()로 파일에 저장하고, read()로 다시 읽어 format()으로 보여 준다.
+ *
+ * 파일 형식 (big-endian)
+ * - int MAGIC, int VERSION, long 시작 시각, long snapshot 시각, int counter 수, int histogram 수, int 구간 수
+ * - long[counter 수] counter
+ * - histogram마다 long 개수, long 합, long 최대값, long[구간 수] 구간별 개수
+ */
+public class MetricsRegistry {
+    public static final String FILE_NAME = "ActivityTrackerMetrics.bin";
+
+    // counter
+    public static final int ALARMS = 0;             // alarm 수신
+    public static final int WAKELOCKS = 1;          // wakelock 획득
+    public static final int MOVING_SAMPLES = 2;     // MovingMonitor가 처리한 가속도 샘플
+    public static final int STEP_SAMPLES = 3;       // StepSource로 전달된 센서 이벤트 (가속도 샘플 또는 걸음 이벤트)
+    public static final int STEP_DELIVERIES = 4;    // StepSource로 전달된 횟수 (배치 모드이면 burst 수)
+    public static final int GPS_SESSIONS = 5;
+    public static final int GPS_FIXES = 6;
+    public static final int NETWORK_FIXES = 7;
+    public static final int PASSIVE_FIXES = 8;
+    public static final int WIFI_SCANS = 9;         // 스캔 결과 broadcast 수신
+    public static final int WIFI_SCANS_PROCESSED = 10;
+    public static final int SEGMENTS = 11;          // 기록한 상태 구간
+    public static final int WAKELOCK_WINDOW_MS = 12;    // ALARM_WINDOW lease를 잡고 있던 누적 시간
+    public static final int WAKELOCK_GPS_MS = 13;       // GPS_FIX lease를 잡고 있던 누적 시간
+    public static final int WAKELOCK_TIMEOUTS = 14;     // 제한 시간이 지나 강제로 끝낸 lease
+    public static final int WAKELOCK_DENIALS = 15;      // 시간당 예산 초과로 거절한 lease
+    public static final int COUNTER_COUNT = 16;
+
+    // histogram
+    public static final int ALARM_DELAY_MS = 0;     // 예약한 시각보다 늦게 alarm을 받은 시간
+    public static final int WAKELOCK_HOLD_MS = 1;   // wakelock을 잡고 있던 시간
+    public static final int WINDOW_MS = 2;          // 센싱 구간 길이 (판정 지연)
+    public static final int GPS_ON_MS = 3;          // GPS를 한 번 켜서 끌 때까지의 시간
+    public static final int WIFI_PROCESS_US = 4;    // 스캔 결과 하나를 처리하는 데 걸린 시간
+    public static final int HISTOGRAM_COUNT = 5;
+
+    public static final int BUCKET_COUNT = 40;
+
+    private static final String[] COUNTER_NAMES = {
+            "alarms", "wakelocks", "moving samples", "step samples", "step deliveries",
+            "gps sessions", "gps fixes", "network fixes", "passive fixes",
+            "wifi scans", "wifi scans processed", "segments",
+            "wakelock alarm window (ms)", "wakelock gps fix (ms)", "wakelock timeouts", "wakelock denials"
+    };
+    private static final String[] HISTOGRAM_NAMES = {
+            "alarm delay (ms)", "wakelock hold (ms)", "sensing window (ms)", "gps on (ms)", "wifi process (us)"
+    };
+
+    private static final int MAGIC = 0x41544d54;    // "ATMT"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 36;
+
+    private final long[] counters = new long[COUNTER_COUNT];
+    private final long[] counts = new long[HISTOGRAM_COUNT];
+    private final long[] sums = new long[HISTOGRAM_COUNT];
+    private final long[] maxes = new long[HISTOGRAM_COUNT];
+    private final long[] buckets = new long[HISTOGRAM_COUNT * BUCKET_COUNT];
+    private long startTime;
+    private long snapshotTime;
+
+    public MetricsRegistry(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public void increment(int counter) {
+        counters[counter]++;
+    }
+
+    public void add(int counter, long value) {
+        counters[counter] += value;
+    }
+
+    // 다른 객체가 누적한 값을 그대로 반영 (WakeLockManager의 tag별 시간 등)
+    public void set(int counter, long value) {
+        counters[counter] = value;
+    }
+
+    // histogram에 값 하나를 기록 (음수는 0으로)
+    public void record(int histogram, long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(value));
+        buckets[histogram * BUCKET_COUNT + bucket]++;
+        counts[histogram]++;
+        sums[histogram] += value;
+        if (value > maxes[histogram]) {
+            maxes[histogram] = value;
+        }
+    }
+
+    public long getCounter(int counter) {
+        return counters[counter];
+    }
+
+    public long getCount(int histogram) {
+        return counts[histogram];
+    }
+
+    public long getMean(int histogram) {
+        return counts[histogram] == 0 ? 0 : sums[histogram] / counts[histogram];
+    }
+
+    public long getMax(int histogram) {
+        return maxes[histogram];
+    }
+
+    public long getSum(int histogram) {
+        return sums[histogram];
+    }
+
+    /**
+     * 분위수의 근사값: 해당 구간의 상한 (최대값을 넘지 않음)
+     *
+     * @param quantile - 0 ~ 1
+     */
+    public long getQuantile(int histogram, double quantile) {
+        long count = counts[histogram];
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            seen += buckets[histogram * BUCKET_COUNT + b];
+            if (seen >= rank && seen > 0) {
+                long upper = b == 0 ? 0 : (1L << b) - 1;
+                return Math.min(upper, maxes[histogram]);
+            }
+        }
+        return maxes[histogram];
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    // 파일에서 읽은 경우 snapshot을 만든 시각, 아니면 0
+    public long getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    // 현재 값의 snapshot (시각 now)
+    public byte[] toByteArray(long now) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + COUNTER_COUNT * 8
+                + HISTOGRAM_COUNT * (3 + BUCKET_COUNT) * 8);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(startTime);
+        buffer.putLong(now);
+        buffer.putInt(COUNTER_COUNT);
+        buffer.putInt(HISTOGRAM_COUNT);
+        buffer.putInt(BUCKET_COUNT);
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            buffer.putLong(counters[i]);
+        }
+        for (int h = 0; h < HISTOGRAM_COUNT; h++) {
+            buffer.putLong(counts[h]);
+            buffer.putLong(sums[h]);
+            buffer.putLong(maxes[h]);
+            for (int b = 0; b < BUCKET_COUNT; b++) {
+                buffer.putLong(buckets[h * BUCKET_COUNT + b]);
+            }
+        }
+        return buffer.array();
+    }
+
+    // 사람이 읽을 수 있는 요약 (한 줄에 하나씩)
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            builder.append(COUNTER_NAMES[i]).append(": ").append(counters[i]).append('\n');
+        }
+        for (int h = 0; h < HISTOGRAM_COUNT; h++) {
+            builder.append(HISTOGRAM_NAMES[h]).append(": n=").append(counts[h]);
+            if (counts[h] > 0) {
+                builder.append(", mean ").append(getMean(h))
+                        .append(", p50 ").append(getQuantile(h, 0.5))
+                        .append(", p90 ").append(getQuantile(h, 0.9))
+                        .append(", max ").append(maxes[h]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 저장된 snapshot 읽기
+     *
+     * @return 파일이 없거나 형식이 맞지 않으면 null
+     */
+    public static MetricsRegistry read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                MetricsRegistry metrics = new MetricsRegistry(in.readLong());
+                metrics.snapshotTime = in.readLong();
+                int counterCount = in.readInt();
+                int histogramCount = in.readInt();
+                int bucketCount = in.readInt();
+                if (counterCount != COUNTER_COUNT || histogramCount != HISTOGRAM_COUNT || bucketCount != BUCKET_COUNT) {
+                    return null;
+                }
+                for (int i = 0; i < COUNTER_COUNT; i++) {
+                    metrics.counters[i] = in.readLong();
+                }
+                for (int h = 0; h < HISTOGRAM_COUNT; h++) {
+                    metrics.counts[h] = in.readLong();
+                    metrics.sums[h] = in.readLong();
+                    metrics.maxes[h] = in.readLong();
+                    for (int b = 0; b < BUCKET_COUNT; b++) {
+                        metrics.buckets[h * BUCKET_COUNT + b] = in.readLong();
+                    }
+                }
+                return metrics;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // snapshot 저장 (SnapshotFile)
+    public static void write(File file, byte[] snapshot) throws IOException {
+        SnapshotFile.write(file, snapshot);
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * MovementDetector
+ * - 선형 가속도 샘플로 움직임 여부를 판단하는 엔진 (Android 의존성 없음)
+ * - 샘플마다 RMS가 문턱값을 넘는지(움직임 샘플인지)를 관찰하고,
+ *   순차 확률비 검정(SPRT)으로 움직임/정지 중 하나가 충분히 확실해지는 즉시 판정을 내린다.
+ * - 판정을 내리지 못한 채 구간이 끝나면 기존 방식(움직임 샘플 비율 50% 이상)으로 판단한다.
+ */
+public class MovementDetector {
+    public static final int UNDECIDED = 0;
+    public static final int MOVING = 1;
+    public static final int STILL = 2;
+
+    // 움직임 여부를 판단하기 위한 3축 가속도 데이터의 RMS 값의 기준 문턱값
+    private static final double RMS_THRESHOLD = 1.0;
+    private static final double RMS_THRESHOLD_SQUARED = RMS_THRESHOLD * RMS_THRESHOLD;
+
+    // 움직이는 중 / 정지 중일 때 샘플 하나가 문턱값을 넘을 확률 (가정)
+    private static final double P_MOVING = 0.7;
+    private static final double P_STILL = 0.15;
+
+    // 오판정 허용 확률: ALPHA - 정지를 움직임으로, BETA - 움직임을 정지로
+    private static final double ALPHA = 0.01;
+    private static final double BETA = 0.01;
+
+    // 판정 전 최소 샘플 수 (SENSOR_DELAY_GAME 기준 약 200ms)
+    private static final int MIN_SAMPLES = 10;
+
+    // 샘플 하나가 더하는 로그 우도비와 판정 경계값은 미리 계산해 둔다.
+    private static final double LLR_HIT = Math.log(P_MOVING / P_STILL);
+    private static final double LLR_MISS = Math.log((1 - P_MOVING) / (1 - P_STILL));
+    private static final double UPPER_BOUND = Math.log((1 - BETA) / ALPHA);
+    private static final double LOWER_BOUND = Math.log(BETA / (1 - ALPHA));
+
+    private int sensingCount;
+    private int movementCount;
+    private double llr;
+    private int decision;
+    private long firstTimestamp;
+    private long decisionTimestamp;
+
+    public MovementDetector() {
+        reset();
+    }
+
+    public void reset() {
+        sensingCount = 0;
+        movementCount = 0;
+        llr = 0;
+        decision = UNDECIDED;
+        firstTimestamp = 0;
+        decisionTimestamp = 0;
+    }
+
+    /**
+     * 샘플 하나를 처리한다.
+     *
+     * @param timestamp - 샘플 시각 (ns)
+     * @return 현재까지의 판정 (UNDECIDED, MOVING, STILL)
+     */
+    public int onSample(long timestamp, float x, float y, float z) {
+        if (sensingCount == 0) {
+            firstTimestamp = timestamp;
+        }
+        sensingCount++;
+
+        // 제곱합끼리 비교하여 sqrt 연산을 생략
+        boolean hit = (x * x + y * y + z * z) > RMS_THRESHOLD_SQUARED;
+        if (hit) {
+            movementCount++;
+        }
+
+        if (decision == UNDECIDED) {
+            llr += hit ? LLR_HIT : LLR_MISS;
+            if (sensingCount >= MIN_SAMPLES) {
+                if (llr >= UPPER_BOUND) {
+                    decision = MOVING;
+                    decisionTimestamp = timestamp;
+                } else if (llr <= LOWER_BOUND) {
+                    decision = STILL;
+                    decisionTimestamp = timestamp;
+                }
+            }
+        }
+        return decision;
+    }
+
+    public int getDecision() {
+        return decision;
+    }
+
+    // 첫 샘플부터 판정까지 걸린 센서 시간 (ns). 판정 전이면 -1
+    public long getDecisionLatency() {
+        if (decision == UNDECIDED) {
+            return -1;
+        }
+        return decisionTimestamp - firstTimestamp;
+    }
+
+    public int getSensingCount() {
+        return sensingCount;
+    }
+
+    // 조기 판정이 있으면 그 결과를, 없으면 움직임 판단 횟수가 센서 업데이트 횟수의 50%를 넘는지로 판단
+    public boolean isMoving() {
+        if (decision != UNDECIDED) {
+            return decision == MOVING;
+        }
+        if (sensingCount == 0) {
+            return false;
+        }
+        return (double) movementCount / (double) sensingCount >= 0.5;
+    }
+}
@@ -10,6 +10,13 @@ import android.util.Log;
 public class MovingMonitor implements SensorEventListener {
     private static final String TAG = "AT_MovingMonitor";
 
+    /**
+     * 조기 판정 모드에서 움직임/정지 판정이 확실해졌을 때 호출되는 리스너
+     */
+    public interface OnDecisionListener {
+        void onDecision(boolean moving);
+    }
+
     private Context context;
     private SensorManager mSensorManager;
     private Sensor mLinear;
@@ -17,14 +24,15 @@ public class MovingMonitor implements SensorEventListener {
     // 움직임 여부를 나타내는 bool 변수: true이면 움직임, false이면 안 움직임
     private boolean isMoving;
 
-    // onStart() 호출 이후 onStop() 호출될 때까지 센서 데이터 업데이트 횟수를 저장하는 변수
-    private int sensingCount;
+    // 실제 움직임 판단은 MovementDetector가 담당
+    private final MovementDetector movementDetector = new MovementDetector();
+    // 움직임이면 어떤 활동(걷기, 달리기, 차량 이동)인지는 ActivityRecognizer가 담당
+    private final ActivityRecognizer activityRecognizer = new ActivityRecognizer();
 
-    // 센서 데이터 업데이트 중 움직임으로 판단된 횟수를 저장하는 변수
-    private int movementCount;
-
-    // 움직임 여부를 판단하기 위한 3축 가속도 데이터의 RMS 값의 기준 문턱값
-    private static final double RMS_THRESHOLD = 1.0;
+    // 조기 판정 모드
+    private boolean isEarlyDecision = false;
+    private OnDecisionListener onDecisionListener;
+    private boolean isDecisionDelivered;
 
     public MovingMonitor(Context context) {
         this.context = context;
@@ -33,16 +41,27 @@ public class MovingMonitor implements SensorEventListener {
         mLinear = mSensorManager.getDefaultSensor(Sensor.TYPE_LINEAR_ACCELERATION);
     }
 
+    /**
+     * 조기 판정 모드 설정
+     * listener가 null이 아니면 판정이 확실해지는 즉시 listener를 호출한다.
+     */
+    public void setOnDecisionListener(OnDecisionListener listener) {
+        onDecisionListener = listener;
+        isEarlyDecision = (listener != null);
+    }
+
     public void onStart() {
+        // 변수 초기화
+        isMoving = false;
+        isDecisionDelivered = false;
+        movementDetector.reset();
+        activityRecognizer.reset();
+
         // SensorEventListener 등록
         if (mLinear != null) {
             Log.d(TAG, "Register Accel Listener!");
             mSensorManager.registerListener(this, mLinear, SensorManager.SENSOR_DELAY_GAME);
         }
-        // 변수 초기화
-        isMoving = false;
-        sensingCount = 0;
-        movementCount = 0;
     }
 
     public void onStop() {
@@ -61,43 +80,58 @@ public class MovingMonitor implements SensorEventListener {
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_LINEAR_ACCELERATION) {
-
-            // 센서 업데이트 횟수 증가
-            sensingCount++;
-
-            //***** sensor data collection *****//
-            // event.values 배열의 사본을 만들어서 values 배열에 저장
-            float[] values = event.values.clone();
-
             // movement detection
-            detectMovement(values);
+            float[] values = event.values;
+            int decision = movementDetector.onSample(event.timestamp, values[0], values[1], values[2]);
+            activityRecognizer.onSample(event.timestamp, values[0], values[1], values[2]);
+
+            // 움직임 판정은 활동 분류에 필요한 샘플이 모일 때까지 기다린다.
+            if (decision == MovementDetector.MOVING && !activityRecognizer.isReady()) {
+                return;
+            }
+            if (isEarlyDecision && !isDecisionDelivered && decision != MovementDetector.UNDECIDED) {
+                isDecisionDelivered = true;
+                Log.d(TAG, "early decision after " + movementDetector.getSensingCount() + " samples");
+                onDecisionListener.onDecision(decision == MovementDetector.MOVING);
+            }
         }
     }
 
-    private void detectMovement(float[] values) {
-        // 현재 업데이트 된 accelerometer x, y, z 축 값의 Root Mean Square 값 계산
-        double rms = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
-        // Log.d(TAG, "rms: " + rms);
+    // 일정 시간 동안 움직임 판단 횟수가 센서 업데이트 횟수의 50%를 넘으면 움직임으로 판단
+    public boolean isMoving() {
+        isMoving = movementDetector.isMoving();
+        return isMoving;
+    }
 
-        // 계산한 rms 값을 threshold 값과 비교하여 움직임이면 count 변수 증가
-        if(rms > RMS_THRESHOLD) {
-            movementCount++;
+    /**
+     * 이번 센싱 구간의 활동
+     * 움직임이면 ActivityRecognizer로 걷기, 달리기, 차량 이동 중 하나를 고르고,
+     * 분류에 필요한 샘플이 모자라면 기존처럼 걷기(도보 이동)로 본다.
+     *
+     * @return ActivityRecognizer.STILL, WALK, RUN, VEHICLE
+     */
+    public int getActivity() {
+        if (!isMoving()) {
+            return ActivityRecognizer.STILL;
         }
+        if (!activityRecognizer.isReady()) {
+            return ActivityRecognizer.WALK;
+        }
+        return activityRecognizer.classifyMoving();
     }
 
-    // 일정 시간 동안 움직임 판단 횟수가 센서 업데이트 횟수의 50%를 넘으면 움직임으로 판단
-    public boolean isMoving() {
-        if(sensingCount == 0) {
-            isMoving = false;
-            return isMoving;
-        }
+    // 활동을 판단할 수 있는지 여부: 정지이거나, 움직임이고 분류에 필요한 샘플이 모임
+    public boolean isActivityReady() {
+        return !movementDetector.isMoving() || activityRecognizer.isReady();
+    }
 
-        double ratio = (double)movementCount / (double)sensingCount;
-        if(ratio >= 0.5) {
-            isMoving = true;
-        } else {
-            isMoving = false;
-        }
-        return isMoving;
+    // 이번 센싱 구간에서 처리한 샘플 수
+    public int getSampleCount() {
+        return movementDetector.getSensingCount();
+    }
+
+    // 조기 판정까지 걸린 센서 시간 (ns). 판정 전이면 -1
+    public long getDecisionLatency() {
+        return movementDetector.getDecisionLatency();
     }
 }
@@ -0,0 +1,93 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * PlaceDictionary
+ * - 상태 구간 로그에 기록하는 장소 번호와 장소명의 대응표 (Android 의존성 없음)
+ * - 0번 "실내", 1번 "실외"는 고정이고, 이후 처음 나오는 장소명마다 번호를 붙여 파일에 한 줄씩 추가한다.
+ *   (파일의 k번째 줄 = FIRST_NAMED + k번 장소)
+ * - 파일 추가는 AsyncFileWriter로 하므로, 같은 writer로 기록한 상태 구간보다 항상 먼저 기록된다.
+ */
+public class PlaceDictionary {
+    public static final String FILE_NAME = "ActivityTrackerPlaceNames.txt";
+
+    public static final int INDOOR = 0;
+    public static final int OUTDOOR = 1;
+    // 지정 장소의 첫 번호
+    public static final int FIRST_NAMED = 2;
+
+    private final File file;
+    private final ArrayList<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> ids = new HashMap<>();
+
+    public PlaceDictionary(File file) {
+        this.file = file;
+        put("실내");
+        put("실외");
+        load();
+    }
+
+    /**
+     * 장소명의 번호. 처음 나온 장소명이면 번호를 새로 붙이고 파일에 추가한다.
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        try {
+            AsyncFileWriter.getInstance().write(file, (name + "\n").getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            e.printStackTrace();
+        }
+        return put(name);
+    }
+
+    // 번호에 해당하는 장소명, 없으면 null
+    public String getName(int id) {
+        if (id < 0 || id >= names.size()) {
+            return null;
+        }
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private int put(String name) {
+        int id = names.size();
+        names.add(name);
+        ids.put(name, id);
+        return id;
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // 번호가 줄 순서로 정해지므로 중복된 줄도 자리를 차지한다.
+                int id = names.size();
+                names.add(line);
+                if (!ids.containsKey(line)) {
+                    ids.put(line, id);
+                }
+            }
+            reader.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
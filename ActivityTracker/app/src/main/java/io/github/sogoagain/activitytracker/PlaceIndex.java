@@ -0,0 +1,207 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * PlaceIndex
+ * - 원형(중심 좌표 + 반경) 실외 장소들의 격자(grid bucket) 인덱스 (Android 의존성 없음)
+ * - 위도/경도를 CELL_DEGREES 크기의 격자로 나누고, 각 장소를 자신의 원이 걸치는 모든 격자에 등록한다.
+ * - 위치 하나를 조회할 때는 그 위치가 속한 격자의 후보들만 거리 검사하므로
+ *   장소 수와 관계없이 거의 일정한 시간이 걸린다.
+ * - 후보는 격자마다 연속된 좌표 배열 구간(장소 번호 순)으로 모아 두고 GeoDistance.findFirstWithin()으로
+ *   한 번에 훑는다. 추가할 때는 격자별 연결 리스트에 넣고, 추가 후 첫 조회에서 배열로 다시 만든다.
+ * - 여러 장소에 포함되면 먼저 추가된 장소를 반환한다.
+ */
+public class PlaceIndex {
+    public static final int NO_PLACE = -1;
+
+    // 격자 크기 (도). 위도 방향 약 550m
+    private static final double CELL_DEGREES = 0.005;
+    // 격자 등록 범위 여유 (반올림 오차만큼 원이 격자 경계를 넘는 경우 대비)
+    private static final double SPAN_MARGIN = 1.001;
+
+    // 장소 정보 (인덱스 = 장소 번호)
+    private String[] names = new String[16];
+    private double[] latitudes = new double[16];
+    private double[] longitudes = new double[16];
+    private double[] radii = new double[16];
+    private int placeCount;
+
+    // 격자 키 -> 격자 번호
+    private final LongIntHashMap cells = new LongIntHashMap();
+    private int cellCount;
+
+    // 추가용: 격자 번호 -> 마지막 항목 번호, 항목들은 entryNext로 연결 (최근에 추가한 장소부터)
+    private int[] cellHeads = new int[16];
+    private int[] entryPlaces = new int[16];
+    private int[] entryNext = new int[16];
+    private int entryCount;
+
+    // 조회용: 격자 c의 후보는 candidate 배열의 [cellStarts[c], cellStarts[c + 1]) 구간
+    private int[] cellStarts;
+    private int[] candidatePlaces;
+    private double[] candidateLatitudes;
+    private double[] candidateLongitudes;
+    private double[] candidateRadii;
+    private boolean isCompacted = false;
+
+    // 조회 위치 기준 거리 계산
+    private final GeoDistance geoDistance = new GeoDistance();
+
+    /**
+     * 장소 추가
+     *
+     * @param radius - 장소로 인정할 반경 (m)
+     * @return 장소 번호
+     */
+    public int add(String name, double latitude, double longitude, double radius) {
+        if (placeCount == names.length) {
+            int capacity = placeCount * 2;
+            names = Arrays.copyOf(names, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+        }
+        int place = placeCount++;
+        names[place] = name;
+        latitudes[place] = latitude;
+        longitudes[place] = longitude;
+        radii[place] = radius;
+
+        // 원을 감싸는 사각형이 걸치는 격자마다 등록
+        // 거리는 GeoDistance와 같은 위도 1도 거리로, 경도 폭은 조회 위치가 될 수 있는 가장 높은 위도에서 잰다.
+        double latSpan = radius * SPAN_MARGIN / GeoDistance.METERS_PER_DEGREE;
+        double farLatitude = Math.min(90, Math.abs(latitude) + latSpan);
+        double lonSpan = radius * SPAN_MARGIN
+                / (GeoDistance.METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(farLatitude))));
+        int minLat = cellOf(latitude - latSpan);
+        int maxLat = cellOf(latitude + latSpan);
+        int minLon = cellOf(longitude - lonSpan);
+        int maxLon = cellOf(longitude + lonSpan);
+        for (int latCell = minLat; latCell <= maxLat; latCell++) {
+            for (int lonCell = minLon; lonCell <= maxLon; lonCell++) {
+                addEntry(cellKey(latCell, lonCell), place);
+            }
+        }
+        isCompacted = false;
+        return place;
+    }
+
+    /**
+     * 위치를 포함하는 장소 찾기
+     *
+     * @return 장소 번호, 없으면 NO_PLACE
+     */
+    public int find(double latitude, double longitude) {
+        int cell = cells.get(cellKey(cellOf(latitude), cellOf(longitude)));
+        if (cell == LongIntHashMap.NO_VALUE) {
+            return NO_PLACE;
+        }
+        if (!isCompacted) {
+            compact();
+        }
+        geoDistance.setFix(latitude, longitude);
+        // 후보가 장소 번호 순이므로 처음 포함되는 후보가 먼저 추가된 장소
+        int start = cellStarts[cell];
+        int found = geoDistance.findFirstWithin(candidateLatitudes, candidateLongitudes, candidateRadii,
+                start, cellStarts[cell + 1] - start);
+        return found < 0 ? NO_PLACE : candidatePlaces[found];
+    }
+
+    public int size() {
+        return placeCount;
+    }
+
+    public String getName(int place) {
+        return names[place];
+    }
+
+    /**
+     * 장소 정의 파일 읽기
+     * 한 줄에 "장소명,위도,경도,반경(m)" 형식. 빈 줄과 #으로 시작하는 줄, 형식이 틀린 줄은 무시한다.
+     *
+     * @return 읽어 들인 장소 수
+     */
+    public int read(BufferedReader reader) throws IOException {
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 4) {
+                continue;
+            }
+            try {
+                add(fields[0].trim(), Double.parseDouble(fields[1].trim()), Double.parseDouble(fields[2].trim()),
+                        Double.parseDouble(fields[3].trim()));
+                count++;
+            } catch (NumberFormatException e) {
+                // 형식이 틀린 줄은 건너뜀
+            }
+        }
+        return count;
+    }
+
+    private void addEntry(long key, int place) {
+        int cell = cells.get(key);
+        if (cell == LongIntHashMap.NO_VALUE) {
+            if (cellCount == cellHeads.length) {
+                cellHeads = Arrays.copyOf(cellHeads, cellCount * 2);
+            }
+            cell = cellCount++;
+            cellHeads[cell] = LongIntHashMap.NO_VALUE;
+            cells.put(key, cell);
+        }
+        if (entryCount == entryPlaces.length) {
+            entryPlaces = Arrays.copyOf(entryPlaces, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryPlaces[entryCount] = place;
+        entryNext[entryCount] = cellHeads[cell];
+        cellHeads[cell] = entryCount;
+        entryCount++;
+    }
+
+    // 격자별 연결 리스트를 격자 순서, 장소 번호 순의 연속된 좌표 배열로 옮긴다.
+    private void compact() {
+        cellStarts = new int[cellCount + 1];
+        candidatePlaces = new int[entryCount];
+        candidateLatitudes = new double[entryCount];
+        candidateLongitudes = new double[entryCount];
+        candidateRadii = new double[entryCount];
+        int offset = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStarts[cell] = offset;
+            int count = 0;
+            for (int entry = cellHeads[cell]; entry != LongIntHashMap.NO_VALUE; entry = entryNext[entry]) {
+                count++;
+            }
+            // 연결 리스트는 최근에 추가한 장소부터이므로 뒤에서부터 채운다.
+            int index = offset + count;
+            for (int entry = cellHeads[cell]; entry != LongIntHashMap.NO_VALUE; entry = entryNext[entry]) {
+                int place = entryPlaces[entry];
+                index--;
+                candidatePlaces[index] = place;
+                candidateLatitudes[index] = latitudes[place];
+                candidateLongitudes[index] = longitudes[place];
+                candidateRadii[index] = radii[place];
+            }
+            offset += count;
+        }
+        cellStarts[cellCount] = offset;
+        isCompacted = true;
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.sogoagain.activitytracker;
+
+import java.util.Random;
+
+/**
+ * PlaceIndexBenchmark
+ * - PlaceIndex.find()와 모든 장소를 차례로 검사하는 선형 탐색(기존 방식)의 초당 조회 수를 비교하는 PC(JVM)용 도구
+ * - 장소 10개, 1천 개, 10만 개를 서울 크기(약 33km x 26km)의 영역에 무작위로 만들고,
+ *   같은 영역 안의 무작위 위치로 조회한다. 두 방식의 결과가 같은지도 확인한다.
+ * - 장소 원의 경계 바로 안쪽(반경의 99.9%)을 조회하여 격자 경계에 걸친 장소가 빠지지 않는지도 확인한다.
+ *
+ * 사용법: java PlaceIndexBenchmark [조회 수]
+ */
+public class PlaceIndexBenchmark {
+    private static final int[] SIZES = {10, 1000, 100000};
+
+    // 장소를 만들 영역
+    private static final double MIN_LATITUDE = 37.43;
+    private static final double MIN_LONGITUDE = 126.80;
+    private static final double SPAN_DEGREES = 0.3;
+    // 장소 반경 (m)
+    private static final double MIN_RADIUS = 30;
+    private static final double MAX_RADIUS = 200;
+    // 경계 조회: 장소마다 BOUNDARY_BEARINGS 방향으로 반경의 BOUNDARY_RATIO 거리에 있는 위치
+    private static final int BOUNDARY_PLACES = 10000;
+    private static final int BOUNDARY_BEARINGS = 64;
+    private static final double BOUNDARY_RATIO = 0.999;
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            PlaceIndex index = new PlaceIndex();
+            double[] latitudes = new double[size];
+            double[] longitudes = new double[size];
+            double[] radii = new double[size];
+            for (int i = 0; i < size; i++) {
+                latitudes[i] = MIN_LATITUDE + random.nextDouble() * SPAN_DEGREES;
+                longitudes[i] = MIN_LONGITUDE + random.nextDouble() * SPAN_DEGREES;
+                radii[i] = MIN_RADIUS + random.nextDouble() * (MAX_RADIUS - MIN_RADIUS);
+                index.add("place" + i, latitudes[i], longitudes[i], radii[i]);
+            }
+            double[] queries = new double[lookups * 2];
+            for (int i = 0; i < lookups; i++) {
+                queries[i * 2] = MIN_LATITUDE + random.nextDouble() * SPAN_DEGREES;
+                queries[i * 2 + 1] = MIN_LONGITUDE + random.nextDouble() * SPAN_DEGREES;
+            }
+
+            // 선형 탐색은 장소 수에 비례하므로 10만 개에서는 조회 수를 줄인다.
+            int linearLookups = (int) Math.max(1000, Math.min(lookups, 100000000L / size));
+            GeoDistance geoDistance = new GeoDistance();
+            int mismatches = 0;
+            for (int i = 0; i < linearLookups; i++) {
+                geoDistance.setFix(queries[i * 2], queries[i * 2 + 1]);
+                if (index.find(queries[i * 2], queries[i * 2 + 1]) != linearFind(geoDistance, latitudes, longitudes, radii, size)) {
+                    mismatches++;
+                }
+            }
+
+            int boundaryMismatches = 0;
+            int boundaryLookups = 0;
+            for (int place = 0; place < Math.min(size, BOUNDARY_PLACES); place++) {
+                for (int b = 0; b < BOUNDARY_BEARINGS; b++) {
+                    double bearing = 2 * Math.PI * b / BOUNDARY_BEARINGS;
+                    double distance = radii[place] * BOUNDARY_RATIO;
+                    double lat = latitudes[place] + distance * Math.cos(bearing) / GeoDistance.METERS_PER_DEGREE;
+                    double lon = longitudes[place] + distance * Math.sin(bearing)
+                            / (GeoDistance.METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+                    geoDistance.setFix(lat, lon);
+                    if (index.find(lat, lon) != linearFind(geoDistance, latitudes, longitudes, radii, size)) {
+                        boundaryMismatches++;
+                    }
+                    boundaryLookups++;
+                }
+            }
+
+            // 워밍업 후 측정
+            for (int round = 0; round < 2; round++) {
+                boolean isWarmup = round == 0;
+                int n = isWarmup ? lookups / 10 : lookups;
+                int hits = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    if (index.find(queries[i * 2], queries[i * 2 + 1]) != PlaceIndex.NO_PLACE) {
+                        hits++;
+                    }
+                }
+                long indexTime = System.nanoTime() - start;
+
+                n = isWarmup ? linearLookups / 10 : linearLookups;
+                int linearHits = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    geoDistance.setFix(queries[i * 2], queries[i * 2 + 1]);
+                    if (linearFind(geoDistance, latitudes, longitudes, radii, size) != PlaceIndex.NO_PLACE) {
+                        linearHits++;
+                    }
+                }
+                long linearTime = System.nanoTime() - start;
+                if (!isWarmup) {
+                    System.out.println(String.format("%6d places: index %12.0f lookups/s (hits %d/%d), "
+                                    + "linear %12.0f lookups/s (hits %d/%d), mismatches %d, boundary mismatches %d/%d",
+                            size, lookups / (indexTime / 1e9), hits, lookups,
+                            n / (linearTime / 1e9), linearHits, n, mismatches, boundaryMismatches, boundaryLookups));
+                }
+            }
+        }
+    }
+
+    // 기존 방식: 모든 장소를 차례로 검사해 처음 포함되는 장소를 찾는다.
+    private static int linearFind(GeoDistance geoDistance, double[] latitudes, double[] longitudes, double[] radii,
+                                  int count) {
+        for (int i = 0; i < count; i++) {
+            if (geoDistance.isWithin(latitudes[i], longitudes[i], radii[i])) {
+                return i;
+            }
+        }
+        return PlaceIndex.NO_PLACE;
+    }
+}
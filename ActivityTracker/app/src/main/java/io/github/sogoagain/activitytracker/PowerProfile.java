@@ -0,0 +1,80 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+/**
+ * PowerProfile
+ * - 기기별 전력 소모 값 (Android 의존성 없음)
+ *   지속 시간에 비례하는 항목은 mA, 한 번에 드는 항목은 mAs(= mA x 초) 단위
+ * - 기본값은 일반적인 스마트폰 수준의 추정치이다.
+ *   기기마다 다른 값은 "key=value" 형식의 파일로 덮어쓴다. (Android power_profile.xml의 값을 옮겨 적으면 됨)
+ *
+ * key
+ * - wakeup: AP가 깨어날 때마다 드는 전하 (mAs)
+ * - cpu.awake: wakelock을 잡고 깨어 있는 동안의 전류 (mA)
+ * - accel.on: 가속도 센서를 켜 둔 동안의 전류 (mA)
+ * - gps.on: GPS를 켜 둔 동안의 전류 (mA)
+ * - wifi.scan: WIFI 스캔 한 번의 전하 (mAs)
+ * - bluetooth.discovery: 블루투스 discovery 동안의 전류 (mA)
+ */
+public class PowerProfile {
+    private double wakeupCharge = 2.0;
+    private double cpuAwakeCurrent = 20.0;
+    private double accelCurrent = 0.5;
+    private double gpsCurrent = 40.0;
+    private double wifiScanCharge = 60.0;
+    private double bluetoothDiscoveryCurrent = 10.0;
+
+    // 기본값
+    public PowerProfile() {
+    }
+
+    /**
+     * "key=value" 형식의 값으로 기본값을 덮어쓴다. 없는 key는 기본값 유지
+     *
+     * @throws NumberFormatException 값이 숫자가 아닐 때
+     */
+    public static PowerProfile read(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        PowerProfile profile = new PowerProfile();
+        profile.wakeupCharge = get(properties, "wakeup", profile.wakeupCharge);
+        profile.cpuAwakeCurrent = get(properties, "cpu.awake", profile.cpuAwakeCurrent);
+        profile.accelCurrent = get(properties, "accel.on", profile.accelCurrent);
+        profile.gpsCurrent = get(properties, "gps.on", profile.gpsCurrent);
+        profile.wifiScanCharge = get(properties, "wifi.scan", profile.wifiScanCharge);
+        profile.bluetoothDiscoveryCurrent = get(properties, "bluetooth.discovery", profile.bluetoothDiscoveryCurrent);
+        return profile;
+    }
+
+    private static double get(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    public double getWakeupCharge() {
+        return wakeupCharge;
+    }
+
+    public double getCpuAwakeCurrent() {
+        return cpuAwakeCurrent;
+    }
+
+    public double getAccelCurrent() {
+        return accelCurrent;
+    }
+
+    public double getGpsCurrent() {
+        return gpsCurrent;
+    }
+
+    public double getWifiScanCharge() {
+        return wifiScanCharge;
+    }
+
+    public double getBluetoothDiscoveryCurrent() {
+        return bluetoothDiscoveryCurrent;
+    }
+}
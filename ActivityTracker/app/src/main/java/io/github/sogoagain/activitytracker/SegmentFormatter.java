@@ -0,0 +1,50 @@
+package io.github.sogoagain.activitytracker;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * SegmentFormatter
+ * - 상태 구간 레코드를 화면에 보여 줄 문장으로 만드는 클래스
+ * - "HH:mm~HH:mm N분 이동 N걸음", "HH:mm~HH:mm N분 차량 이동" 또는 "HH:mm~HH:mm N분 정지 장소명"
+ */
+public class SegmentFormatter {
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private final Date date = new Date();
+    private final PlaceDictionary places;
+
+    public SegmentFormatter(PlaceDictionary places) {
+        this.places = places;
+    }
+
+    public String format(SegmentLogReader log, int index) {
+        return format(log.getStart(index), log.getEnd(index), log.getState(index), log.getSteps(index),
+                log.getPlace(index));
+    }
+
+    public String format(long start, long end, int state, int steps, int place) {
+        StringBuilder builder = new StringBuilder(32);
+        builder.append(formatTime(start)).append('~').append(formatTime(end)).append(' ')
+                .append(toMinutes(end - start)).append("분 ");
+        if (state == SegmentLogWriter.MOVING) {
+            builder.append("이동 ").append(steps).append("걸음");
+        } else if (state == SegmentLogWriter.VEHICLE) {
+            builder.append("차량 이동");
+        } else {
+            String name = places.getName(place);
+            builder.append("정지 ").append(name != null ? name : "-");
+        }
+        return builder.toString();
+    }
+
+    // 두 시각 사이의 간격(ms)을 분 단위로 (버림)
+    public static int toMinutes(long duration) {
+        return (int) (duration / 60000);
+    }
+
+    private String formatTime(long time) {
+        date.setTime(time);
+        return dateFormat.format(date);
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.sogoagain.activitytracker;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.io.IOException;
+
+/**
+ * SegmentListAdapter
+ * - SegmentPageCursor를 ListView에 연결하는 adapter
+ * - 최근 구간이 맨 위에 오며, 화면에 보이는 행의 문장만 그때그때 만든다.
+ *   스크롤하여 오래된 구간이 보이면 cursor가 해당 페이지를 읽는다.
+ */
+public class SegmentListAdapter extends BaseAdapter {
+    private final LayoutInflater inflater;
+    private final SegmentPageCursor cursor;
+    private SegmentFormatter formatter;
+
+    public SegmentListAdapter(Context context, SegmentPageCursor cursor, SegmentFormatter formatter) {
+        this.inflater = LayoutInflater.from(context);
+        this.cursor = cursor;
+        this.formatter = formatter;
+    }
+
+    // 장소명이 추가되었을 수 있으므로 새 formatter로 교체
+    public void setFormatter(SegmentFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    @Override
+    public int getCount() {
+        return cursor.getCount();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        try {
+            cursor.moveToPosition(position);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "";
+        }
+        return formatter.format(cursor.getStart(), cursor.getEnd(), cursor.getState(), cursor.getSteps(),
+                cursor.getPlace());
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView textView = (TextView) convertView;
+        if (textView == null) {
+            textView = (TextView) inflater.inflate(android.R.layout.simple_list_item_1, parent, false);
+        }
+        textView.setText((String) getItem(position));
+        return textView;
+    }
+}
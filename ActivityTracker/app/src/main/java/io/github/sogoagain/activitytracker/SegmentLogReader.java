@@ -0,0 +1,136 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SegmentLogReader
+ * - SegmentLogWriter로 기록한 상태 구간 파일들을 memory-mapped로 읽는 클래스 (Android 의존성 없음)
+ * - 여러 segment 파일을 순서대로 이어 붙인 하나의 로그로 보여 준다.
+ * - 레코드 길이가 고정이므로 파일 전체를 파싱하지 않고 번호로 바로 접근한다.
+ * - 읽기 전용이며, 연 뒤에 추가된 레코드는 보이지 않는다. (다시 open)
+ */
+public class SegmentLogReader {
+    private final ByteBuffer[] buffers;
+    // firsts[i]: i번째 파일의 첫 레코드 번호, firsts[파일 수] = 전체 레코드 수
+    private final int[] firsts;
+    private final int count;
+
+    // 마지막으로 접근한 파일 (순서대로 읽을 때 파일 찾기를 생략)
+    private int current;
+
+    private SegmentLogReader(ByteBuffer[] buffers, int[] firsts) {
+        this.buffers = buffers;
+        this.firsts = firsts;
+        this.count = firsts[buffers.length];
+    }
+
+    /**
+     * 파일 열기. 파일이 없거나 비어 있으면 레코드가 없는 reader
+     */
+    public static SegmentLogReader open(File file) throws IOException {
+        return open(Collections.singletonList(file));
+    }
+
+    // 여러 segment 파일을 순서대로 연다. (SegmentedStore.segments())
+    public static SegmentLogReader open(List<File> files) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[files.size()];
+        int[] firsts = new int[files.size() + 1];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = map(files.get(i));
+            firsts[i + 1] = firsts[i] + recordCount(buffers[i].capacity());
+        }
+        return new SegmentLogReader(buffers, firsts);
+    }
+
+    // 파일 길이로 계산한 레코드 수 (잘린 마지막 레코드는 제외)
+    public static int recordCount(long length) {
+        if (length < SegmentLogWriter.HEADER_SIZE) {
+            return 0;
+        }
+        return (int) ((length - SegmentLogWriter.HEADER_SIZE) / SegmentLogWriter.RECORD_SIZE);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        long length = file.exists() ? file.length() : 0;
+        if (length < SegmentLogWriter.HEADER_SIZE) {
+            return ByteBuffer.allocate(0);
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            // 채널을 닫아도 매핑은 유지된다.
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != SegmentLogWriter.MAGIC) {
+                throw new IOException("not a segment log: " + file);
+            }
+            int version = buffer.getInt(4);
+            if (version != SegmentLogWriter.VERSION) {
+                throw new IOException("unsupported segment log version: " + version);
+            }
+            return buffer;
+        } finally {
+            in.close();
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // 시작 시각 (epoch ms)
+    public long getStart(int index) {
+        int offset = locate(index);
+        return buffers[current].getLong(offset);
+    }
+
+    // 종료 시각 (epoch ms)
+    public long getEnd(int index) {
+        int offset = locate(index);
+        return buffers[current].getLong(offset + 8);
+    }
+
+    // SegmentLogWriter.STILL, MOVING, VEHICLE
+    public int getState(int index) {
+        int offset = locate(index);
+        return buffers[current].getInt(offset + 16);
+    }
+
+    public int getSteps(int index) {
+        int offset = locate(index);
+        return buffers[current].getInt(offset + 20);
+    }
+
+    // PlaceDictionary 장소 번호, 없으면 SegmentLogWriter.NO_PLACE
+    public int getPlace(int index) {
+        int offset = locate(index);
+        return buffers[current].getInt(offset + 24);
+    }
+
+    // index번 레코드가 있는 파일을 current로 정하고 그 파일 안에서의 위치를 반환
+    private int locate(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + count);
+        }
+        if (index < firsts[current] || index >= firsts[current + 1]) {
+            // firsts에서 index 이하인 마지막 위치 (빈 파일은 건너뜀)
+            int low = 0;
+            int high = buffers.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (firsts[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            current = low;
+        }
+        return SegmentLogWriter.HEADER_SIZE + (index - firsts[current]) * SegmentLogWriter.RECORD_SIZE;
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * SegmentLogWriter
+ * - 이동/정지 상태 구간을 고정 길이 바이너리 레코드로 기록하는 클래스 (Android 의존성 없음)
+ * - 문자열은 기록하지 않는다. 화면에 보여 줄 문장은 SegmentFormatter가 표시할 때 만든다.
+ * - 구간은 시작 시각의 날짜별 segment 파일(SegmentedStore)에 기록한다.
+ *
+ * 파일 형식 (big-endian, segment 파일마다)
+ * - 헤더 (16바이트): int MAGIC, int VERSION, long 예약
+ * - 레코드 (32바이트): long 시작 시각(epoch ms), long 종료 시각(epoch ms), int 상태, int 걸음 수,
+ *   int 장소 번호(PlaceDictionary), int 예약
+ * - 레코드 길이가 고정이므로 i번째 레코드는 HEADER_SIZE + i * RECORD_SIZE 위치에 있다.
+ *   기록 도중 종료되어 잘린 마지막 레코드는 writer를 만들 때 잘라 낸다.
+ * - 실제 기록은 AsyncFileWriter의 백그라운드 스레드에서 이루어진다.
+ */
+public class SegmentLogWriter {
+    // 저장소 디렉토리 (Download 디렉토리 아래)와 segment 파일 확장자
+    public static final String DIRECTORY_NAME = "ActivityTrackerSegments";
+    public static final String SUFFIX = ".bin";
+    // 상태 구간 보관 기간 (일)
+    public static final int RETENTION_DAYS = 366;
+
+    static final int MAGIC = 0x41545347;    // "ATSG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+
+    // 상태
+    public static final int STILL = 0;
+    public static final int MOVING = 1;     // 도보 이동 (걷기, 달리기)
+    public static final int VEHICLE = 2;    // 차량 이동 (걸음 수 0)
+
+    // 장소가 없는 구간 (이동 구간 등)
+    public static final int NO_PLACE = -1;
+
+    private final SegmentedStore store;
+    private final AsyncFileWriter writer;
+    private final byte[] header;
+
+    public SegmentLogWriter(SegmentedStore store, AsyncFileWriter writer) {
+        this.store = store;
+        this.writer = writer;
+        header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(0).array();
+        for (File file : store.segments()) {
+            repair(file);
+        }
+    }
+
+    // folder 아래의 상태 구간 저장소
+    public static SegmentedStore openStore(File folder) {
+        return SegmentedStore.open(new File(folder, DIRECTORY_NAME), SUFFIX, RETENTION_DAYS);
+    }
+
+    /**
+     * 레코드 하나를 기록하도록 AsyncFileWriter에 넘긴다.
+     *
+     * @param onWritten - 파일에 기록된 뒤 writer 스레드에서 호출 (없으면 null). 기록에 실패하면 호출되지 않는다.
+     */
+    public void append(long start, long end, int state, int steps, int place, Runnable onWritten) {
+        byte[] record = ByteBuffer.allocate(RECORD_SIZE)
+                .putLong(start)
+                .putLong(end)
+                .putInt(state)
+                .putInt(steps)
+                .putInt(place)
+                .putInt(0)
+                .array();
+        writer.write(store.segmentFor(start), header, record, onWritten);
+    }
+
+    // 헤더나 마지막 레코드가 잘린 파일을 레코드 경계까지 잘라 낸다.
+    private static void repair(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                long length = raf.length();
+                long valid = length < HEADER_SIZE ? 0 : length - (length - HEADER_SIZE) % RECORD_SIZE;
+                if (valid != length) {
+                    raf.setLength(valid);
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SegmentPageCursor
+ * - 상태 구간 로그를 최신 구간부터(마지막 segment 파일의 끝에서부터) 보여 주기 위한 페이지 단위 cursor
+ *   (Android 의존성 없음)
+ * - position 0이 가장 최근 구간이다.
+ * - 레코드 길이가 고정이므로 줄 위치 인덱스 없이 레코드 번호로 파일 위치를 바로 계산한다.
+ * - 필요한 페이지(한 segment 파일 안의 PAGE_SIZE개 레코드)만 읽고, 최근에 쓴 MAX_PAGES개 페이지만 LRU로
+ *   보관하므로 로그가 아무리 길어도 메모리 사용량이 일정하다.
+ */
+public class SegmentPageCursor {
+    private static final int PAGE_SIZE = 64;
+    private static final int MAX_PAGES = 4;
+
+    // 페이지 하나
+    private static class Page {
+        final long[] starts = new long[PAGE_SIZE];
+        final long[] ends = new long[PAGE_SIZE];
+        final int[] states = new int[PAGE_SIZE];
+        final int[] steps = new int[PAGE_SIZE];
+        final int[] places = new int[PAGE_SIZE];
+    }
+
+    private final SegmentedStore store;
+    private final ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE * SegmentLogWriter.RECORD_SIZE);
+
+    // segment 파일들과 파일별 첫 레코드 번호 (firsts[파일 수] = 전체 구간 수)
+    private List<File> files;
+    private int[] firsts = new int[1];
+    private int count;
+    private long pageReads;
+
+    // (파일 번호 << 32 | 파일 안의 페이지 번호) -> 페이지
+    // 접근 순서로 정렬하여 가장 오래 쓰지 않은 페이지를 버린다.
+    private final LinkedHashMap<Long, Page> pages = new LinkedHashMap<Long, Page>(MAX_PAGES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    // 현재 position이 가리키는 페이지와 위치
+    private Page page;
+    private int offset;
+
+    public SegmentPageCursor(SegmentedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * segment 목록과 파일 길이를 다시 확인하여 새로 추가된 구간을 반영한다.
+     * 마지막 파일의 마지막 페이지는 내용이 늘어났을 수 있으므로 버리고,
+     * segment 목록이 바뀌었으면(새 날짜, 보관 기간 삭제, 전체 삭제) 모든 페이지를 버린다.
+     *
+     * @return 구간 수
+     */
+    public int refresh() {
+        List<File> newFiles = store.segments();
+        if (!newFiles.equals(files)) {
+            pages.clear();
+        } else if (count > 0) {
+            int last = files.size() - 1;
+            int lastCount = firsts[last + 1] - firsts[last];
+            if (lastCount > 0) {
+                pages.remove(key(last, (lastCount - 1) / PAGE_SIZE));
+            }
+        }
+        files = newFiles;
+        firsts = new int[files.size() + 1];
+        for (int i = 0; i < files.size(); i++) {
+            firsts[i + 1] = firsts[i] + SegmentLogReader.recordCount(files.get(i).length());
+        }
+        count = firsts[files.size()];
+        page = null;
+        return count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // 지금까지 파일에서 읽은 페이지 수
+    public long getPageReads() {
+        return pageReads;
+    }
+
+    /**
+     * position 위치로 이동한다. 이후 get 메소드들은 이 구간의 값을 반환한다.
+     *
+     * @param position - 0이 가장 최근 구간
+     */
+    public void moveToPosition(int position) throws IOException {
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("position: " + position + ", count: " + count);
+        }
+        int index = count - 1 - position;
+        int file = files.size() - 1;
+        while (firsts[file] > index) {
+            file--;
+        }
+        int local = index - firsts[file];
+        int pageIndex = local / PAGE_SIZE;
+        long key = key(file, pageIndex);
+        page = pages.get(key);
+        if (page == null) {
+            page = readPage(file, pageIndex);
+            pages.put(key, page);
+        }
+        offset = local - pageIndex * PAGE_SIZE;
+    }
+
+    public long getStart() {
+        return page.starts[offset];
+    }
+
+    public long getEnd() {
+        return page.ends[offset];
+    }
+
+    public int getState() {
+        return page.states[offset];
+    }
+
+    public int getSteps() {
+        return page.steps[offset];
+    }
+
+    public int getPlace() {
+        return page.places[offset];
+    }
+
+    // 보관 중인 페이지를 모두 버린다.
+    public void close() {
+        pages.clear();
+        page = null;
+    }
+
+    private static long key(int file, int pageIndex) {
+        return ((long) file << 32) | pageIndex;
+    }
+
+    private Page readPage(int file, int pageIndex) throws IOException {
+        int first = pageIndex * PAGE_SIZE;
+        int size = Math.min(PAGE_SIZE, firsts[file + 1] - firsts[file] - first);
+        buffer.clear();
+        buffer.limit(size * SegmentLogWriter.RECORD_SIZE);
+        long position = SegmentLogWriter.HEADER_SIZE + (long) first * SegmentLogWriter.RECORD_SIZE;
+        RandomAccessFile raf = new RandomAccessFile(files.get(file), "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() >= SegmentLogWriter.HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                channel.read(header, 0);
+                if (header.getInt(0) != SegmentLogWriter.MAGIC || header.getInt(4) != SegmentLogWriter.VERSION) {
+                    throw new IOException("not a segment log: " + files.get(file));
+                }
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of segment log");
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        buffer.flip();
+
+        Page page = new Page();
+        for (int i = 0; i < size; i++) {
+            page.starts[i] = buffer.getLong();
+            page.ends[i] = buffer.getLong();
+            page.states[i] = buffer.getInt();
+            page.steps[i] = buffer.getInt();
+            page.places[i] = buffer.getInt();
+            buffer.getInt();
+        }
+        pageReads++;
+        return page;
+    }
+}
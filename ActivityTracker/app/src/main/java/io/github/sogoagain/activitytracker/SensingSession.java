@@ -0,0 +1,168 @@
+package io.github.sogoagain.activitytracker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * SensingSession
+ * - alarm마다 반복하는 센싱 구간(wakelock -> 가속도 측정 -> 판정 -> wakelock 해제)을 맡는 객체
+ * - 서비스가 하나만 만들어 계속 사용한다. MovingMonitor와 타임아웃 Runnable을 한 번만 만들어
+ *   구간마다 등록/해제만 반복하므로 alarm마다 새 객체를 할당하지 않는다.
+ * - 움직임으로 보이는데 활동 분류(ActivityRecognizer)에 필요한 샘플이 모자라면 recognitionTime까지 구간을 늘린다.
+ * - wakelock은 WakeLockManager의 ALARM_WINDOW lease로 잡는다. (제한 시간: 최대 구간 길이 + LEASE_MARGIN)
+ * - 구간이 끝나면(ACTIVE_TIME 경과, 조기 판정, stop()) 반드시 센서 listener를 해제한 뒤 listener를 호출한다.
+ * - main 스레드에서만 사용한다.
+ */
+public class SensingSession {
+    private static final String TAG = "AT_SensingSession";
+    // 구간이 끝난 뒤 판정 결과를 처리하는 데 허용하는 시간
+    private static final long LEASE_MARGIN = 5000;
+
+    public interface Listener {
+        /**
+         * 센싱 구간이 끝남. 센서 listener는 이미 해제되었고 wakelock은 아직 잡고 있다.
+         *
+         * @param activity - 활동 판정 (ActivityRecognizer.STILL, WALK, RUN, VEHICLE)
+         * @param duration - 구간 길이 (ms)
+         * @param samples  - 이번 구간에서 처리한 샘플 수
+         */
+        void onWindowFinished(int activity, long duration, int samples);
+    }
+
+    private final long activeTime;
+    private final long recognitionTime;
+    private final Listener listener;
+    private final MovingMonitor movingMonitor;
+    private final WakeLockManager wakeLocks;
+    private final Handler handler = new Handler();
+
+    private boolean isOpen = false;
+    private boolean isLeased = false;  // ALARM_WINDOW lease를 받았는지 여부
+    private long startTime;         // 구간 시작 시각 (elapsedRealtime)
+
+    // 통계
+    private long windows;
+    private long overlappedStarts;  // 구간이 열려 있는 동안 다시 시작을 요청한 횟수
+    private long deniedStarts;      // wakelock 예산을 다 써서 시작하지 못한 횟수
+
+    private final Runnable timeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long elapsed = SystemClock.elapsedRealtime() - startTime;
+            long maxTime = activeTime + recognitionTime;
+            if (!movingMonitor.isActivityReady() && elapsed < maxTime) {
+                handler.postDelayed(this, maxTime - elapsed);
+                return;
+            }
+            finish();
+        }
+    };
+
+    /**
+     * @param activeTime      - 구간 길이 (ms)
+     * @param recognitionTime - 활동 분류에 샘플이 모자랄 때 구간을 더 늘릴 수 있는 시간 (ms)
+     * @param earlyDecision   - true이면 판정이 확실해지는 즉시 구간을 끝낸다.
+     */
+    public SensingSession(Context context, WakeLockManager wakeLocks, long activeTime, long recognitionTime,
+                          boolean earlyDecision, Listener listener) {
+        this.wakeLocks = wakeLocks;
+        this.activeTime = activeTime;
+        this.recognitionTime = recognitionTime;
+        this.listener = listener;
+
+        movingMonitor = new MovingMonitor(context);
+        if (earlyDecision) {
+            movingMonitor.setOnDecisionListener(new MovingMonitor.OnDecisionListener() {
+                @Override
+                public void onDecision(boolean moving) {
+                    // 판정이 확실해졌으므로 타임아웃을 기다리지 않고 바로 구간을 끝낸다.
+                    finish();
+                }
+            });
+        }
+    }
+
+    /**
+     * 센싱 구간 시작: wakelock을 잡고 가속도 측정을 시작한다.
+     *
+     * @return 이미 구간이 열려 있거나 wakelock 예산을 다 썼으면 false
+     */
+    public boolean start() {
+        if (isOpen) {
+            overlappedStarts++;
+            Log.d(TAG, "window already open");
+            return false;
+        }
+        // ACQUIRE a wakelock here to collect and process accelerometer data and control location updates
+        if (!wakeLocks.acquire(WakeLockManager.ALARM_WINDOW, activeTime + recognitionTime + LEASE_MARGIN)) {
+            deniedStarts++;
+            return false;
+        }
+        isLeased = true;
+        startTime = SystemClock.elapsedRealtime();
+        isOpen = true;
+        movingMonitor.onStart();
+        handler.postDelayed(timeoutRunnable, activeTime);
+        return true;
+    }
+
+    /**
+     * 센싱 구간 종료 처리
+     * ACTIVE_TIME이 지나거나 조기 판정이 내려졌을 때 한 번만 수행된다.
+     */
+    private void finish() {
+        if (!isOpen) {
+            return;
+        }
+        long duration = detach();
+        windows++;
+        try {
+            listener.onWindowFinished(movingMonitor.getActivity(), duration, movingMonitor.getSampleCount());
+        } finally {
+            // When you finish your job, RELEASE the wakelock
+            releaseWakeLock();
+        }
+    }
+
+    // 진행 중인 구간을 판정 없이 끝내고 wakelock을 놓는다. (서비스 종료 시)
+    public void stop() {
+        if (isOpen) {
+            detach();
+        }
+        releaseWakeLock();
+    }
+
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    public long getWindows() {
+        return windows;
+    }
+
+    public long getOverlappedStarts() {
+        return overlappedStarts;
+    }
+
+    public long getDeniedStarts() {
+        return deniedStarts;
+    }
+
+    // 타임아웃을 취소하고 센서 listener를 해제한다. 구간 길이(ms)를 반환
+    private long detach() {
+        isOpen = false;
+        handler.removeCallbacks(timeoutRunnable);
+        // stop the accel data update
+        movingMonitor.onStop();
+        return SystemClock.elapsedRealtime() - startTime;
+    }
+
+    private void releaseWakeLock() {
+        if (isLeased) {
+            isLeased = false;
+            wakeLocks.release(WakeLockManager.ALARM_WINDOW);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * SensorTrace
+ * - SensorTraceWriter로 기록한 트레이스를 primitive 배열로 읽어 들인 결과 (Android 의존성 없음)
+ * - timestamps[i]: i번째 샘플 시각 (ns)
+ * - values[3 * i], values[3 * i + 1], values[3 * i + 2]: i번째 샘플의 x, y, z (m/s^2)
+ */
+public class SensorTrace {
+    private long[] timestamps;
+    private float[] values;
+    private int count;
+
+    private SensorTrace(int capacity) {
+        timestamps = new long[capacity];
+        values = new float[capacity * 3];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public float[] getValues() {
+        return values;
+    }
+
+    // 트레이스 전체 길이 (ns)
+    public long getDuration() {
+        if (count == 0) {
+            return 0;
+        }
+        return timestamps[count - 1] - timestamps[0];
+    }
+
+    public static SensorTrace read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            // 레코드 하나는 최소 7바이트이므로 파일 크기로 배열 크기를 미리 잡아 둔다.
+            return read(in, (int) Math.max(16, file.length() / 7));
+        } finally {
+            in.close();
+        }
+    }
+
+    public static SensorTrace read(InputStream inputStream) throws IOException {
+        return read(inputStream, 1024);
+    }
+
+    private static SensorTrace read(InputStream inputStream, int capacity) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        SensorTrace trace = new SensorTrace(capacity);
+
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            // 빈 트레이스
+            return trace;
+        }
+        if (magic != SensorTraceWriter.MAGIC) {
+            throw new IOException("not a sensor trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != SensorTraceWriter.VERSION) {
+            throw new IOException("unsupported trace version: " + version);
+        }
+        float scale = in.readFloat();
+        long timestamp = in.readLong();
+
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                break;
+            }
+            try {
+                long delta = readVarLong(in, first);
+                timestamp += delta * 1000;
+                trace.add(timestamp, in.readShort() * scale, in.readShort() * scale, in.readShort() * scale);
+            } catch (EOFException e) {
+                // 기록 도중 종료되어 마지막 레코드가 잘린 경우 그 앞까지만 사용
+                break;
+            }
+        }
+        return trace;
+    }
+
+    private static long readVarLong(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    private void add(long timestamp, float x, float y, float z) {
+        if (count == timestamps.length) {
+            long[] newTimestamps = new long[count * 2];
+            float[] newValues = new float[count * 6];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, count);
+            System.arraycopy(values, 0, newValues, 0, count * 3);
+            timestamps = newTimestamps;
+            values = newValues;
+        }
+        timestamps[count] = timestamp;
+        values[count * 3] = x;
+        values[count * 3 + 1] = y;
+        values[count * 3 + 2] = z;
+        count++;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.sogoagain.activitytracker;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Environment;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * SensorTraceRecorder
+ * - TYPE_LINEAR_ACCELERATION 이벤트를 Download 디렉토리의 바이너리 트레이스 파일로 기록한다.
+ * - 기록한 트레이스는 TraceReplayer로 PC(JVM)에서 재생하여 StepDetector, MovementDetector를 평가할 수 있다.
+ */
+public class SensorTraceRecorder implements SensorEventListener {
+    private static final String TAG = "AT_TraceRecorder";
+    private static final String FILE_PREFIX = "ActivityTrackerTrace_";
+    private static final String FILE_EXTENSION = ".attr";
+
+    private SensorManager sensorManager;
+    private Sensor accelLinear;
+    private SensorTraceWriter writer;
+    private File file;
+
+    public SensorTraceRecorder(Context context) {
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        accelLinear = sensorManager.getDefaultSensor(Sensor.TYPE_LINEAR_ACCELERATION);
+    }
+
+    public void start() {
+        if (writer != null || accelLinear == null) {
+            return;
+        }
+        File folder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        String name = new SimpleDateFormat("yyyyMMdd_HHmmss", java.util.Locale.US).format(new Date());
+        file = new File(folder, FILE_PREFIX + name + FILE_EXTENSION);
+        try {
+            writer = new SensorTraceWriter(new FileOutputStream(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        Log.d(TAG, "Start recording: " + file.getName());
+        sensorManager.registerListener(this, accelLinear, SensorManager.SENSOR_DELAY_GAME);
+    }
+
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        sensorManager.unregisterListener(this);
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Log.d(TAG, "Stop recording: " + file.getName() + " (" + writer.getCount() + " samples)");
+        writer = null;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (writer == null || event.sensor.getType() != Sensor.TYPE_LINEAR_ACCELERATION) {
+            return;
+        }
+        try {
+            writer.append(event.timestamp, event.values[0], event.values[1], event.values[2]);
+        } catch (IOException e) {
+            e.printStackTrace();
+            stop();
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * SensorTraceWriter
+ * - TYPE_LINEAR_ACCELERATION 샘플을 압축된 바이너리 트레이스로 기록하는 클래스 (Android 의존성 없음)
+ *
+ * 파일 형식 (big-endian)
+ * - 헤더: int MAGIC, byte VERSION, float SCALE, long 첫 샘플 시각(ns)
+ * - 레코드: 직전 샘플과의 시각 차이(us, unsigned varint) + 3축 값(short, 값 / SCALE 로 양자화)
+ */
+public class SensorTraceWriter {
+    static final int MAGIC = 0x41545452;    // "ATTR"
+    static final int VERSION = 1;
+    // 양자화 단위 (m/s^2). short 범위로 약 +-32 m/s^2 까지 표현
+    static final float SCALE = 0.001f;
+
+    private final OutputStream out;
+    private boolean isHeaderWritten = false;
+    private long previousMicros;
+    private int count;
+
+    public SensorTraceWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out);
+    }
+
+    public void append(long timestamp, float x, float y, float z) throws IOException {
+        long micros = timestamp / 1000;
+        if (!isHeaderWritten) {
+            writeInt(MAGIC);
+            out.write(VERSION);
+            writeInt(Float.floatToIntBits(SCALE));
+            writeLong(timestamp);
+            previousMicros = micros;
+            isHeaderWritten = true;
+        }
+
+        // 시각이 역행하는 샘플은 차이를 0으로 기록
+        long delta = micros - previousMicros;
+        if (delta < 0) {
+            delta = 0;
+        }
+        previousMicros += delta;
+        writeVarLong(delta);
+        writeShort(quantize(x));
+        writeShort(quantize(y));
+        writeShort(quantize(z));
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static int quantize(float value) {
+        int q = Math.round(value / SCALE);
+        if (q > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        } else if (q < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return q;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write((value >>> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value >>> 16);
+        writeShort(value);
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * SnapshotFile
+ * - 통계, 지표, 학습 결과처럼 매번 통째로 다시 쓰는 작은 파일을 저장하는 클래스 (Android 의존성 없음)
+ * - 임시 파일(.tmp)에 쓰고 fsync한 뒤 이름을 바꾸므로, 저장 도중 종료되어도
+ *   이전 내용이나 새 내용 중 하나가 온전히 남는다. (fsync 없이 이름을 바꾸면 빈 파일이 남을 수 있음)
+ */
+public class SnapshotFile {
+    private SnapshotFile() {
+    }
+
+    public static void write(File file, byte[] data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(temp);
+        try {
+            fos.write(data);
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("cannot rename " + temp + " to " + file);
+        }
+    }
+}
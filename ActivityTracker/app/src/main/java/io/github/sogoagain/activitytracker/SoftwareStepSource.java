@@ -0,0 +1,157 @@
+package io.github.sogoagain.activitytracker;
+
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * SoftwareStepSource
+ * - 선형 가속도를 SENSOR_DELAY_GAME으로 받아 StepMonitor(StepDetector)로 걸음을 세는 방식
+ * - 센서 허브에 FIFO가 있으면 배치 모드를 사용한다.
+ *   FIFO가 넘치지 않도록 FIFO에 담을 수 있는 샘플 수만큼만 지연을 허용한다.
+ * - 배치 모드에서 stop()하면 바로 해제하지 않고 FIFO를 flush한 뒤 onFlushCompleted()에서 해제한다.
+ *   해제하면 FIFO에 남아 있던(최대 maxReportLatencyUs만큼의) 샘플이 버려지기 때문이다.
+ */
+public class SoftwareStepSource implements StepSource {
+    private static final String TAG = "AT_SoftwareStepSource";
+    // flush 완료가 오지 않으면 이 시간(ms) 뒤에 그냥 해제
+    private static final long FLUSH_TIMEOUT = 2000;
+
+    private final SensorManager sensorManager;
+    private final Sensor accelLinear;
+    private final StepMonitor stepMonitor = new StepMonitor();
+    private int maxReportLatencyUs = 0;     // 0이면 배치 모드를 사용하지 않음
+    private boolean isStarted = false;
+    private boolean isFlushing = false;     // stop() 후 flush 완료를 기다리는 중 (listener는 아직 등록됨)
+    private Runnable onStopped;
+
+    private final Handler handler = new Handler();
+    private final Runnable unregisterRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isFlushing) {
+                Log.d(TAG, "flush timeout");
+                unregister();
+            }
+        }
+    };
+
+    /**
+     * @param maxReportLatencyUs - 배치 모드의 최대 전달 지연 (us)
+     * @param samplingPeriodUs   - SENSOR_DELAY_GAME의 샘플링 주기 (us)
+     */
+    public SoftwareStepSource(SensorManager sensorManager, int maxReportLatencyUs, int samplingPeriodUs) {
+        this.sensorManager = sensorManager;
+        accelLinear = sensorManager.getDefaultSensor(Sensor.TYPE_LINEAR_ACCELERATION);
+
+        if (accelLinear != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int fifoCount = accelLinear.getFifoReservedEventCount();
+            if (fifoCount <= 0) {
+                fifoCount = accelLinear.getFifoMaxEventCount() / 2;
+            }
+            this.maxReportLatencyUs = (int) Math.min((long) maxReportLatencyUs, (long) fifoCount * samplingPeriodUs);
+        }
+        stepMonitor.setBatching(this.maxReportLatencyUs > 0);
+        stepMonitor.setFlushListener(new Runnable() {
+            @Override
+            public void run() {
+                if (isFlushing) {
+                    unregister();
+                }
+            }
+        });
+        Log.d(TAG, "step batching: " + (this.maxReportLatencyUs > 0) + " (max latency " + this.maxReportLatencyUs + "us)");
+    }
+
+    public boolean start() {
+        if (isStarted) {
+            return true;
+        }
+        if (isFlushing) {
+            // 해제하기 전에 다시 시작: listener를 그대로 두고, 기다리던 쪽에는 지금까지의 걸음 수로 끝났음을 알린다.
+            handler.removeCallbacks(unregisterRunnable);
+            isFlushing = false;
+            isStarted = true;
+            notifyStopped();
+            return true;
+        }
+        if (accelLinear == null) {
+            return false;
+        }
+        if (maxReportLatencyUs > 0) {
+            sensorManager.registerListener(stepMonitor, accelLinear, SensorManager.SENSOR_DELAY_GAME, maxReportLatencyUs);
+        } else {
+            sensorManager.registerListener(stepMonitor, accelLinear, SensorManager.SENSOR_DELAY_GAME);
+        }
+        isStarted = true;
+        return true;
+    }
+
+    public void stop(Runnable onStopped) {
+        if (!isStarted) {
+            if (onStopped != null) {
+                onStopped.run();
+            }
+            return;
+        }
+        isStarted = false;
+        this.onStopped = onStopped;
+        if (maxReportLatencyUs > 0 && sensorManager.flush(stepMonitor)) {
+            isFlushing = true;
+            handler.postDelayed(unregisterRunnable, FLUSH_TIMEOUT);
+            return;
+        }
+        unregister();
+    }
+
+    private void unregister() {
+        handler.removeCallbacks(unregisterRunnable);
+        sensorManager.unregisterListener(stepMonitor);
+        isFlushing = false;
+        Log.d(TAG, "step samples: " + stepMonitor.getSampleCount() + ", deliveries: " + stepMonitor.getDeliveryCount()
+                + ", saved deliveries: " + stepMonitor.getSavedDeliveries());
+        notifyStopped();
+    }
+
+    private void notifyStopped() {
+        Runnable callback = onStopped;
+        onStopped = null;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    public boolean isStarted() {
+        return isStarted;
+    }
+
+    public boolean isFlushing() {
+        return isFlushing;
+    }
+
+    public int getSteps() {
+        return stepMonitor.getSteps();
+    }
+
+    public void resetSteps() {
+        stepMonitor.resetSteps();
+    }
+
+    public long getEventCount() {
+        return stepMonitor.getSampleCount();
+    }
+
+    public long getDeliveryCount() {
+        return stepMonitor.getDeliveryCount();
+    }
+
+    public boolean usesAccelerometer() {
+        return true;
+    }
+
+    public String getName() {
+        return "software";
+    }
+}
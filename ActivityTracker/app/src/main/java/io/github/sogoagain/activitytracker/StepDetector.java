@@ -0,0 +1,128 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * StepDetector
+ * - 선형 가속도 샘플 스트림에서 실제 걸음을 검출하는 엔진
+ * - 저역통과 필터를 거친 가속도 크기(magnitude)가 최근 구간 평균을 위로 교차했다가
+ *   피크를 지나 다시 평균 아래로 내려오면 한 걸음으로 센다. (peak / mean-crossing 방식)
+ * - 샘플마다 객체를 할당하지 않도록 primitive 링 버퍼와 필드만 사용한다.
+ * - Android 의존성이 없으므로 JVM에서도 그대로 구동할 수 있다.
+ */
+public class StepDetector {
+    // 평균을 구하는 링 버퍼 크기 (2의 거듭제곱)
+    // SENSOR_DELAY_GAME(약 20ms) 기준 약 1.3초 구간
+    private static final int WINDOW_SIZE = 64;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    // 저역통과 필터 계수: 클수록 원 신호를 더 많이 반영
+    private static final float SMOOTHING = 0.25f;
+
+    // 평균보다 이만큼 높아야 피크 구간에 들어간 것으로 판단 (m/s^2)
+    private static final float HYSTERESIS = 0.3f;
+
+    // 걸음으로 인정할 최소 피크 크기 (m/s^2). 정지 상태의 센서 잡음을 걸러낸다.
+    private static final float MIN_PEAK = 1.5f;
+
+    // 두 걸음 사이의 최소 간격 (ns). 초당 4걸음 이상은 잡음으로 간주
+    private static final long MIN_STEP_INTERVAL_NS = 250000000L;
+
+    private final float[] window = new float[WINDOW_SIZE];
+    private int windowIndex;
+    private int windowCount;
+    private double windowSum;
+
+    private float smoothed;
+    private boolean isAbove;
+    private float peak;
+    private long lastStepTime;
+    private int steps;
+
+    public StepDetector() {
+        reset();
+    }
+
+    /**
+     * 샘플 하나를 처리한다.
+     *
+     * @param timestamp - 샘플 시각 (ns)
+     * @return 이번 샘플로 걸음이 검출되었으면 true
+     */
+    public boolean onSample(long timestamp, float x, float y, float z) {
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        smoothed += SMOOTHING * (magnitude - smoothed);
+
+        // 링 버퍼 갱신: 가장 오래된 값을 빼고 새 값을 더해 평균을 O(1)로 유지
+        windowSum -= window[windowIndex];
+        window[windowIndex] = smoothed;
+        windowSum += smoothed;
+        windowIndex = (windowIndex + 1) & WINDOW_MASK;
+        if (windowCount < WINDOW_SIZE) {
+            windowCount++;
+        }
+        float mean = (float) (windowSum / windowCount);
+
+        if (!isAbove) {
+            // 평균을 위로 교차하면 피크 구간 시작
+            if (smoothed > mean + HYSTERESIS) {
+                isAbove = true;
+                peak = smoothed;
+            }
+            return false;
+        }
+
+        if (smoothed > peak) {
+            peak = smoothed;
+        }
+        if (smoothed >= mean) {
+            return false;
+        }
+
+        // 평균 아래로 내려오면 피크 구간 종료. 피크 크기와 간격을 확인해 걸음으로 인정
+        isAbove = false;
+        if (peak >= MIN_PEAK && timestamp - lastStepTime >= MIN_STEP_INTERVAL_NS) {
+            lastStepTime = timestamp;
+            steps++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 여러 샘플을 한 번에 처리한다. (센서 허브가 FIFO에 모아 전달한 샘플 묶음)
+     *
+     * @param timestamps - 샘플 시각 (ns)
+     * @param values     - x, y, z 순서로 이어 붙인 값 (길이 3 * count 이상)
+     * @return 이번 묶음에서 검출된 걸음 수
+     */
+    public int onSamples(long[] timestamps, float[] values, int count) {
+        int before = steps;
+        for (int i = 0; i < count; i++) {
+            int offset = i * 3;
+            onSample(timestamps[i], values[offset], values[offset + 1], values[offset + 2]);
+        }
+        return steps - before;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void resetSteps() {
+        steps = 0;
+    }
+
+    // 필터와 링 버퍼 상태까지 모두 초기화
+    public void reset() {
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            window[i] = 0;
+        }
+        windowIndex = 0;
+        windowCount = 0;
+        windowSum = 0;
+        smoothed = 0;
+        isAbove = false;
+        peak = 0;
+        lastStepTime = -MIN_STEP_INTERVAL_NS;
+        steps = 0;
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.sogoagain.activitytracker;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+
+/**
+ * StepDetectorBenchmark
+ * - StepDetector의 샘플당 처리 시간과 할당량을 재는 PC(JVM)용 도구
+ * - 걷기를 흉내 낸 합성 신호를 샘플 하나씩(onSample), 묶음으로(onSamples) 넣어 각각 측정한다.
+ * - 할당량은 HotSpot의 ThreadMXBean.getThreadAllocatedBytes()로 잰다.
+ *   Android에는 java.lang.management가 없으므로 reflection으로 호출한다.
+ *
+ * 사용법: java StepDetectorBenchmark [샘플 수]
+ */
+public class StepDetectorBenchmark {
+    private static final long SAMPLE_PERIOD_NS = 20000000L;    // SENSOR_DELAY_GAME
+    private static final double STEP_FREQUENCY = 1.9;          // Hz
+    // 배치 모드에서 한 번에 전달되는 샘플 수 (StepMonitor.BATCH_CAPACITY)
+    private static final int BATCH_SIZE = 256;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+        // 합성 신호를 미리 만들어 두고 측정에는 포함하지 않는다.
+        // 묶음 측정에서는 같은 묶음을 반복해서 넣으므로 걸음 수는 확인하지 않는다.
+        int length = BATCH_SIZE * 64;
+        long[] timestamps = new long[length];
+        float[] values = new float[length * 3];
+        synthesize(timestamps, values, new Random(1));
+        long expectedSteps = Math.round(count * SAMPLE_PERIOD_NS / 1e9 * STEP_FREQUENCY);
+
+        Method allocated = findAllocatedBytes();
+        // 할당량 측정 호출 자체가 할당하는 양 (boxing 등)은 빼고 출력
+        long overhead = allocatedBytes(allocated);
+        overhead = allocatedBytes(allocated) - overhead;
+        StepDetector detector = new StepDetector();
+        // 워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            boolean isWarmup = round == 0;
+            int n = isWarmup ? count / 10 : count;
+
+            detector.reset();
+            long bytes = allocatedBytes(allocated);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                int s = i % length;
+                int offset = s * 3;
+                // 신호를 반복해도 시각은 계속 증가하도록 한다.
+                detector.onSample(i * SAMPLE_PERIOD_NS, values[offset], values[offset + 1], values[offset + 2]);
+            }
+            long time = System.nanoTime() - start;
+            bytes = allocatedBytes(allocated) - bytes - overhead;
+            report(isWarmup, "onSample", n, time, bytes, detector.getSteps(), expectedSteps);
+
+            detector.reset();
+            bytes = allocatedBytes(allocated);
+            start = System.nanoTime();
+            int processed = 0;
+            while (processed < n) {
+                int batch = Math.min(BATCH_SIZE, n - processed);
+                detector.onSamples(timestamps, values, batch);
+                processed += batch;
+            }
+            time = System.nanoTime() - start;
+            bytes = allocatedBytes(allocated) - bytes - overhead;
+            report(isWarmup, "onSamples(" + BATCH_SIZE + ")", n, time, bytes, -1, -1);
+        }
+    }
+
+    private static void report(boolean isWarmup, String name, int count, long time, long bytes,
+                               long steps, long expectedSteps) {
+        if (isWarmup) {
+            return;
+        }
+        String result = String.format("%-15s %10d samples %8.1f ns/sample", name, count, (double) time / count);
+        if (threadBean != null) {
+            result += String.format(" %10d bytes allocated (%.3f bytes/sample)", bytes, (double) bytes / count);
+        } else {
+            result += " (allocation n/a)";
+        }
+        if (steps >= 0) {
+            result += String.format(", steps %d (expected %d)", steps, expectedSteps);
+        }
+        System.out.println(result);
+    }
+
+    private static Object threadBean;
+
+    // com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)
+    private static Method findAllocatedBytes() {
+        try {
+            Class<?> factory = Class.forName("java.lang.management.ManagementFactory");
+            Object bean = factory.getMethod("getThreadMXBean").invoke(null);
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (!beanClass.isInstance(bean)) {
+                return null;
+            }
+            threadBean = bean;
+            return beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // 지원하지 않는 JVM이면 0 (할당량은 출력하지 않음)
+    private static long allocatedBytes(Method allocated) throws Exception {
+        if (allocated == null) {
+            return 0;
+        }
+        return (Long) allocated.invoke(threadBean, Thread.currentThread().getId());
+    }
+
+    /**
+     * 걷기를 흉내 낸 3축 선형 가속도 (ActivityRecognizerBenchmark의 걷기 신호와 같은 모양)
+     * 걸음마다 수직 방향으로 큰 양의 피크와 작은 음의 골
+     */
+    private static void synthesize(long[] timestamps, float[] values, Random random) {
+        for (int i = 0; i < timestamps.length; i++) {
+            double phase = 2 * Math.PI * STEP_FREQUENCY * i * SAMPLE_PERIOD_NS / 1e9;
+            double s = Math.sin(phase);
+            double z = s > 0 ? 3.0 * s * s * s : 0.9 * s;
+            timestamps[i] = i * SAMPLE_PERIOD_NS;
+            values[i * 3] = (float) (0.8 * Math.sin(phase / 2) + 0.15 * random.nextGaussian());
+            values[i * 3 + 1] = (float) (0.4 * Math.sin(phase + 1) + 0.15 * random.nextGaussian());
+            values[i * 3 + 2] = (float) (z + 0.15 * random.nextGaussian());
+        }
+    }
+}
@@ -1,121 +1,126 @@
 package io.github.sogoagain.activitytracker;
 
-import android.content.Intent;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.util.Log;
+import android.hardware.SensorEventListener2;
+import android.os.SystemClock;
 
-public class StepMonitor implements SensorEventListener {
+public class StepMonitor implements SensorEventListener2 {
     private static final String TAG = "AT_StepMonitor";
 
-    private long prevT, currT;
-    private double[] rmsArray;
-    private int rmsCount;
-    private double steps;
+    // 배치 모드에서 한 번에 모아 처리할 최대 샘플 수
+    private static final int BATCH_CAPACITY = 256;
 
-    // SENSOR_DELAY_NORMAL로 가속도 데이터 수집 시 데이터 업데이트 주기는 약 80ms (Nexus 6P 기준)
-    // 따라서 초당 데이터 샘플 수는 12.5개
-    // 이 값은 폰마다 다를 수 있으므로 확인 필요
-    private static final int NUMBER_OF_SAMPLES = 13;
+    // 이 간격(ns) 이상 떨어져 도착한 이벤트는 새로운 전달(burst)로 간주
+    // 같은 burst 안의 이벤트들은 거의 동시에 도착한다.
+    private static final long BURST_GAP_NS = 5000000L;
 
-    // 3축 가속도 데이터의 RMS 값의 1초간 평균값을 이용하여 걸음이 있었는지 판단하기 위한 기준 문턱값
-    private static final double AVG_RMS_THRESHOLD = 2.5;
+    // 실제 걸음 검출은 StepDetector가 담당
+    // 샘플마다 event.values를 복사하지 않고 값만 넘겨서 할당이 발생하지 않도록 한다.
+    private final StepDetector stepDetector = new StepDetector();
 
-    // 1분당 걸음수를 90으로 가정
-    // 1초 간 걸음수를 계산하면 1.5가 나옴.
-    // 1초간 rms 평균값이 기준 문턱값을 넘었을 때, steps를 1.5 씩 증가
-    private static final double NUMBER_OF_STEPS_PER_SEC = 1.5;
+    // 배치 모드: 센서 허브 FIFO에서 한꺼번에 전달된 샘플들을 모아 한 번에 처리
+    private boolean isBatching = false;
+    private final long[] batchTimestamps = new long[BATCH_CAPACITY];
+    private final float[] batchValues = new float[BATCH_CAPACITY * 3];
+    private int batchCount;
+    private long lastArrival;
+
+    // SensorManager.flush() 요청이 끝났을 때 호출 (FIFO에 남아 있던 샘플까지 모두 처리된 뒤)
+    private Runnable flushListener;
+
+    // 전달 통계
+    private long sampleCount;
+    private long deliveryCount;
 
     public StepMonitor() {
-        prevT = currT = 0;
-        rmsCount = 0;
-        rmsArray = new double[NUMBER_OF_SAMPLES];
     }
 
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-
+    public void setBatching(boolean batching) {
+        processBatch();
+        isBatching = batching;
     }
 
-    // 센서 데이터가 업데이트 되면 호출
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_LINEAR_ACCELERATION) {
+    public boolean isBatching() {
+        return isBatching;
+    }
 
-            //*** 데이터 업데이트 주기 확인 용 코드 ***//
-            // SENSOR_DELAY_NORMAL, SENSOR_DELAY_UI, SENSOR_DELAY_GAME, SENSOR_DELAY_FASTEST로
-            // 변경해가면서 로그(logcat)를 확인해 볼 것
-            currT = event.timestamp;
-            double dt = (currT - prevT)/1000000;
+    public void setFlushListener(Runnable flushListener) {
+        this.flushListener = flushListener;
+    }
 
-            prevT = currT;
-            //***************************************
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
 
-            //***** sensor data collection *****//
-            // event.values 배열의 사본을 만들어서 values 배열에 저장
-            float[] values = event.values.clone();
+    }
 
-            // simple step calculation
-            computeSteps(values);
+    // FIFO flush가 끝나면 모아둔 샘플을 처리
+    // flush 전에 FIFO에 있던 샘플은 모두 onSensorChanged()로 전달된 뒤이다.
+    public void onFlushCompleted(Sensor sensor) {
+        processBatch();
+        if (flushListener != null) {
+            flushListener.run();
         }
     }
 
-    // a simple inference for step count
-    private void computeSteps(float[] values) {
-        double avgRms = 0;
-
-        //***** feature extraction *****//
-        // calculate feature data:
-        // 여기서는 3축 가속도 데이터의 RMS 값의 1초 간의 평균값을 이용
-
-        // 1. 현재 업데이트 된 accelerometer x, y, z 축 값의 Root Mean Square 값 계산
-        double rms = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
-
-        // 2. 위에서 계산한 RMS 값을 rms 값을 저장해 놓는 배열에 넣음
-        // 배열 크기는 1초에 발생하는 가속도 데이터 개수 (여기서는 13)
-        if(rmsCount < NUMBER_OF_SAMPLES) {
-            rmsArray[rmsCount] = rms;
-            rmsCount++;
-        } else if(rmsCount == NUMBER_OF_SAMPLES) {
-            // 3. 1초간 rms 값이 모였으면 평균 rms 값을 계산
-            double sum = 0;
-            // 3-1. rms 값들의 합을 구함
-            for(int i = 0; i < NUMBER_OF_SAMPLES; i++) {
-                sum += rmsArray[i];
-            }
-            // 3-2. 평균 rms 계산
-            avgRms = sum / NUMBER_OF_SAMPLES;
+    // 센서 데이터가 업데이트 되면 호출
+    public void onSensorChanged(SensorEvent event) {
+        if (event.sensor.getType() == Sensor.TYPE_LINEAR_ACCELERATION) {
+            float[] values = event.values;
+            sampleCount++;
 
-            // 4. rmsCount, rmsArray 초기화: 다시 1초간 rms sample을 모으기 위해
-            rmsCount = 0;
-            for(int i = 0; i < NUMBER_OF_SAMPLES; i++) {
-                rmsArray[i] = 0;
+            if (!isBatching) {
+                deliveryCount++;
+                stepDetector.onSample(event.timestamp, values[0], values[1], values[2]);
+                return;
             }
 
-            // 5. 이번 업데이트로 계산된 rms를 배열 첫번째 원소로 저장하고 카운트 1증가
-            rmsArray[0] = rms;
-            rmsCount++;
+            // 이전 이벤트와 도착 간격이 벌어져 있으면 새 burst의 시작
+            long arrival = SystemClock.elapsedRealtimeNanos();
+            if (arrival - lastArrival > BURST_GAP_NS) {
+                processBatch();
+                deliveryCount++;
+            }
+            lastArrival = arrival;
+
+            batchTimestamps[batchCount] = event.timestamp;
+            int offset = batchCount * 3;
+            batchValues[offset] = values[0];
+            batchValues[offset + 1] = values[1];
+            batchValues[offset + 2] = values[2];
+            batchCount++;
+            if (batchCount == BATCH_CAPACITY) {
+                processBatch();
+            }
         }
+    }
 
-        //***** classification *****//
-        // check if there is a step or not:
-        // 1. 3축 가속도 데이터의 1초 평균 RMS 값이 기준 문턱값을 넘으면 step이 있었다고 판단함
-        if(avgRms > AVG_RMS_THRESHOLD) {
-            // 1-1. step 수는 1초 걸음 시 step 수가 일정하다고 가정하고, 그 값을 더해 줌
-            steps += NUMBER_OF_STEPS_PER_SEC;
-            Log.d(TAG, "steps: " + steps);
-
-            // if step counts increase, send steps data to MainActivity
-            Intent intent = new Intent("kr.ac.koreatech.msp.stepmonitor");
-            // 걸음수는 정수로 표시되는 것이 적합하므로 int로 형변환
-            intent.putExtra("steps", (int)steps);
-         }
+    private void processBatch() {
+        if (batchCount > 0) {
+            stepDetector.onSamples(batchTimestamps, batchValues, batchCount);
+            batchCount = 0;
+        }
     }
 
-    public double getSteps() {
-        return steps;
+    public int getSteps() {
+        processBatch();
+        return stepDetector.getSteps();
     }
 
     public void resetSteps() {
-        steps = 0;
+        processBatch();
+        stepDetector.resetSteps();
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getDeliveryCount() {
+        return deliveryCount;
+    }
+
+    // 샘플마다 깨우는 방식 대비 줄어든 전달(AP wakeup) 횟수
+    public long getSavedDeliveries() {
+        return sampleCount - deliveryCount;
     }
 }
@@ -0,0 +1,50 @@
+package io.github.sogoagain.activitytracker;
+
+/**
+ * StepSource
+ * - 이동 구간의 걸음 수를 세는 방식
+ *   HardwareStepSource: 센서 허브의 TYPE_STEP_COUNTER / TYPE_STEP_DETECTOR (AP를 거의 쓰지 않음)
+ *   SoftwareStepSource: 선형 가속도를 받아 StepDetector로 직접 센다. (가속도 센서와 CPU를 계속 사용)
+ *   ComparingStepSource: 두 방식을 함께 켜고 구간마다 결과를 나란히 기록 (정확도/전력 비교용)
+ * - ActivityMonitorService가 이동 중에만 start()하고, 구간을 기록할 때(writeRecord) getSteps()로 읽은 뒤
+ *   resetSteps()한다. 어느 방식이든 "마지막 resetSteps() 이후 걸음 수"를 돌려준다.
+ * - 배치 모드에서는 stop()이 센서 FIFO를 flush하고 남은 이벤트까지 센 뒤에 listener를 해제한다.
+ *   그동안(isFlushing()) getSteps()는 아직 늘어날 수 있으므로 구간 기록은 onStopped 이후에 한다.
+ */
+public interface StepSource {
+    /**
+     * 걸음 수 측정 시작 (센서 listener 등록)
+     *
+     * @return 필요한 센서가 없으면 false
+     */
+    boolean start();
+
+    /**
+     * 측정 중지. 지금까지 센 걸음 수는 resetSteps() 전까지 유지
+     *
+     * @param onStopped - FIFO에 남아 있던 이벤트까지 반영된 뒤 main 스레드에서 호출 (없으면 null).
+     *                  flush가 필요 없으면 반환하기 전에 호출한다.
+     */
+    void stop(Runnable onStopped);
+
+    // stop() 후 FIFO flush를 기다리는 중이면 true
+    boolean isFlushing();
+
+    boolean isStarted();
+
+    // 마지막 resetSteps() 이후 걸음 수
+    int getSteps();
+
+    void resetSteps();
+
+    // AP로 전달된 센서 이벤트 수
+    long getEventCount();
+
+    // 이벤트가 전달된 횟수 (배치 모드이면 burst 수). AP wakeup 비용의 근사값
+    long getDeliveryCount();
+
+    // 측정하는 동안 가속도 센서를 켜 두는지 여부 (전력 추정에서 ACCEL 이벤트로 기록)
+    boolean usesAccelerometer();
+
+    String getName();
+}
@@ -10,25 +10,34 @@ import android.util.Log;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.List;
 
+// 로그는 날짜별 segment 파일(SegmentedStore)에 나누어 저장한다.
 public class TextFileManager {
-    private static final String FILE_NAME = "ActivityTrackerLog.txt";
+    private static final String DIRECTORY_NAME = "ActivityTrackerLog";
+    private static final String SUFFIX = ".txt";
+    // 로그 보관 기간 (일)
+    private static final int RETENTION_DAYS = 90;
     private File folder;
-    private String folderPath;
-    private String filePath;
+    private String directoryName;
+    private SegmentedStore store;
 
     public TextFileManager() {
+        this(DIRECTORY_NAME);
+    }
+
+    // Download 디렉토리 아래 directoryName 디렉토리에 저장하는 로그 (이벤트 로그 등)
+    public TextFileManager(String directoryName) {
         // 외부 공용 디렉토리 중 Download 디렉토리에 대한 File 객체 얻음
         folder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-        // 절대 경로 String 값을 얻음
-        folderPath = folder.getAbsolutePath();
-        // 로그 파일 절대 경로 생성 (String 값)
-        filePath = folderPath + "/" + FILE_NAME;
+        // Download 디렉토리 아래의 로그 저장소
+        this.directoryName = directoryName;
+        store = SegmentedStore.open(new File(folder, directoryName), SUFFIX, RETENTION_DAYS);
     }
 
     // 파일에 문자열 데이터를 쓰는 메소드
@@ -36,48 +45,58 @@ public class TextFileManager {
         if (data == null || data.isEmpty() == true) {
             return;
         }
-        FileOutputStream fos;
+        // 파일 기록은 AsyncFileWriter의 백그라운드 스레드에서 모아서 append 모드로 수행
         try {
-            fos = new FileOutputStream(filePath, true); // 두번째 매개변수가 true이면 append 모드로 쓰기
-            fos.write(data.getBytes());
-            fos.close();
-        } catch (IOException e) {
+            AsyncFileWriter.getInstance().write(store.segmentFor(System.currentTimeMillis()), data.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
         }
     }
 
     // 파일에서 데이터를 읽고 문자열 데이터로 반환하는 메소드
     public String load() {
-        try {
-            // 로그 파일의 절대 경로를 이용하여 File 객체 생성
-            File log = new File(filePath);
+        StringBuilder builder = new StringBuilder();
+        // segment 파일들을 오래된 날짜부터 이어 붙임
+        for (File log : store.segments()) {
             // File 객체를 이용하여 해당 파일이 실제로 존재하는지 검사
-            if(log.exists()) {
+            if (!log.exists()) {
+                Log.i("FileManager", log.getName() + " file does not exist");
+                continue;
+            }
+            try {
                 // 파일이 존재하는 경우 읽기 수행
-                FileInputStream fis = new FileInputStream(filePath);
+                FileInputStream fis = new FileInputStream(log);
                 byte[] data = new byte[fis.available()];
                 fis.read(data);
 
                 fis.close();
-                return new String(data);
-            } else {
-                Log.i("FileManager", log.getName() + " file does not exist");
+                builder.append(new String(data));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return "";
+        return builder.toString();
     }
 
-    // 파일에서 데이터를 읽고 문자열 데이터로 반환하는 메소드
+    // 파일에서 데이터를 읽고 줄 단위로 반환하는 메소드
     public ArrayList<String> loadLine() {
-        ArrayList<String> lines = new ArrayList<>();
-        try {
-            // open the file for reading
-            InputStream inputStream = new FileInputStream(filePath);
+        return loadLine(store.segments());
+    }
+
+    // from ~ to(ms) 기간의 segment 파일만 읽고 줄 단위로 반환하는 메소드
+    public ArrayList<String> loadLine(long from, long to) {
+        return loadLine(store.segments(from, to));
+    }
 
-            // if file the available for reading
-            if (inputStream != null) {
+    private ArrayList<String> loadLine(List<File> logs) {
+        ArrayList<String> lines = new ArrayList<>();
+        for (File log : logs) {
+            if (!log.exists()) {
+                continue;
+            }
+            try {
+                // open the file for reading
+                InputStream inputStream = new FileInputStream(log);
                 // prepare the file for reading
                 InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
                 BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
@@ -88,24 +107,21 @@ public class TextFileManager {
                     line = bufferedReader.readLine();
                 }
                 inputStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
         return lines;
     }
 
-    // 파일 삭제 메소드
+    // 파일 삭제 메소드 (모든 segment와 manifest)
     public boolean delete() {
-        // 로그 파일의 절대 경로를 이용하여 File 객체 생성
-        File log = new File(filePath);
         try {
-            // File 객체를 이용하여 해당 파일 삭제
-            boolean result = log.delete();
+            boolean result = store.deleteAll();
 
             if (result) {
                 // file is successfully deleted
-                Log.i("FileManager", log.getName() + " successfully deleted");
+                Log.i("FileManager", directoryName + " successfully deleted");
                 return true;
             } else {
                 Log.i("FileManager", "delete failed");
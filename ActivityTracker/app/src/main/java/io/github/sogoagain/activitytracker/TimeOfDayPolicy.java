@@ -0,0 +1,140 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+
+/**
+ * TimeOfDayPolicy
+ * - 시간대(0~23시)별로 정지해 있던 비율을 학습하여, 평소 거의 움직이지 않는 시간대에는
+ *   정지 중 최대 주기를 stationaryMax까지 늘리는 정책
+ * - 그 외 시간대와 움직임 판정 시에는 선형 방식과 같다.
+ * - 학습은 하루에 시간대마다 수백 번의 판정이 쌓여야 하므로 여러 날에 걸쳐 이어져야 한다.
+ *   toByteArray()로 만든 학습 결과를 write()로 저장하고, 서비스가 다시 시작되면 read()로 불러온다.
+ *
+ * 파일 형식 (big-endian)
+ * - int MAGIC, int VERSION, int 시간대 수, float[시간대 수] 정지 비율
+ */
+public class TimeOfDayPolicy implements DutyCyclePolicy {
+    public static final String FILE_NAME = "ActivityTrackerTimeOfDay.bin";
+
+    private static final int MAGIC = 0x41545444;    // "ATTD"
+    private static final int VERSION = 1;
+    private static final int SLOTS = 24;
+    private static final long HOUR = 3600000L;
+
+    // 판정 한 번이 시간대별 정지 비율에 반영되는 정도 (지수 이동 평균 계수)
+    private static final float LEARNING_RATE = 0.005f;
+    // 정지 비율이 이 값 이상인 시간대를 "보통 정지해 있는 시간대"로 본다.
+    private static final float STATIONARY_RATIO = 0.95f;
+
+    private final long initialPeriod;
+    private final long movingPeriod;
+    private final long increment;
+    private final long max;
+    private final long stationaryMax;
+    private final TimeZone timeZone;
+
+    private final float[] stillRatio = new float[SLOTS];
+    private long period;
+
+    public TimeOfDayPolicy(long initialPeriod, long movingPeriod, long increment, long max, long stationaryMax,
+                           TimeZone timeZone) {
+        this.initialPeriod = initialPeriod;
+        this.movingPeriod = movingPeriod;
+        this.increment = increment;
+        this.max = max;
+        this.stationaryMax = stationaryMax;
+        this.timeZone = timeZone;
+        for (int i = 0; i < SLOTS; i++) {
+            stillRatio[i] = 0.5f;
+        }
+        reset();
+    }
+
+    @Override
+    public long nextPeriod(boolean moving, long now) {
+        int slot = slotOf(now);
+        stillRatio[slot] += LEARNING_RATE * ((moving ? 0.f : 1.f) - stillRatio[slot]);
+
+        if (moving) {
+            period = movingPeriod;
+        } else {
+            long limit = (stillRatio[slot] >= STATIONARY_RATIO) ? stationaryMax : max;
+            period = Math.min(period + increment, limit);
+        }
+        return period;
+    }
+
+    // 학습 결과는 유지하고 주기만 초기화한다.
+    @Override
+    public void reset() {
+        period = initialPeriod;
+    }
+
+    @Override
+    public String getName() {
+        return "time-of-day";
+    }
+
+    public float getStillRatio(int hour) {
+        return stillRatio[hour];
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + SLOTS * 4);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            buffer.putFloat(stillRatio[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 저장된 학습 결과를 불러온다.
+     *
+     * @return 파일이 없거나 형식이 맞지 않으면 false (학습 결과는 그대로)
+     */
+    public boolean read(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != SLOTS) {
+                    return false;
+                }
+                float[] ratios = new float[SLOTS];
+                for (int i = 0; i < SLOTS; i++) {
+                    ratios[i] = in.readFloat();
+                    if (!(ratios[i] >= 0 && ratios[i] <= 1)) {
+                        return false;
+                    }
+                }
+                System.arraycopy(ratios, 0, stillRatio, 0, SLOTS);
+                return true;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // 학습 결과 저장 (SnapshotFile)
+    public static void write(File file, byte[] data) throws IOException {
+        SnapshotFile.write(file, data);
+    }
+
+    private int slotOf(long now) {
+        long local = now + timeZone.getOffset(now);
+        return (int) ((local / HOUR) % SLOTS);
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * TraceReplayer
+ * - 기록된 센서 트레이스를 StepDetector, MovementDetector, ActivityRecognizer에 실시간보다 빠르게 흘려보내는 재생기
+ * - Android 런타임 없이 JVM에서 실행된다.
+ *   java io.github.sogoagain.activitytracker.TraceReplayer trace1.attr trace2.attr ...
+ * - 트레이스를 ACTIVE_TIME 길이의 구간으로 나누어 MovementDetector 판정과
+ *   앱과 같은 방식(MovingMonitor.getActivity())의 활동 분류를 내고, 전체 샘플로 StepDetector 걸음 수를 센다.
+ */
+public class TraceReplayer {
+    // ActivityMonitorService의 ACTIVE_TIME과 같은 1초 구간
+    private static final long WINDOW_NS = 1000000000L;
+
+    /**
+     * 재생 결과
+     */
+    public static class Result {
+        public int samples;
+        public int steps;
+        public int movingWindows;
+        public int stillWindows;
+        public final int[] activityWindows = new int[ActivityRecognizer.CLASS_COUNT];   // 활동별 구간 수
+        public int earlyDecisions;
+        public long totalDecisionLatency;   // 조기 판정된 구간의 판정 지연 합 (ns)
+        public long traceDuration;          // 트레이스 길이 (ns)
+        public long elapsed;                // 재생에 걸린 시간 (ns)
+
+        public double getSamplesPerSecond() {
+            return elapsed == 0 ? 0 : samples * 1e9 / elapsed;
+        }
+
+        public double getSpeedup() {
+            return elapsed == 0 ? 0 : (double) traceDuration / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            int windows = movingWindows + stillWindows;
+            return "samples=" + samples
+                    + " steps=" + steps
+                    + " windows=" + windows + " (moving " + movingWindows + ", still " + stillWindows + ")"
+                    + " activities=" + formatActivities()
+                    + " early=" + earlyDecisions
+                    + " avgLatency=" + (earlyDecisions == 0 ? 0 : totalDecisionLatency / earlyDecisions / 1000000) + "ms"
+                    + " throughput=" + (long) getSamplesPerSecond() + " samples/s"
+                    + " speedup=" + (long) getSpeedup() + "x";
+        }
+
+        private String formatActivities() {
+            StringBuilder builder = new StringBuilder("(");
+            for (int c = 0; c < ActivityRecognizer.CLASS_COUNT; c++) {
+                if (c > 0) {
+                    builder.append(", ");
+                }
+                builder.append(ActivityRecognizer.getName(c)).append(' ').append(activityWindows[c]);
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private final StepDetector stepDetector = new StepDetector();
+    private final MovementDetector movementDetector = new MovementDetector();
+    private final ActivityRecognizer activityRecognizer = new ActivityRecognizer();
+
+    public Result replay(SensorTrace trace) {
+        return replay(trace.getTimestamps(), trace.getValues(), trace.getCount());
+    }
+
+    /**
+     * 샘플 배열 재생 (합성 신호 등)
+     *
+     * @param timestamps - 샘플 시각 (ns)
+     * @param values     - x, y, z 순서로 이어 붙인 값
+     */
+    public Result replay(long[] timestamps, float[] values, int count) {
+        Result result = new Result();
+
+        stepDetector.reset();
+        movementDetector.reset();
+        activityRecognizer.reset();
+
+        long begin = System.nanoTime();
+        long windowEnd = count > 0 ? timestamps[0] + WINDOW_NS : 0;
+        for (int i = 0; i < count; i++) {
+            long timestamp = timestamps[i];
+            if (timestamp >= windowEnd) {
+                closeWindow(result);
+                windowEnd = timestamp + WINDOW_NS;
+            }
+            int offset = i * 3;
+            float x = values[offset];
+            float y = values[offset + 1];
+            float z = values[offset + 2];
+            stepDetector.onSample(timestamp, x, y, z);
+            movementDetector.onSample(timestamp, x, y, z);
+            activityRecognizer.onSample(timestamp, x, y, z);
+        }
+        if (movementDetector.getSensingCount() > 0) {
+            closeWindow(result);
+        }
+        result.elapsed = System.nanoTime() - begin;
+
+        result.samples = count;
+        result.steps = stepDetector.getSteps();
+        result.traceDuration = count > 0 ? timestamps[count - 1] - timestamps[0] : 0;
+        return result;
+    }
+
+    private void closeWindow(Result result) {
+        if (movementDetector.isMoving()) {
+            result.movingWindows++;
+        } else {
+            result.stillWindows++;
+        }
+        result.activityWindows[getActivity()]++;
+        if (movementDetector.getDecision() != MovementDetector.UNDECIDED) {
+            result.earlyDecisions++;
+            result.totalDecisionLatency += movementDetector.getDecisionLatency();
+        }
+        movementDetector.reset();
+        activityRecognizer.reset();
+    }
+
+    // MovingMonitor.getActivity()와 같은 판단
+    private int getActivity() {
+        if (!movementDetector.isMoving()) {
+            return ActivityRecognizer.STILL;
+        }
+        if (!activityRecognizer.isReady()) {
+            return ActivityRecognizer.WALK;
+        }
+        return activityRecognizer.classifyMoving();
+    }
+
+    public static void main(String[] args) throws IOException {
+        TraceReplayer replayer = new TraceReplayer();
+        for (String path : args) {
+            SensorTrace trace = SensorTrace.read(new File(path));
+            System.out.println(path + ": " + replayer.replay(trace));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.sogoagain.activitytracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * WifiFingerprintIndex
+ * - 실내 장소별 WIFI fingerprint(BSSID 목록과 RSSI 기준치)의 인덱스 (Android 의존성 없음)
+ * - BSSID "aa:bb:cc:dd:ee:ff"는 48비트 long으로 변환하여 해시 맵에 저장한다.
+ *   앞 3바이트(제조사 OUI) prefix로 등록한 항목은 mac >>> 24 값으로 조회한다.
+ * - 스캔 결과는 beginScan() -> offer() 반복 -> endScan() 순서로 한 번 훑으며,
+ *   substring 등 객체 할당 없이 장소별 일치 개수를 센다.
+ * - RSSI가 장소 기준치보다 큰 AP가 minMatches개 이상인 장소 중 먼저 정의된 장소를 반환한다.
+ */
+public class WifiFingerprintIndex {
+    public static final int NO_PLACE = -1;
+    public static final long INVALID_BSSID = -1;
+
+    private static final int PREFIX_BYTES = 3;
+    private static final int MAC_BYTES = 6;
+
+    // 장소 정보
+    private String[] names = new String[8];
+    private int[] rssiThresholds = new int[8];
+    private int[] minMatches = new int[8];
+    private int placeCount;
+
+    // BSSID(또는 prefix) -> 첫 항목 번호, 항목들은 entryNext로 연결
+    private final LongIntHashMap macs = new LongIntHashMap();
+    private final LongIntHashMap prefixes = new LongIntHashMap();
+    private int[] entryPlaces = new int[16];
+    private int[] entryNext = new int[16];
+    private int entryCount;
+
+    // 스캔 한 번 동안의 장소별 일치 개수
+    private int[] counts = new int[8];
+    // BSSID 하나가 같은 장소에 두 번 세어지지 않도록 표시
+    private int[] marks = new int[8];
+    private int offerSerial;
+
+    /**
+     * 장소 추가
+     *
+     * @param rssiThreshold - AP 신호가 이 값(dBm)보다 커야 일치로 센다.
+     * @param minMatchCount - 일치하는 AP가 이 개수 이상이면 이 장소로 판단
+     * @return 장소 번호
+     */
+    public int addPlace(String name, int rssiThreshold, int minMatchCount) {
+        if (placeCount == names.length) {
+            int capacity = placeCount * 2;
+            names = Arrays.copyOf(names, capacity);
+            rssiThresholds = Arrays.copyOf(rssiThresholds, capacity);
+            minMatches = Arrays.copyOf(minMatches, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+        }
+        int place = placeCount++;
+        names[place] = name;
+        rssiThresholds[place] = rssiThreshold;
+        minMatches[place] = minMatchCount;
+        return place;
+    }
+
+    /**
+     * 장소에 BSSID 또는 BSSID prefix(앞 3바이트) 등록
+     *
+     * @return 형식이 올바르지 않으면 false
+     */
+    public boolean addBssid(int place, String bssid) {
+        long mac = parseMac(bssid, MAC_BYTES);
+        if (mac != INVALID_BSSID) {
+            addEntry(macs, mac, place);
+            return true;
+        }
+        long prefix = parseMac(bssid, PREFIX_BYTES);
+        if (prefix != INVALID_BSSID) {
+            addEntry(prefixes, prefix, place);
+            return true;
+        }
+        return false;
+    }
+
+    public void beginScan() {
+        for (int i = 0; i < placeCount; i++) {
+            counts[i] = 0;
+        }
+    }
+
+    // 스캔된 AP 하나를 반영
+    public void offer(String bssid, int level) {
+        long mac = parseMac(bssid, MAC_BYTES);
+        if (mac == INVALID_BSSID) {
+            return;
+        }
+        offer(mac, level);
+    }
+
+    // parseMac()으로 변환한 BSSID로 AP 하나를 반영
+    public void offer(long mac, int level) {
+        offerSerial++;
+        countEntries(macs.get(mac), level);
+        countEntries(prefixes.get(mac >>> 24), level);
+    }
+
+    // 스캔 결과로 판단한 장소 번호, 없으면 NO_PLACE
+    public int endScan() {
+        for (int i = 0; i < placeCount; i++) {
+            if (counts[i] >= minMatches[i]) {
+                return i;
+            }
+        }
+        return NO_PLACE;
+    }
+
+    // 이 AP가 등록된 어떤 장소의 fingerprint에라도 해당하는지 여부
+    public boolean contains(long mac) {
+        return macs.get(mac) != LongIntHashMap.NO_VALUE || prefixes.get(mac >>> 24) != LongIntHashMap.NO_VALUE;
+    }
+
+    /**
+     * 이 AP가 등록된 장소들 중 RSSI 기준치를 넘는 장소 수
+     * 장소 판단 결과는 AP마다 이 값에만 의존하므로, 스캔 간 변화를 비교하는 기준(RSSI band)으로 쓴다.
+     */
+    public int countPassing(long mac, int level) {
+        return countPassing(macs.get(mac), level) + countPassing(prefixes.get(mac >>> 24), level);
+    }
+
+    public int size() {
+        return placeCount;
+    }
+
+    public String getName(int place) {
+        return names[place];
+    }
+
+    /**
+     * 장소 fingerprint 파일 읽기
+     * 한 줄에 "장소명,RSSI기준(dBm),최소일치개수,BSSID1;BSSID2;..." 형식
+     * BSSID는 "aa:bb:cc:dd:ee:ff" 또는 앞 3바이트 prefix "aa:bb:cc"
+     *
+     * @return 읽어 들인 장소 수
+     */
+    public int read(BufferedReader reader) throws IOException {
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 4) {
+                continue;
+            }
+            try {
+                int place = addPlace(fields[0].trim(), Integer.parseInt(fields[1].trim()),
+                        Integer.parseInt(fields[2].trim()));
+                for (String bssid : fields[3].split(";")) {
+                    addBssid(place, bssid.trim());
+                }
+                count++;
+            } catch (NumberFormatException e) {
+                // 형식이 틀린 줄은 건너뜀
+            }
+        }
+        return count;
+    }
+
+    /**
+     * "aa:bb:cc..." 형식 문자열에서 앞 bytes개 바이트를 long으로 변환
+     * 문자열이 정확히 bytes개 바이트가 아니거나 16진수가 아니면 INVALID_BSSID
+     */
+    public static long parseMac(String text, int bytes) {
+        if (text == null || text.length() != bytes * 3 - 1) {
+            return INVALID_BSSID;
+        }
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int offset = i * 3;
+            if (i > 0 && text.charAt(offset - 1) != ':') {
+                return INVALID_BSSID;
+            }
+            int high = Character.digit(text.charAt(offset), 16);
+            int low = Character.digit(text.charAt(offset + 1), 16);
+            if (high < 0 || low < 0) {
+                return INVALID_BSSID;
+            }
+            value = (value << 8) | (high << 4) | low;
+        }
+        return value;
+    }
+
+    private int countPassing(int entry, int level) {
+        int count = 0;
+        while (entry != LongIntHashMap.NO_VALUE) {
+            if (level > rssiThresholds[entryPlaces[entry]]) {
+                count++;
+            }
+            entry = entryNext[entry];
+        }
+        return count;
+    }
+
+    private void countEntries(int entry, int level) {
+        while (entry != LongIntHashMap.NO_VALUE) {
+            int place = entryPlaces[entry];
+            if (marks[place] != offerSerial && level > rssiThresholds[place]) {
+                marks[place] = offerSerial;
+                counts[place]++;
+            }
+            entry = entryNext[entry];
+        }
+    }
+
+    private void addEntry(LongIntHashMap map, long key, int place) {
+        if (entryCount == entryPlaces.length) {
+            entryPlaces = Arrays.copyOf(entryPlaces, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryPlaces[entryCount] = place;
+        entryNext[entryCount] = map.get(key);
+        map.put(key, entryCount);
+        entryCount++;
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.sogoagain.activitytracker;
+
+import java.util.Arrays;
+
+/**
+ * WifiScanProcessor
+ * - WIFI 스캔 결과를 직전 스캔과 비교하여, 장소 판단에 영향을 주는 변화가 있을 때만
+ *   WifiFingerprintIndex로 장소를 다시 계산하는 증분 처리기 (Android 의존성 없음)
+ * - 비교 기준(signature)은 fingerprint에 등록된 AP들의 (BSSID, RSSI band) 집합이다.
+ *   RSSI band는 그 AP가 넘는 장소별 RSSI 기준치의 개수이므로, band가 같으면 장소 판단 결과도 같다.
+ * - 사용 순서: beginScan() -> offer() 반복 -> endScan()
+ */
+public class WifiScanProcessor {
+    private final WifiFingerprintIndex index;
+
+    // 이번 스캔의 관련 AP들 (BSSID, RSSI)
+    private long[] macs = new long[32];
+    private int[] levels = new int[32];
+    private int count;
+
+    // 이번 / 직전 스캔의 signature: (BSSID << 8) | band, 정렬된 상태
+    private long[] signature = new long[32];
+    private long[] previousSignature = new long[32];
+    private int previousCount;
+    private boolean hasResult = false;
+
+    private int place = WifiFingerprintIndex.NO_PLACE;
+
+    // 통계
+    private long scansReceived;
+    private long scansProcessed;
+    private long recomputations;
+    private long recomputationsAvoided;
+
+    public WifiScanProcessor(WifiFingerprintIndex index) {
+        this.index = index;
+    }
+
+    // 스캔 완료 broadcast를 받을 때마다 호출 (처리 여부와 관계없이 센다)
+    public void onScanReceived() {
+        scansReceived++;
+    }
+
+    public void beginScan() {
+        count = 0;
+    }
+
+    public void offer(String bssid, int level) {
+        long mac = WifiFingerprintIndex.parseMac(bssid, 6);
+        if (mac == WifiFingerprintIndex.INVALID_BSSID || !index.contains(mac)) {
+            return;
+        }
+        if (count == macs.length) {
+            macs = Arrays.copyOf(macs, count * 2);
+            levels = Arrays.copyOf(levels, count * 2);
+            signature = Arrays.copyOf(signature, count * 2);
+        }
+        macs[count] = mac;
+        levels[count] = level;
+        signature[count] = (mac << 8) | index.countPassing(mac, level);
+        count++;
+    }
+
+    /**
+     * 스캔 처리 완료
+     *
+     * @return 장소를 다시 계산했으면 true, 직전 결과를 재사용했으면 false
+     */
+    public boolean endScan() {
+        scansProcessed++;
+        Arrays.sort(signature, 0, count);
+
+        boolean isSame = hasResult && count == previousCount;
+        for (int i = 0; isSame && i < count; i++) {
+            isSame = signature[i] == previousSignature[i];
+        }
+
+        // 이번 signature를 다음 비교 대상으로
+        long[] temp = previousSignature;
+        previousSignature = signature;
+        signature = temp.length >= macs.length ? temp : new long[macs.length];
+        previousCount = count;
+
+        if (isSame) {
+            recomputationsAvoided++;
+            return false;
+        }
+
+        index.beginScan();
+        for (int i = 0; i < count; i++) {
+            index.offer(macs[i], levels[i]);
+        }
+        place = index.endScan();
+        hasResult = true;
+        recomputations++;
+        return true;
+    }
+
+    // 마지막으로 판단한 장소 번호, 없으면 WifiFingerprintIndex.NO_PLACE
+    public int getPlace() {
+        return place;
+    }
+
+    public long getScansReceived() {
+        return scansReceived;
+    }
+
+    public long getScansProcessed() {
+        return scansProcessed;
+    }
+
+    public long getRecomputations() {
+        return recomputations;
+    }
+
+    public long getRecomputationsAvoided() {
+        return recomputationsAvoided;
+    }
+}
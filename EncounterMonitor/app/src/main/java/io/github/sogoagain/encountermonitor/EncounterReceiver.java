@@ -94,6 +94,11 @@ public class EncounterReceiver extends BroadcastReceiver {
 
     // 텍스트 파일로 기록하기 위한 객체
     private TextFileManager textFileManager = new TextFileManager();
+    // discovery 시간을 기록하기 위한 이벤트 로그
+    private EnergyEventLog energyLog;
+    private long discoveryStartTime = 0;    // discovery 시작 시각, 0이면 시작을 받지 못함
+    // discovery가 끝나면 MonitoringService가 받은 BT_DISCOVERY lease를 돌려준다.
+    private WakeLockManager wakeLocks;
 
     private int scanTimeInterval = 0;   // 블루투스 탐지 시간 간격
     private EncounterTimeStamp timeStamp = new EncounterTimeStamp();    // 시각을 기록하기 위한 객체
@@ -105,11 +110,15 @@ public class EncounterReceiver extends BroadcastReceiver {
     private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm", java.util.Locale.getDefault());
 
     // EncounterReceiver의 생성자
-    // 대상 블루투스 기기이름과 사용자 이름, 탐색 주기를 받아온다.
-    EncounterReceiver(String bluetoothName, String userName, int scanTimeInterval) {
+    // 대상 블루투스 기기이름과 사용자 이름, 탐색 주기, discovery 시간을 기록할 이벤트 로그,
+    // discovery 동안의 wakelock lease를 관리하는 객체를 받아온다.
+    EncounterReceiver(String bluetoothName, String userName, int scanTimeInterval, EnergyEventLog energyLog,
+                      WakeLockManager wakeLocks) {
         this.bluetoothName = bluetoothName;
         this.userName = userName;
         this.scanTimeInterval = scanTimeInterval;
+        this.energyLog = energyLog;
+        this.wakeLocks = wakeLocks;
     }
 
     /**
@@ -125,6 +134,7 @@ public class EncounterReceiver extends BroadcastReceiver {
         if (action.equals(BluetoothAdapter.ACTION_DISCOVERY_STARTED)) {
             // discovery 시작됨
             Log.d(TAG, "블루투스 스캔 시작");
+            discoveryStartTime = System.currentTimeMillis();
         } else if (action.equals(BluetoothDevice.ACTION_FOUND)) {
             // Bluetooth device가 검색 됨
             BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
@@ -136,6 +146,11 @@ public class EncounterReceiver extends BroadcastReceiver {
         } else if (action.equals(BluetoothAdapter.ACTION_DISCOVERY_FINISHED)) {
             // discovery가 완료
             Log.d(TAG, "블루투스 스캔 완료");
+            if (discoveryStartTime > 0) {
+                energyLog.log(EnergyEventLog.BT_DISCOVERY, discoveryStartTime,
+                        System.currentTimeMillis() - discoveryStartTime);
+                discoveryStartTime = 0;
+            }
             if (isFind) {
                 Log.d(TAG, "발견: " + userName);
             } else {
@@ -158,6 +173,8 @@ public class EncounterReceiver extends BroadcastReceiver {
                     recordGoodBye();
                 }
             }
+            // 기록까지 끝났으므로 wakelock lease를 돌려준다.
+            wakeLocks.release(WakeLockManager.BT_DISCOVERY);
         }
     }
 
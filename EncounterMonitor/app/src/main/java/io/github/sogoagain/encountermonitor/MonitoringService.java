@@ -1,42 +1,52 @@
 package io.github.sogoagain.encountermonitor;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.IBinder;
-import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Created by sogoagain on 2017. 4. 7..
  */
 public class MonitoringService extends Service {
     private static final String TAG = "MonitoringService";  // 디버깅을 위한 태그
+    private static final String BROADCAST_ALARM = "io.github.sogoagain.encountermonitor.alarm";
     private static final int SCAN_TIME_INTERVAL = 120000;   // 블루투스 스캔 시간 간격 2분
+    private static final long FIRST_SCAN_DELAY = 1000;      // 시작 후 첫 스캔까지의 시간
+    private static final long DISCOVERY_LEASE_TIMEOUT = 20000;      // discovery 한 번(약 12초)의 wakelock 제한 시간
+    private static final long WAKELOCK_HOURLY_BUDGET = 600000;      // 한 시간에 wakelock을 잡을 수 있는 시간 10분
+    private static final long WRITER_DRAIN_TIMEOUT = 2000;  // 종료 시 남은 파일 기록을 기다리는 최대 시간
 
     private BluetoothAdapter bluetoothAdapter;
     private EncounterReceiver encounterReceiver;    // 블루투스 관련 브로드캐스트 수신 객체
-    private Timer timer = new Timer();  // 타이머 객체
-    private TimerTask timerTask = null;
+    // 주기적으로 BT discovery를 하기 위한 alarm
+    private AlarmManager alarmManager;
+    private PendingIntent pendingIntent;
 
     // Date 출력형식을 위한 객체
     private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm", java.util.Locale.getDefault());
 
     //***********************************
-    // wake lock을 사용
-    private PowerManager.WakeLock wakeLock;
+    // wake lock은 discovery하는 동안에만 BT_DISCOVERY lease로 잡는다.
+    private WakeLockManager wakeLocks;
     //***********************************
 
+    // 전력 소모 추정용 이벤트 로그 (ActivityTracker의 EnergyAccountant로 분석)
+    private EnergyEventLog energyLog = new EnergyEventLog();
+
     @Override
     public IBinder onBind(Intent intent) {
         return null;
@@ -49,11 +59,21 @@ public class MonitoringService extends Service {
         bluetoothAdapter = ((BluetoothManager) getSystemService(BLUETOOTH_SERVICE)).getAdapter();
 
         //**************************************************************
-        // wake lock을 사용한다.
-        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "Tag: partial wake lock");
-        wakeLock.acquire();
+        // wake lock 관리자. 서비스가 사는 동안 잡고 있지 않고 discovery마다 lease를 받는다.
+        wakeLocks = new WakeLockManager(this, "Tag: partial wake lock", WAKELOCK_HOURLY_BUDGET);
+        wakeLocks.setOnReleaseListener(new WakeLockManager.OnReleaseListener() {
+            @Override
+            public void onReleased(long heldTime) {
+                energyLog.log(EnergyEventLog.WAKEUP, System.currentTimeMillis() - heldTime, heldTime);
+                Log.d(TAG, "wakelock released after " + heldTime + "ms\n" + wakeLocks.format());
+            }
+        });
         //**************************************************************
+
+        // Alarm 발생 시 전송되는 broadcast를 수신할 receiver 등록
+        alarmManager = (AlarmManager) getSystemService(ALARM_SERVICE);
+        pendingIntent = PendingIntent.getBroadcast(getApplicationContext(), 0, new Intent(BROADCAST_ALARM), 0);
+        registerReceiver(alarmReceiver, new IntentFilter(BROADCAST_ALARM));
     }
 
     @Override
@@ -69,15 +89,16 @@ public class MonitoringService extends Service {
         String userName = intent.getStringExtra("UserName");
 
         // 블루투스 검색 시작, 종료, 기기 검색 종류의 브로드캐스트를 받는다.
-        encounterReceiver = new EncounterReceiver(bluetoothName, userName, SCAN_TIME_INTERVAL);
+        encounterReceiver = new EncounterReceiver(bluetoothName, userName, SCAN_TIME_INTERVAL, energyLog, wakeLocks);
         IntentFilter filter = new IntentFilter();
         filter.addAction(BluetoothDevice.ACTION_FOUND);
         filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
         filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
         registerReceiver(encounterReceiver, filter);
 
-        // 주기적으로 BT discovery 수행하기 위한 timer 가동
-        startTimerTask();
+        // 주기적으로 BT discovery 수행하기 위한 alarm 등록
+        // Timer와 달리 CPU가 잠들어 있어도 alarm이 깨워 주므로 wakelock을 계속 잡고 있지 않아도 된다.
+        setNextAlarm(FIRST_SCAN_DELAY);
 
         return super.onStartCommand(intent, flags, startId);
     }
@@ -89,35 +110,55 @@ public class MonitoringService extends Service {
         Toast.makeText(this, "EncounterMonitor 중지", Toast.LENGTH_SHORT).show();
         Log.d(TAG, "onDestroy()");
 
-        // timer로 주기적으로 BT discovery하는 것을 중지한다.
-        stopTimerTask();
+        // alarm으로 주기적으로 BT discovery하는 것을 중지한다.
+        alarmManager.cancel(pendingIntent);
+        unregisterReceiver(alarmReceiver);
         unregisterReceiver(encounterReceiver);
 
         //***********************************
-        // wake lock을 release한다.
-        wakeLock.release();
+        // 남은 lease를 끝내고 wake lock을 release한다.
+        wakeLocks.releaseAll();
         //***********************************
+
+        // 큐에 남은 기록을 모두 파일에 쓴다.
+        AsyncFileWriter writer = AsyncFileWriter.getInstance();
+        if (!writer.drain(WRITER_DRAIN_TIMEOUT)) {
+            Log.w(TAG, "file writer drain timeout. queue depth: " + writer.getQueueDepth());
+        }
+        Log.d(TAG, "file writer - records: " + writer.getRecordsWritten() + ", batches: " + writer.getBatches()
+                + ", max queue depth: " + writer.getMaxQueueDepth()
+                + ", avg latency: " + writer.getAverageLatency() / 1000 + "us");
     }
 
-    private void startTimerTask() {
-        // TimerTask 생성한다
-        timerTask = new TimerTask() {
-            @Override
-            public void run() {
-                bluetoothAdapter.startDiscovery();
-            }
-        };
+    // alarm이 발생하면 다음 alarm을 등록하고 BT discovery를 시작한다.
+    private BroadcastReceiver alarmReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            setNextAlarm(SCAN_TIME_INTERVAL);
+            startDiscovery();
+        }
+    };
 
-        // TimerTask를 Timer를 통해 실행시킨다
-        // 1초 후에 타이머를 구동하고 SCAN_TIME_INTERVAL초마다 반복한다
-        timer.schedule(timerTask, 1000, SCAN_TIME_INTERVAL);
+    private void setNextAlarm(long delay) {
+        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, SystemClock.elapsedRealtime() + delay, pendingIntent);
     }
 
-    private void stopTimerTask() {
-        // 모든 태스크를 중단한다
-        if (timerTask != null) {
-            timerTask.cancel();
-            timerTask = null;
+    /**
+     * BT discovery 시작
+     * discovery가 끝날 때까지(EncounterReceiver가 ACTION_DISCOVERY_FINISHED를 받을 때까지) BT_DISCOVERY lease로
+     * CPU를 깨워 둔다. FINISHED를 받지 못해도 lease는 DISCOVERY_LEASE_TIMEOUT 뒤에 끝난다.
+     */
+    private void startDiscovery() {
+        if (bluetoothAdapter.isDiscovering()) {
+            Log.d(TAG, "이전 discovery가 아직 진행 중");
+            return;
+        }
+        if (!wakeLocks.acquire(WakeLockManager.BT_DISCOVERY, DISCOVERY_LEASE_TIMEOUT)) {
+            Log.d(TAG, "wakelock 예산 초과로 이번 discovery를 건너뜀");
+            return;
+        }
+        if (!bluetoothAdapter.startDiscovery()) {
+            wakeLocks.release(WakeLockManager.BT_DISCOVERY);
         }
     }
 }
@@ -0,0 +1,253 @@
+package io.github.sogoagain.encountermonitor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * SegmentedStore
+ * - 로그를 하루에 파일 하나(segment)씩 나누어 저장하는 저장소 (Android 의존성 없음)
+ * - 디렉토리 구성
+ *   MANIFEST: segment 날짜 목록 (한 줄에 yyyyMMdd, 오래된 날짜부터)
+ *   yyyyMMdd + suffix: 그 날짜(기기 시간대 기준)의 segment
+ * - 보관 기간(retentionDays)이 지난 segment는 파일째 지우므로 남은 로그를 다시 쓰지 않는다.
+ *   보관 기간은 새 날짜의 segment가 생길 때 확인한다.
+ * - 기간 조회는 그 기간에 해당하는 날짜의 segment 파일만 돌려준다.
+ * - 같은 디렉토리는 프로세스 안에서 하나의 객체를 공유한다. (open)
+ */
+public class SegmentedStore {
+    private static final String MANIFEST = "MANIFEST";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static final HashMap<String, SegmentedStore> stores = new HashMap<>();
+
+    private final File directory;
+    private final String suffix;
+    private final int retentionDays;
+    private final Calendar calendar = Calendar.getInstance();
+
+    // segment 날짜 (yyyyMMdd), 오름차순
+    private int[] days = new int[16];
+    private int dayCount;
+
+    /**
+     * @param suffix        - segment 파일 이름 뒤에 붙일 확장자 (예: ".txt")
+     * @param retentionDays - 보관할 날짜 수, 0 이하이면 지우지 않음
+     */
+    public static synchronized SegmentedStore open(File directory, String suffix, int retentionDays) {
+        String key = directory.getAbsolutePath() + "/" + suffix;
+        SegmentedStore store = stores.get(key);
+        if (store == null) {
+            store = new SegmentedStore(directory, suffix, retentionDays);
+            stores.put(key, store);
+        }
+        return store;
+    }
+
+    private SegmentedStore(File directory, String suffix, int retentionDays) {
+        this.directory = directory;
+        this.suffix = suffix;
+        this.retentionDays = retentionDays;
+        loadManifest();
+    }
+
+    /**
+     * time이 속한 날짜의 segment 파일. 새 날짜이면 manifest에 추가하고 보관 기간이 지난 segment를 지운다.
+     */
+    public synchronized File segmentFor(long time) {
+        int day = dayOf(time);
+        int index = Arrays.binarySearch(days, 0, dayCount, day);
+        if (index < 0) {
+            // 디렉토리를 만들지 못하면 아래 manifest 기록과 segment 기록이 IOException으로 실패하고 그곳에서 보고된다.
+            directory.mkdirs();
+            insertDay(-index - 1, day);
+            if (index == -dayCount) {
+                // 가장 최근 날짜: manifest 끝에 한 줄 추가
+                appendManifest(day);
+            } else {
+                writeManifest();
+            }
+            purge(time);
+        }
+        return fileOf(day);
+    }
+
+    // 모든 segment 파일 (오래된 날짜부터)
+    public synchronized List<File> segments() {
+        return files(0, dayCount);
+    }
+
+    // from ~ to(ms) 기간에 걸치는 segment 파일 (오래된 날짜부터)
+    public synchronized List<File> segments(long from, long to) {
+        int first = Arrays.binarySearch(days, 0, dayCount, dayOf(from));
+        int last = Arrays.binarySearch(days, 0, dayCount, dayOf(to));
+        first = first < 0 ? -first - 1 : first;
+        last = last < 0 ? -last - 1 : last + 1;
+        return files(first, last);
+    }
+
+    /**
+     * time의 날짜보다 앞선 가장 최근 segment 파일
+     * 구간은 시작한 날짜의 파일에 기록되므로 그 파일의 마지막 구간은 며칠 뒤의 time까지 이어질 수 있다.
+     *
+     * @return 없으면 null
+     */
+    public synchronized File segmentBefore(long time) {
+        int index = Arrays.binarySearch(days, 0, dayCount, dayOf(time));
+        index = (index < 0 ? -index - 1 : index) - 1;
+        return index >= 0 ? fileOf(days[index]) : null;
+    }
+
+    public synchronized int getSegmentCount() {
+        return dayCount;
+    }
+
+    /**
+     * now 기준 보관 기간이 지난 segment를 지운다.
+     *
+     * @return 지운 segment 수
+     */
+    public synchronized int purge(long now) {
+        if (retentionDays <= 0) {
+            return 0;
+        }
+        int cutoff = dayOf(now - retentionDays * DAY);
+        int dropped = 0;
+        while (dropped < dayCount && days[dropped] <= cutoff) {
+            File file = fileOf(days[dropped]);
+            if (file.exists() && !file.delete()) {
+                break;
+            }
+            dropped++;
+        }
+        if (dropped > 0) {
+            System.arraycopy(days, dropped, days, 0, dayCount - dropped);
+            dayCount -= dropped;
+            writeManifest();
+        }
+        return dropped;
+    }
+
+    // 모든 segment와 manifest를 지운다.
+    public synchronized boolean deleteAll() {
+        boolean result = true;
+        for (int i = 0; i < dayCount; i++) {
+            File file = fileOf(days[i]);
+            if (file.exists() && !file.delete()) {
+                result = false;
+            }
+        }
+        dayCount = 0;
+        File manifest = new File(directory, MANIFEST);
+        if (manifest.exists() && !manifest.delete()) {
+            result = false;
+        }
+        return result;
+    }
+
+    // 날짜 키 yyyyMMdd (기기 시간대 기준)
+    private int dayOf(long time) {
+        calendar.setTimeInMillis(time);
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private File fileOf(int day) {
+        return new File(directory, day + suffix);
+    }
+
+    private List<File> files(int from, int to) {
+        ArrayList<File> files = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            files.add(fileOf(days[i]));
+        }
+        return files;
+    }
+
+    private void insertDay(int index, int day) {
+        if (dayCount == days.length) {
+            days = Arrays.copyOf(days, dayCount * 2);
+        }
+        System.arraycopy(days, index, days, index + 1, dayCount - index);
+        days[index] = day;
+        dayCount++;
+    }
+
+    private void loadManifest() {
+        File manifest = new File(directory, MANIFEST);
+        if (manifest.exists()) {
+            try {
+                BufferedReader reader = new BufferedReader(new FileReader(manifest));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    addDay(line.trim());
+                }
+                reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (directory.isDirectory()) {
+            // manifest가 없으면 디렉토리의 segment 파일로 다시 만든다.
+            String[] names = directory.list();
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(suffix)) {
+                        addDay(name.substring(0, name.length() - suffix.length()));
+                    }
+                }
+            }
+            if (dayCount > 0) {
+                writeManifest();
+            }
+        }
+    }
+
+    private void addDay(String text) {
+        int day;
+        try {
+            day = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        int index = Arrays.binarySearch(days, 0, dayCount, day);
+        if (index < 0) {
+            insertDay(-index - 1, day);
+        }
+    }
+
+    private void appendManifest(int day) {
+        try {
+            FileOutputStream fos = new FileOutputStream(new File(directory, MANIFEST), true);
+            fos.write((day + "\n").getBytes("UTF-8"));
+            fos.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // manifest 전체를 다시 쓴다. (임시 파일에 쓴 뒤 이름 변경)
+    private void writeManifest() {
+        StringBuilder builder = new StringBuilder(dayCount * 9);
+        for (int i = 0; i < dayCount; i++) {
+            builder.append(days[i]).append('\n');
+        }
+        File temp = new File(directory, MANIFEST + ".tmp");
+        try {
+            FileOutputStream fos = new FileOutputStream(temp);
+            fos.write(builder.toString().getBytes("UTF-8"));
+            fos.close();
+            if (!temp.renameTo(new File(directory, MANIFEST))) {
+                throw new IOException("cannot rename " + temp + " to " + MANIFEST);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -5,26 +5,76 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 /**
  * Created by sogoagain on 2017. 4. 7..
+ * 로그는 날짜별 segment 파일(SegmentedStore)에 나누어 저장한다.
  */
 public class TextFileManager {
     private static final String TAG = "TextFileManager";
-    private static final String FILE_NAME = "encounterlog.txt";
+    private static final String DIRECTORY_NAME = "EncounterLog";
+    private static final String SUFFIX = ".txt";
+    // 로그 보관 기간 (일)
+    private static final int RETENTION_DAYS = 90;
+    // 이전 버전이 Download 디렉토리에 남긴 한 파일짜리 로그
+    private static final String LEGACY_FILE_NAME = "encounterlog.txt";
+    // 이전 로그를 옮기는 기록을 기다리는 최대 시간 (ms)
+    private static final long IMPORT_TIMEOUT = 5000;
+    private static boolean isLegacyChecked = false;
     private File folder;
-    private String folderPath;
-    private String filePath;
+    private String directoryName;
+    private SegmentedStore store;
 
     public TextFileManager() {
+        this(DIRECTORY_NAME);
+    }
+
+    // Download 디렉토리 아래 directoryName 디렉토리에 저장하는 로그 (이벤트 로그 등)
+    public TextFileManager(String directoryName) {
         // 외부 공용 디렉토리 중 Download 디렉토리에 대한 File 객체 얻음
         folder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-        // 절대 경로 String 값을 얻음
-        folderPath = folder.getAbsolutePath();
-        // 로그 파일 절대 경로 생성 (String 값)
-        filePath = folderPath + "/" + FILE_NAME;
+        // Download 디렉토리 아래의 로그 저장소
+        this.directoryName = directoryName;
+        store = SegmentedStore.open(new File(folder, directoryName), SUFFIX, RETENTION_DAYS);
+        if (DIRECTORY_NAME.equals(directoryName)) {
+            importLegacyLog();
+        }
+    }
+
+    /**
+     * 이전 버전의 로그(encounterlog.txt)를 그 파일의 마지막 수정 날짜 segment로 옮긴다.
+     * 처음 만든 TextFileManager에서 한 번만 수행하고, 곧바로 load()에 보이도록 기록이 끝날 때까지 기다린다.
+     * 이전 로그 파일은 옮긴 내용이 파일에 기록된 뒤에 지운다.
+     */
+    private void importLegacyLog() {
+        synchronized (TextFileManager.class) {
+            if (isLegacyChecked) {
+                return;
+            }
+            isLegacyChecked = true;
+        }
+        final File legacy = new File(folder, LEGACY_FILE_NAME);
+        if (!legacy.exists()) {
+            return;
+        }
+        try {
+            byte[] data = read(legacy);
+            AsyncFileWriter writer = AsyncFileWriter.getInstance();
+            writer.write(store.segmentFor(legacy.lastModified()), null, data, new Runnable() {
+                @Override
+                public void run() {
+                    if (legacy.delete()) {
+                        Log.i(TAG, LEGACY_FILE_NAME + " imported into " + directoryName);
+                    }
+                }
+            });
+            writer.drain(IMPORT_TIMEOUT);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     // 파일에 문자열 데이터를 쓰는 메소드
@@ -32,51 +82,65 @@ public class TextFileManager {
         if (data == null || data.isEmpty()) {
             return;
         }
-        FileOutputStream fos;
+        // 파일 기록은 AsyncFileWriter의 백그라운드 스레드에서 모아서 append 모드로 수행
         try {
-            fos = new FileOutputStream(filePath, true); // 두번째 매개변수가 true이면 append 모드로 쓰기
-            fos.write(data.getBytes());
-            fos.close();
+            AsyncFileWriter.getInstance().write(store.segmentFor(System.currentTimeMillis()), data.getBytes("UTF-8"));
             Log.d(TAG, data);
-        } catch (IOException e) {
+        } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
         }
     }
 
     // 파일에서 데이터를 읽고 문자열 데이터로 반환하는 메소드
     public String load() {
-        try {
-            // 로그 파일의 절대 경로를 이용하여 File 객체 생성
-            File log = new File(filePath);
-            // File 객체를 이용하여 해당 파일이 실제로 존재하는지 검사
-            if (log.exists()) {
-                // 파일이 존재하는 경우 읽기 수행
-                FileInputStream fis = new FileInputStream(filePath);
-                byte[] data = new byte[fis.available()];
-                fis.read(data);
+        return load(store.segments());
+    }
 
-                fis.close();
-                return new String(data);
-            } else {
+    // from ~ to(ms) 기간의 segment 파일만 읽고 문자열 데이터로 반환하는 메소드
+    public String load(long from, long to) {
+        return load(store.segments(from, to));
+    }
+
+    private String load(List<File> logs) {
+        StringBuilder builder = new StringBuilder();
+        // segment 파일들을 오래된 날짜부터 이어 붙임
+        for (File log : logs) {
+            // File 객체를 이용하여 해당 파일이 실제로 존재하는지 검사
+            if (!log.exists()) {
                 Log.i("FileManager", log.getName() + " file does not exist");
+                continue;
+            }
+            try {
+                // 파일이 존재하는 경우 읽기 수행
+                builder.append(new String(read(log)));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return "";
+        return builder.toString();
     }
 
-    // 파일 삭제 메소드
+    private static byte[] read(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        byte[] data = new byte[fis.available()];
+        fis.read(data);
+
+        fis.close();
+        return data;
+    }
+
+    // 파일 삭제 메소드 (모든 segment와 manifest)
     public boolean delete() {
-        // 로그 파일의 절대 경로를 이용하여 File 객체 생성
-        File log = new File(filePath);
         try {
-            // File 객체를 이용하여 해당 파일 삭제
-            boolean result = log.delete();
+            boolean result = store.deleteAll();
+            // 아직 옮기지 못한 이전 버전의 로그도 지운다.
+            if (DIRECTORY_NAME.equals(directoryName)) {
+                new File(folder, LEGACY_FILE_NAME).delete();
+            }
 
             if (result) {
                 // file is successfully deleted
-                Log.i("FileManager", log.getName() + " successfully deleted");
+                Log.i("FileManager", directoryName + " successfully deleted");
                 return true;
             } else {
                 Log.i("FileManager", "delete failed");
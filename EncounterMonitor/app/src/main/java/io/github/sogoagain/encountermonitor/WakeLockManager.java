@@ -0,0 +1,275 @@
+package io.github.sogoagain.encountermonitor;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * WakeLockManager
+ * - 센싱 경로가 wakelock을 잡을 때 반드시 거치는 관리자
+ *   PARTIAL_WAKE_LOCK 하나를 두고, 각 경로는 구성 요소(tag)별로 lease를 받아 쓴다.
+ * - lease는 tag별로 참조 횟수를 센다. 한 tag의 release 횟수가 acquire 횟수와 같아지면 그 tag가 끝나고,
+ *   모든 tag가 끝나면 wakelock을 놓는다.
+ * - lease에는 항상 제한 시간이 있다. 제한 시간이 지나면 release하지 않았더라도 그 tag를 강제로 끝낸다.
+ *   wakelock도 acquire(timeout)으로 잡으므로 main 스레드가 멈춰 있어도 시스템이 놓는다.
+ * - 한 시간(elapsedRealtime 기준 정시부터)에 wakelock을 잡고 있을 수 있는 시간에 예산을 둔다.
+ *   남은 예산이 요청한 제한 시간보다 적으면 새 lease를 거절한다.
+ *   (제한 시간을 줄여서 주면 센싱 구간이나 GPS 수집 도중에 wakelock이 풀려 끝내는 처리가 다음 wakeup까지 밀린다.)
+ * - tag별로 잡고 있던 누적 시간, 제한 시간 초과 횟수, 거절 횟수를 센다.
+ * - main 스레드에서만 사용한다.
+ */
+public class WakeLockManager {
+    private static final String TAG = "WakeLockManager";
+
+    // lease tag (구성 요소)
+    public static final int ALARM_WINDOW = 0;   // alarm마다 여는 센싱 구간
+    public static final int GPS_FIX = 1;        // GPS fix 수집
+    public static final int BT_DISCOVERY = 2;   // 블루투스 discovery
+    public static final int TAG_COUNT = 3;
+
+    private static final String[] TAG_NAMES = {"alarm window", "gps fix", "bt discovery"};
+
+    private static final long HOUR = 60 * 60 * 1000;
+    // lease 하나의 최대 제한 시간
+    public static final long MAX_TIMEOUT = 5 * 60 * 1000;
+
+    public interface OnReleaseListener {
+        // wakelock을 놓음. heldTime: 이번에 잡고 있던 시간 (ms)
+        void onReleased(long heldTime);
+    }
+
+    private final PowerManager.WakeLock wakeLock;
+    private final long hourlyBudget;
+    private final Handler handler = new Handler();
+    private final Runnable[] timeoutRunnables = new Runnable[TAG_COUNT];
+    private OnReleaseListener onReleaseListener;
+
+    // tag별 상태
+    private final int[] counts = new int[TAG_COUNT];        // 돌려받지 않은 lease 수
+    private final long[] deadlines = new long[TAG_COUNT];   // 제한 시각 (elapsedRealtime)
+    private final long[] startTimes = new long[TAG_COUNT];
+    // tag별 통계
+    private final long[] heldTimes = new long[TAG_COUNT];
+    private final long[] leases = new long[TAG_COUNT];
+    private final long[] timeouts = new long[TAG_COUNT];
+    private final long[] denials = new long[TAG_COUNT];
+
+    private int activeTags = 0;     // lease가 남아 있는 tag 수
+    private boolean isHeld = false;
+    private long heldSince;
+    private long totalHeldTime;
+
+    // 시간당 예산
+    private long hourStart = -1;
+    private long budgetUsed;        // 이번 시간에 잡고 있던 시간
+    private long accountedTime;     // budgetUsed에 반영한 마지막 시각
+
+    /**
+     * @param name         - wakelock 이름
+     * @param hourlyBudget - 한 시간에 wakelock을 잡고 있을 수 있는 시간 (ms)
+     */
+    public WakeLockManager(Context context, String name, long hourlyBudget) {
+        this.hourlyBudget = hourlyBudget;
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        wakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, name);
+        // 참조 횟수는 tag별로 직접 센다.
+        wakeLock.setReferenceCounted(false);
+        for (int tag = 0; tag < TAG_COUNT; tag++) {
+            timeoutRunnables[tag] = new TimeoutRunnable(tag);
+        }
+    }
+
+    public void setOnReleaseListener(OnReleaseListener listener) {
+        this.onReleaseListener = listener;
+    }
+
+    /**
+     * tag의 lease를 하나 받는다.
+     *
+     * @param timeout - 제한 시간 (ms, 0보다 커야 함). MAX_TIMEOUT을 넘으면 MAX_TIMEOUT으로 줄어든다.
+     * @return 이번 시간에 남은 예산이 제한 시간보다 적어 거절되면 false
+     */
+    public boolean acquire(int tag, long timeout) {
+        long now = SystemClock.elapsedRealtime();
+        account(now);
+        long remaining = hourlyBudget - budgetUsed;
+        long leaseTime = Math.max(1, Math.min(timeout, MAX_TIMEOUT));
+        if (remaining < leaseTime) {
+            denials[tag]++;
+            Log.w(TAG, TAG_NAMES[tag] + " lease denied: " + remaining + "ms left of hourly budget " + hourlyBudget
+                    + "ms, " + leaseTime + "ms requested");
+            return false;
+        }
+        long deadline = now + leaseTime;
+        leases[tag]++;
+        if (counts[tag]++ == 0) {
+            startTimes[tag] = now;
+            deadlines[tag] = deadline;
+            activeTags++;
+        } else if (deadline > deadlines[tag]) {
+            deadlines[tag] = deadline;
+        } else {
+            // 이미 더 늦은 제한 시각까지 잡고 있음
+            return true;
+        }
+        handler.removeCallbacks(timeoutRunnables[tag]);
+        handler.postDelayed(timeoutRunnables[tag], deadlines[tag] - now);
+        holdWakeLock(now);
+        return true;
+    }
+
+    // tag의 lease를 하나 돌려준다. 제한 시간이 지나 이미 끝난 tag이면 무시
+    public void release(int tag) {
+        if (counts[tag] == 0) {
+            return;
+        }
+        if (--counts[tag] == 0) {
+            endTag(tag, SystemClock.elapsedRealtime());
+        }
+    }
+
+    // 남은 lease를 모두 끝내고 wakelock을 놓는다. (서비스 종료 시)
+    public void releaseAll() {
+        long now = SystemClock.elapsedRealtime();
+        for (int tag = 0; tag < TAG_COUNT; tag++) {
+            if (counts[tag] > 0) {
+                counts[tag] = 0;
+                endTag(tag, now);
+            }
+        }
+    }
+
+    public boolean isHeld() {
+        return isHeld;
+    }
+
+    public boolean isHeld(int tag) {
+        return counts[tag] > 0;
+    }
+
+    // tag의 lease가 남아 있던 누적 시간 (지금 남아 있는 lease 포함)
+    public long getHeldTime(int tag) {
+        long time = heldTimes[tag];
+        if (counts[tag] > 0) {
+            time += SystemClock.elapsedRealtime() - startTimes[tag];
+        }
+        return time;
+    }
+
+    // wakelock을 잡고 있던 누적 시간. 여러 tag가 겹친 시간은 한 번만 센다.
+    public long getTotalHeldTime() {
+        long time = totalHeldTime;
+        if (isHeld) {
+            time += SystemClock.elapsedRealtime() - heldSince;
+        }
+        return time;
+    }
+
+    public long getLeases(int tag) {
+        return leases[tag];
+    }
+
+    public long getTimeouts(int tag) {
+        return timeouts[tag];
+    }
+
+    public long getDenials(int tag) {
+        return denials[tag];
+    }
+
+    // 이번 시간에 사용한 예산 (ms)
+    public long getBudgetUsed() {
+        account(SystemClock.elapsedRealtime());
+        return budgetUsed;
+    }
+
+    public long getHourlyBudget() {
+        return hourlyBudget;
+    }
+
+    // 사람이 읽을 수 있는 요약 (tag마다 한 줄)
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        for (int tag = 0; tag < TAG_COUNT; tag++) {
+            builder.append(TAG_NAMES[tag]).append(": held ").append(getHeldTime(tag))
+                    .append("ms, leases ").append(leases[tag])
+                    .append(", timeouts ").append(timeouts[tag])
+                    .append(", denied ").append(denials[tag]).append('\n');
+        }
+        builder.append("total: held ").append(getTotalHeldTime())
+                .append("ms, budget ").append(getBudgetUsed()).append('/').append(hourlyBudget).append("ms\n");
+        return builder.toString();
+    }
+
+    // 남은 lease 중 가장 늦은 제한 시각까지 wakelock을 잡는다.
+    private void holdWakeLock(long now) {
+        long deadline = now;
+        for (int tag = 0; tag < TAG_COUNT; tag++) {
+            if (counts[tag] > 0 && deadlines[tag] > deadline) {
+                deadline = deadlines[tag];
+            }
+        }
+        if (!isHeld) {
+            isHeld = true;
+            heldSince = now;
+        }
+        // 참조 횟수를 세지 않으므로 다시 acquire하면 시스템의 해제 시각만 바뀐다.
+        wakeLock.acquire(deadline - now);
+    }
+
+    private void endTag(int tag, long now) {
+        handler.removeCallbacks(timeoutRunnables[tag]);
+        heldTimes[tag] += now - startTimes[tag];
+        if (--activeTags == 0) {
+            releaseWakeLock(now);
+        }
+    }
+
+    private void releaseWakeLock(long now) {
+        account(now);
+        isHeld = false;
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        long heldTime = now - heldSince;
+        totalHeldTime += heldTime;
+        if (onReleaseListener != null) {
+            onReleaseListener.onReleased(heldTime);
+        }
+    }
+
+    // 잡고 있던 시간을 이번 시간의 예산 사용량에 반영
+    private void account(long now) {
+        long hour = now - now % HOUR;
+        if (hour != hourStart) {
+            hourStart = hour;
+            budgetUsed = 0;
+        }
+        if (isHeld) {
+            budgetUsed += now - Math.max(accountedTime, hourStart);
+        }
+        accountedTime = now;
+    }
+
+    // 제한 시간이 지난 tag를 강제로 끝낸다.
+    private class TimeoutRunnable implements Runnable {
+        private final int tag;
+
+        TimeoutRunnable(int tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public void run() {
+            if (counts[tag] == 0) {
+                return;
+            }
+            timeouts[tag]++;
+            Log.w(TAG, TAG_NAMES[tag] + " lease timeout, " + counts[tag] + " not released");
+            counts[tag] = 0;
+            endTag(tag, SystemClock.elapsedRealtime());
+        }
+    }
+}